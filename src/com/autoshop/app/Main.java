@@ -1,27 +1,56 @@
 package com.autoshop.app;
 
 import com.autoshop.app.component.NotificationService;
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.util.AppointmentExporter;
+import com.autoshop.app.util.AutocompleteIndex;
+import com.autoshop.app.util.BackgroundExecutor;
+import com.autoshop.app.util.BackupService;
+import com.autoshop.app.util.ConnectionManager;
 import com.autoshop.app.util.DatabaseHelper;
 import com.autoshop.app.util.LanguageHelper;
+import com.autoshop.app.util.MaintenanceService;
 import com.autoshop.app.util.PreferencesHelper;
+import com.autoshop.app.util.StatusTransitionScheduler;
 import com.autoshop.app.view.MainFrame;
 
 import javax.swing.*;
+import java.nio.file.Path;
+import java.text.SimpleDateFormat;
+import java.util.Date;
 import java.util.Locale;
 
 public class Main {
     public static void main(String[] args) {
+        // Headless mode: "--export <file.csv|file.json> [--search text] [--status DONE] [--from yyyy-MM-dd] [--to yyyy-MM-dd]"
+        if (args.length > 0 && "--export".equals(args[0])) {
+            System.exit(runExport(args));
+        }
+
+        // 1. Initialize Database (here on the main thread, so the UI thread never waits for it)
+        try {
+            DatabaseHelper.createNewTable();
+            ConnectionManager.warmUp();
+            StatusTransitionScheduler.start(); // Catches up now, then flips statuses when each appointment starts
+        } catch (Exception e) {
+            e.printStackTrace();
+            JOptionPane.showMessageDialog(null,
+                    "Critical Error during startup: " + e.getMessage(),
+                    "Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+
         SwingUtilities.invokeLater(() -> {
             try {
-                // 1. Setup Look & Feel
+                // 2. Setup Look & Feel
                 UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
 
-                // 2. Initialize Database
-                DatabaseHelper.createNewTable();
-                DatabaseHelper.autoUpdateStatuses();
-
                 // 3. Start Background Services
                 NotificationService.start();
+                BackgroundExecutor.startWatchdog();
+                BackupService.startScheduled();
+                AutocompleteIndex.start();
+                MaintenanceService.start();
 
                 // 4. Load Language Preferences
                 String lang = PreferencesHelper.loadLanguage();
@@ -38,4 +67,42 @@ public class Main {
             }
         });
     }
-}
\ No newline at end of file
+
+    // Exports without opening any window. Returns the process exit code.
+    private static int runExport(String[] args) {
+        try {
+            if (args.length < 2) throw new IllegalArgumentException("Missing target file after --export");
+            Path target = Path.of(args[1]);
+            String keyword = null;
+            AppointmentStatus status = null;
+            Date from = null, to = null;
+            SimpleDateFormat day = new SimpleDateFormat("yyyy-MM-dd");
+            day.setLenient(false);
+
+            for (int i = 2; i + 1 < args.length; i += 2) {
+                switch (args[i]) {
+                    case "--search" -> keyword = args[i + 1];
+                    case "--status" -> status = AppointmentStatus.valueOf(args[i + 1].toUpperCase(Locale.ROOT));
+                    case "--from" -> from = day.parse(args[i + 1]);
+                    case "--to" -> to = day.parse(args[i + 1]);
+                    default -> throw new IllegalArgumentException("Unknown option: " + args[i]);
+                }
+            }
+
+            DatabaseHelper.createNewTable();
+            long start = System.currentTimeMillis();
+            int count = new AppointmentExporter(AppointmentExporter.Format.forFile(target),
+                    (done, total) -> System.out.print("\rExported " + done + " / " + total), null)
+                    .export(target, keyword, status, from, to);
+            System.out.println("\rExported " + count + " appointments to " + target.toAbsolutePath()
+                    + " in " + (System.currentTimeMillis() - start) + " ms");
+            return 0;
+        } catch (Exception e) {
+            System.err.println("Export failed: " + e.getMessage());
+            e.printStackTrace();
+            return 1;
+        } finally {
+            ConnectionManager.shutdown();
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.autoshop.app.component;
+
+import com.autoshop.app.model.Appointment;
+
+import javax.swing.table.AbstractTableModel;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Table model over a list of appointments (dashboard agenda, search results).
+ * <p>
+ * Cells are read from the Appointment when the JTable paints them, and what was shown is kept per row until
+ * that row changes, so scrolling does not format the same date twice. Replacing the whole list fires a single
+ * event; patching a row fires an event for that row only.
+ * Event thread only (like any Swing model).
+ */
+public class AppointmentTableModel extends AbstractTableModel {
+
+    // What a column shows; each table picks its own
+    public enum Column { CLIENT, PHONE, PLATE, BRAND, MODEL, YEAR, DATE, PROBLEM, REPAIRS, PARTS, OBSERVATIONS, STATUS }
+
+    private static final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("dd/MM/yyyy HH:mm"); // Event thread only
+
+    private final Column[] columns;
+    private String[] columnNames;
+    private final List<Appointment> rows = new ArrayList<>();
+    private final List<Object[]> cells = new ArrayList<>(); // Per row: what was shown, null until painted
+
+    public AppointmentTableModel(String[] columnNames, Column... columns) {
+        this.columnNames = columnNames;
+        this.columns = columns;
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: DATA
+    // =================================================================================================================
+
+    // Shows 'appointments' instead of the current rows: one event, nothing formatted yet
+    public void setAppointments(List<Appointment> appointments) {
+        rows.clear();
+        rows.addAll(appointments);
+        cells.clear();
+        cells.addAll(Collections.nCopies(rows.size(), null));
+        fireTableDataChanged();
+    }
+
+    public void clear() {
+        setAppointments(List.of());
+    }
+
+    public void add(Appointment appointment) {
+        int row = rows.size();
+        rows.add(appointment);
+        cells.add(null);
+        fireTableRowsInserted(row, row);
+    }
+
+    public void set(int row, Appointment appointment) {
+        rows.set(row, appointment);
+        cells.set(row, null);
+        fireTableRowsUpdated(row, row);
+    }
+
+    public void remove(int row) {
+        rows.remove(row);
+        cells.remove(row);
+        fireTableRowsDeleted(row, row);
+    }
+
+    public Appointment getAppointmentAt(int row) {
+        return row >= 0 && row < rows.size() ? rows.get(row) : null;
+    }
+
+    // Read-only, row-indexed view for helpers that expect a List (e.g. StatusMenuHelper)
+    public List<Appointment> asList() {
+        return Collections.unmodifiableList(rows);
+    }
+
+    public void setColumnNames(String[] columnNames) {
+        this.columnNames = columnNames;
+        fireTableStructureChanged();
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: TABLE MODEL
+    // =================================================================================================================
+
+    @Override public int getRowCount() { return rows.size(); }
+    @Override public int getColumnCount() { return columns.length; }
+    @Override public String getColumnName(int column) { return columnNames[column]; }
+    @Override public boolean isCellEditable(int row, int column) { return false; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Object[] shown = cells.get(row);
+        if (shown == null) cells.set(row, shown = new Object[columns.length]);
+        if (shown[column] == null) shown[column] = valueOf(rows.get(row), columns[column]);
+        return shown[column];
+    }
+
+    /**
+     * What a cell shows for 'a'. Placeholder plates ("PENDING-...") and missing phones show as "-".
+     * The status stays an AppointmentStatus, for StatusCellRenderer. Event thread only.
+     */
+    public static Object valueOf(Appointment a, Column column) {
+        Object value = switch (column) {
+            case CLIENT -> a.getClientName();
+            case PHONE -> (a.getClientPhone() == null || a.getClientPhone().isEmpty()) ? "-" : a.getClientPhone();
+            case PLATE -> (a.getCarLicensePlate() != null && a.getCarLicensePlate().startsWith("PENDING-")) ? "-" : a.getCarLicensePlate();
+            case BRAND -> a.getCarBrand();
+            case MODEL -> a.getCarModel();
+            case YEAR -> a.getCarYear();
+            case DATE -> a.getDate() == null ? "" : DATE_FORMAT.format(a.getDate());
+            case PROBLEM -> a.getProblemDescription();
+            case REPAIRS -> a.getRepairs();
+            case PARTS -> a.getPartsSummary();
+            case OBSERVATIONS -> a.getObservations();
+            case STATUS -> a.getStatus();
+        };
+        return value == null ? "" : value;
+    }
+}
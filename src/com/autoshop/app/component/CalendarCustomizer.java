@@ -1,11 +1,18 @@
 package com.autoshop.app.component;
 
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.util.LanguageHelper;
 import com.autoshop.app.util.Theme;
 import com.toedter.calendar.JCalendar;
 import javax.swing.*;
+import javax.swing.border.Border;
 import java.awt.*;
+import java.util.Calendar;
+import java.util.Map;
 
 public class CalendarCustomizer {
+    private static final int BUSY_DAY = 4; // Appointments per day from which a day shows as busy
+    private static final int FULL_DAY = 7;
 
     public static void styleCalendar(JCalendar calendar) {
         JPanel dayPanel = calendar.getDayChooser().getDayPanel();
@@ -81,6 +88,47 @@ public class CalendarCustomizer {
         }
     }
 
+    /**
+     * Marks every day of the visible month with its appointment load: a bar under the day number
+     * (green = light, orange = busy, red = full) and a tooltip with the count per status.
+     * @param load day_key (yyyymmdd) -> count per status, e.g. from DatabaseHelper.getDayHistogram
+     */
+    public static void showDayLoad(JCalendar calendar, Map<Integer, Map<AppointmentStatus, Integer>> load) {
+        Calendar cal = calendar.getCalendar();
+        int monthKey = cal.get(Calendar.YEAR) * 10000 + (cal.get(Calendar.MONTH) + 1) * 100;
+
+        for (Component comp : calendar.getDayChooser().getDayPanel().getComponents()) {
+            if (!(comp instanceof JButton dayBtn)) continue;
+
+            // Keep the original border so a day can go back to "no load"
+            if (dayBtn.getClientProperty("baseBorder") == null) {
+                Border original = dayBtn.getBorder();
+                dayBtn.putClientProperty("baseBorder", original != null ? original : BorderFactory.createEmptyBorder());
+            }
+            Border base = (Border) dayBtn.getClientProperty("baseBorder");
+
+            String text = dayBtn.getText();
+            Map<AppointmentStatus, Integer> day = (dayBtn.isVisible() && text != null && text.matches("\\d+"))
+                    ? load.get(monthKey + Integer.parseInt(text)) : null;
+            if (day == null || day.isEmpty()) {
+                dayBtn.setBorder(base);
+                dayBtn.setToolTipText(null);
+                continue;
+            }
+
+            int total = 0;
+            StringBuilder tip = new StringBuilder("<html>");
+            for (Map.Entry<AppointmentStatus, Integer> entry : day.entrySet()) {
+                total += entry.getValue();
+                tip.append(LanguageHelper.getString(entry.getKey().getLangKey())).append(": ").append(entry.getValue()).append("<br>");
+            }
+
+            Color color = total >= FULL_DAY ? Theme.RED : total >= BUSY_DAY ? Theme.ORANGE : Theme.GREEN;
+            dayBtn.setBorder(BorderFactory.createCompoundBorder(base, BorderFactory.createMatteBorder(0, 0, 3, 0, color)));
+            dayBtn.setToolTipText(tip.append("</html>").toString());
+        }
+    }
+
     private static void styleSpinnerTextField(Container container, Font font) {
         for (Component comp : container.getComponents()) {
             if (comp instanceof JTextField tf) {
@@ -1,6 +1,9 @@
 package com.autoshop.app.component;
 
 import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.model.ChangeSet;
+import com.autoshop.app.util.AppointmentRepository;
 import com.autoshop.app.util.DatabaseHelper;
 import com.autoshop.app.util.LanguageHelper;
 import com.autoshop.app.util.PreferencesHelper;
@@ -8,17 +11,32 @@ import com.autoshop.app.util.PreferencesHelper;
 import java.awt.*;
 import java.util.*;
 import java.util.List;
-import java.util.Timer;
 import java.util.concurrent.TimeUnit;
 
+/**
+ * Tray reminders a few minutes (the lead time from the settings) before each SCHEDULED appointment.
+ * <p>
+ * Upcoming reminders sit in a queue ordered by the instant they are due. They are loaded once with an indexed
+ * query and then kept current from the AppointmentRepository change events, so nothing is read from the
+ * database while nothing changes. A single thread sleeps until the head of the queue is due and fires it on time.
+ */
 public class NotificationService {
 
-    private static final Set<Integer> notifiedAppointments = new HashSet<>();
-    private static Timer timer;
+    // One reminder for one appointment. 'queue' and 'pending' always hold the same reminders, at most one per id.
+    private record Reminder(int id, long appointmentAt, long fireAt, String clientName, String carBrand) {}
+
+    private static final Object lock = new Object();
+    private static final PriorityQueue<Reminder> queue = new PriorityQueue<>(Comparator.comparingLong(Reminder::fireAt));
+    private static final Map<Integer, Reminder> pending = new HashMap<>();
+    private static final Map<Integer, Long> notified = new HashMap<>(); // id -> appointment time; dropped once it is past
+    private static boolean reloadNeeded;
+
+    private static final AppointmentRepository.Listener listener = NotificationService::applyChanges;
+    private static Thread worker;
     private static TrayIcon trayIcon;
 
     public static void start() {
-        if (timer != null) return; // Already running
+        if (worker != null) return; // Already running
 
         // Setup System Tray
         if (SystemTray.isSupported()) {
@@ -35,56 +53,181 @@ public class NotificationService {
             }
         }
 
-        // Run check every 1 minute
-        timer = new Timer(true);
-        timer.scheduleAtFixedRate(new TimerTask() {
-            @Override
-            public void run() {
-                checkAppointments();
+        // Load once, then follow the change events
+        synchronized (lock) {
+            reloadNeeded = true;
+        }
+        AppointmentRepository.addListener(listener);
+        worker = new Thread(NotificationService::runLoop, "reminders");
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    // When the next reminder is due (-1 = none); for diagnostics and tests
+    public static long getNextReminderTime() {
+        synchronized (lock) {
+            Reminder head = queue.peek();
+            return head != null ? head.fireAt() : -1;
+        }
+    }
+
+    // Reminders waiting in the queue, and appointments already reminded of; for diagnostics and tests
+    public static int getQueuedCount() {
+        synchronized (lock) {
+            return queue.size();
+        }
+    }
+
+    public static int getNotifiedCount() {
+        synchronized (lock) {
+            return notified.size();
+        }
+    }
+
+    /**
+     * The lead time changed: every pending reminder moves, without reading anything again.
+     */
+    public static void leadTimeChanged() {
+        synchronized (lock) {
+            List<Reminder> current = new ArrayList<>(pending.values());
+            pending.clear();
+            queue.clear();
+            for (Reminder r : current) schedule(r.id(), r.appointmentAt(), r.clientName(), r.carBrand());
+            lock.notifyAll();
+        }
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: TIMING LOOP
+    // =================================================================================================================
+
+    private static void runLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                // 1. (Re)load when started or when the repository lost track of changes
+                boolean reload;
+                synchronized (lock) {
+                    reload = reloadNeeded;
+                    reloadNeeded = false;
+                }
+                if (reload) reload();
+
+                // 2. Sleep until the next reminder (or the next notified appointment to forget) is due
+                Reminder due = null;
+                synchronized (lock) {
+                    long now = System.currentTimeMillis();
+                    notified.values().removeIf(at -> at <= now);
+
+                    Reminder head = queue.peek();
+                    if (head != null && head.fireAt() <= now) {
+                        queue.poll();
+                        pending.remove(head.id());
+                        notified.put(head.id(), head.appointmentAt());
+                        due = head;
+                    } else if (!reloadNeeded) {
+                        long wakeAt = head != null ? head.fireAt() : Long.MAX_VALUE;
+                        for (long at : notified.values()) wakeAt = Math.min(wakeAt, at);
+                        if (wakeAt == Long.MAX_VALUE) lock.wait();
+                        else lock.wait(Math.max(1, wakeAt - now));
+                    }
+                }
+
+                // 3. Outside the lock: the tray call may be slow
+                if (due != null && PreferencesHelper.isNotificationEnabled() && due.appointmentAt() > System.currentTimeMillis()) {
+                    sendNotification(due);
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+                try {
+                    Thread.sleep(60 * 1000); // Database trouble: try the load again in a minute
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                synchronized (lock) {
+                    reloadNeeded = true;
+                }
             }
-        }, 0, 60 * 1000); // 0 delay, 60s period
+        }
     }
 
-    private static void checkAppointments() {
-        if (!PreferencesHelper.isNotificationEnabled()) return;
+    private static void reload() throws Exception {
+        long now = System.currentTimeMillis();
+        List<Appointment> upcoming = DatabaseHelper.getScheduledFrom(now);
 
-        int leadTimeMinutes = PreferencesHelper.getNotificationLeadTime();
-        long leadTimeMillis = TimeUnit.MINUTES.toMillis(leadTimeMinutes);
-        Date now = new Date();
+        synchronized (lock) {
+            pending.clear();
+            queue.clear();
+            for (Appointment a : upcoming) {
+                schedule(a.getAppointmentID(), a.getDate().getTime(), a.getClientName(), a.getCarBrand());
+            }
+        }
+    }
 
-        try {
-            // Only check today's appointments
-            List<Appointment> todayList = DatabaseHelper.getDashboardAppointments(now);
+    // =================================================================================================================
+    //  SECTION 2: QUEUE (call with the lock held)
+    // =================================================================================================================
 
-            for (Appointment appt : todayList) {
-                // Logic:
-                // 1. Must be "SCHEDULED" (not Done/Cancelled)
-                // 2. Not already notified
-                // 3. Time difference is between 0 and LeadTime (e.g., 0 to 15 mins away)
+    private static void schedule(int id, long appointmentAt, String clientName, String carBrand) {
+        Long alreadyNotified = notified.get(id);
+        if (alreadyNotified != null && alreadyNotified == appointmentAt) return; // Same appointment time: no second reminder
 
-                if (!"SCHEDULED".equalsIgnoreCase(appt.getStatus().name())) continue;
-                if (notifiedAppointments.contains(appt.getAppointmentID())) continue;
+        long lead = TimeUnit.MINUTES.toMillis(PreferencesHelper.getNotificationLeadTime());
+        Reminder reminder = new Reminder(id, appointmentAt, appointmentAt - lead, clientName, carBrand);
+        cancel(id);
+        pending.put(id, reminder);
+        queue.add(reminder);
+    }
 
-                long diff = appt.getDate().getTime() - now.getTime();
+    // Takes the reminder of 'id' (if any) out of both the map and the queue
+    private static void cancel(int id) {
+        Reminder old = pending.remove(id);
+        if (old != null) queue.remove(old);
+    }
 
-                if (diff > 0 && diff <= leadTimeMillis) {
-                    sendNotification(appt);
-                    notifiedAppointments.add(appt.getAppointmentID());
+    /**
+     * AppointmentRepository listener: moves, adds or drops the reminders of the appointments that changed.
+     */
+    private static void applyChanges(ChangeSet changes, Map<Integer, Appointment> fresh) {
+        synchronized (lock) {
+            if (!changes.isComplete()) {
+                reloadNeeded = true;
+            } else {
+                long now = System.currentTimeMillis();
+                for (int id : changes.getDeletedIds()) {
+                    cancel(id);
+                    notified.remove(id);
+                }
+                for (int id : changes.getChangedIds()) {
+                    cancel(id);
+                    Appointment a = fresh.get(id);
+                    if (a == null || a.getStatus() != AppointmentStatus.SCHEDULED || a.getDate().getTime() <= now) continue;
+
+                    // Moved to another time: it deserves a new reminder
+                    Long alreadyNotified = notified.get(id);
+                    if (alreadyNotified != null && alreadyNotified != a.getDate().getTime()) notified.remove(id);
+                    schedule(id, a.getDate().getTime(), a.getClientName(), a.getCarBrand());
                 }
             }
-        } catch (Exception e) {
-            e.printStackTrace();
+            lock.notifyAll();
         }
     }
 
-    private static void sendNotification(Appointment appt) {
+    // =================================================================================================================
+    //  SECTION 3: TRAY
+    // =================================================================================================================
+
+    private static void sendNotification(Reminder reminder) {
         if (trayIcon != null) {
             String title = LanguageHelper.getString("notif.title");
             String arrivingTxt = LanguageHelper.getString("notif.arriving");
             String minutesTxt = LanguageHelper.getString("notif.minutes");
 
-            String message = appt.getClientName() + " (" + appt.getCarBrand() + ")\n" +
-                    arrivingTxt + " " + PreferencesHelper.getNotificationLeadTime() + " " + minutesTxt + ".";
+            // Usually the lead time; less when the appointment was booked closer than that
+            long minutes = Math.max(1, Math.round((reminder.appointmentAt() - System.currentTimeMillis()) / 60000.0));
+            String message = reminder.clientName() + " (" + reminder.carBrand() + ")\n" +
+                    arrivingTxt + " " + minutes + " " + minutesTxt + ".";
             trayIcon.displayMessage(title, message, TrayIcon.MessageType.INFO);
         } else {
             // Fallback for systems without Tray support
@@ -93,10 +236,11 @@ public class NotificationService {
     }
 
     public static void stop() {
-        // 1. Stop the background timer
-        if (timer != null) {
-            timer.cancel();
-            timer = null;
+        // 1. Stop the reminder thread
+        AppointmentRepository.removeListener(listener);
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
         }
 
         // 2. Remove the icon from the Windows Taskbar
@@ -105,4 +249,4 @@ public class NotificationService {
             trayIcon = null;
         }
     }
-}
\ No newline at end of file
+}
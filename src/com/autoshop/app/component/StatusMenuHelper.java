@@ -2,7 +2,8 @@ package com.autoshop.app.component;
 
 import com.autoshop.app.model.Appointment;
 import com.autoshop.app.model.AppointmentStatus;
-import com.autoshop.app.util.DatabaseHelper;
+import com.autoshop.app.util.AppointmentRepository;
+import com.autoshop.app.util.BackgroundExecutor;
 import com.autoshop.app.util.LanguageHelper;
 import com.autoshop.app.util.Theme;
 
@@ -14,12 +15,26 @@ import javax.swing.plaf.basic.BasicMenuItemUI;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 
 public class StatusMenuHelper {
 
+    /**
+     * Looks up the appointment ids of table rows 'from'..'to' (inclusive) whose rows are not in memory.
+     * Runs on a worker.
+     */
+    public interface RowIdLookup {
+        List<Integer> idsInRows(int from, int to) throws Exception;
+    }
+
+    // For lists that hold every row; a selection with unloaded rows is refused
     public static void attach(JTable table, List<Appointment> appointmentList, Runnable onRefresh, Component parent) {
+        attach(table, appointmentList, onRefresh, parent, null);
+    }
+
+    public static void attach(JTable table, List<Appointment> appointmentList, Runnable onRefresh, Component parent,
+                              RowIdLookup rowIds) {
         JPopupMenu popupMenu = new JPopupMenu();
 
         // 1. Style the Container
@@ -72,19 +87,33 @@ public class StatusMenuHelper {
                 }
             });
 
-            // 5. Action Logic
+            // 5. Action Logic: every selected row, as one status-only write
             item.addActionListener(e -> {
-                int selectedRow = table.getSelectedRow();
-                if (selectedRow == -1) return;
-
-                try {
-                    Appointment appointment = appointmentList.get(selectedRow);
-                    appointment.setStatus(status);
-                    DatabaseHelper.updateAppointmentTransaction(appointment);
-                    onRefresh.run();
-                } catch (SQLException ex) {
-                    ThemedDialog.showMessage(parent, "Error", ex.getMessage());
+                List<Integer> ids = new ArrayList<>();
+                List<int[]> missing = new ArrayList<>(); // Runs of selected rows not loaded yet: {from, to}
+                for (int row : table.getSelectedRows()) {
+                    Appointment appointment = appointmentList.get(row);
+                    if (appointment == null) {
+                        int[] last = missing.isEmpty() ? null : missing.get(missing.size() - 1);
+                        if (last != null && last[1] == row - 1) last[1] = row;
+                        else missing.add(new int[]{row, row});
+                    } else if (appointment.getStatus() != status) {
+                        ids.add(appointment.getAppointmentID());
+                    }
+                }
+                if (!missing.isEmpty() && rowIds == null) {
+                    ThemedDialog.showMessage(parent, "Error", "Some selected rows are still loading. Please try again.");
+                    return;
                 }
+                if (ids.isEmpty() && missing.isEmpty()) return;
+
+                // Ids of the unloaded rows are read, then everything is written through, on a worker; the change
+                // event brings the fresh rows to every view (rows already in that status are left alone)
+                BackgroundExecutor.submit(null, () -> {
+                    for (int[] run : missing) ids.addAll(rowIds.idsInRows(run[0], run[1]));
+                    return AppointmentRepository.updateStatus(ids, status);
+                }, changed -> onRefresh.run(),
+                        ex -> ThemedDialog.showMessage(parent, "Error", ex.getMessage()));
             });
 
             popupMenu.add(item);
@@ -123,7 +152,8 @@ public class StatusMenuHelper {
                 if (e.isPopupTrigger()) {
                     int r = table.rowAtPoint(e.getPoint());
                     if (r >= 0 && r < table.getRowCount()) {
-                        table.setRowSelectionInterval(r, r);
+                        // Keep a multi-row selection when the click lands inside it
+                        if (!table.isRowSelected(r)) table.setRowSelectionInterval(r, r);
                         popupMenu.show(e.getComponent(), e.getX(), e.getY());
                     }
                 }
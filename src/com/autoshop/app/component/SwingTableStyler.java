@@ -80,6 +80,7 @@ public class SwingTableStyler {
         table.setIntercellSpacing(new Dimension(0, 0));
         table.setSelectionBackground(Theme.RED);
         table.setSelectionForeground(Theme.WHITE);
+        table.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION); // Ctrl/Shift-click: status menu acts on all
         table.setFocusable(false);
         table.setFillsViewportHeight(true); // Critical for painting background correctly
 
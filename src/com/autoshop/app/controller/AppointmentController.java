@@ -2,8 +2,12 @@ package com.autoshop.app.controller;
 
 import com.autoshop.app.component.ThemedDialog;
 import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.AppointmentStatus;
 import com.autoshop.app.model.Part; // Import Part
-import com.autoshop.app.util.DatabaseHelper;
+import com.autoshop.app.util.AppointmentRepository;
+import com.autoshop.app.util.BackgroundExecutor;
+import com.autoshop.app.util.ImageCache;
+import com.autoshop.app.util.ImageLoader;
 import com.autoshop.app.util.LanguageHelper;
 import com.autoshop.app.util.StorageHelper; // Ensure StorageHelper is imported
 import com.autoshop.app.util.Utils;
@@ -13,7 +17,7 @@ import com.autoshop.app.view.manager.AppointmentTableManager;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
-import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.List; // Import List
 
@@ -21,6 +25,7 @@ public class AppointmentController {
     private final AppointmentFormManager formManager;
     private final AppointmentTableManager tableManager;
     private final Component parentView;
+    private boolean updateWasEnabled;
 
     public AppointmentController(AppointmentFormManager formManager, AppointmentTableManager tableManager, Component parentView) {
         this.formManager = formManager;
@@ -33,41 +38,38 @@ public class AppointmentController {
         ValidationResult data = validateAndFormat(false);
         if (data == null) return; // Validation failed, stop.
 
-        // 2. Check for Duplicates
-        // Note: We don't check parts for duplicates, just core details
-        int duplicateId = tableManager.findDuplicateId(data.phone, data.plate, data.date, data.problem);
-        if (duplicateId != -1) {
-            ThemedDialog.showMessage(parentView,
-                    LanguageHelper.getString("title.duplicate"),
-                    LanguageHelper.getString("msg.err.duplicate"));
-            tableManager.selectById(duplicateId, null);
-            return;
-        }
-
-        // Copy Photo (USB Support)
-        String portablePhotoPath = StorageHelper.copyToAppStorage(data.photo);
-
-        // 3. Create Object (Now passing List<Part>)
-        Appointment newAppt = new Appointment(
-                data.name, data.phone, data.plate, data.brand, data.model,
-                data.year, portablePhotoPath, data.date, data.problem,
-                data.repairs, data.parts, data.obs
-        );
-
-        // 4. Database Action
-        try {
-            DatabaseHelper.addAppointmentTransaction(newAppt);
-            tableManager.refreshData();
+        // 2-4. Duplicate check, photo copy and insert run on a worker; the form is locked meanwhile
+        setSaving(true);
+        BackgroundExecutor.submit(null, () -> {
+            // Note: We don't check parts for duplicates, just core details
+            int duplicateId = tableManager.findDuplicateId(data.phone, data.plate, data.date, data.problem);
+            if (duplicateId != -1) return duplicateId;
+
+            // Copy Photo (USB Support)
+            String portablePhotoPath = StorageHelper.copyToAppStorage(data.photo);
+
+            // Create Object (Now passing List<Part>)
+            Appointment newAppt = new Appointment(
+                    data.name, data.phone, data.plate, data.brand, data.model,
+                    data.year, portablePhotoPath, data.date, data.problem,
+                    data.repairs, data.parts, data.obs
+            );
+            AppointmentRepository.add(newAppt); // Table, dashboard and search update from its change event
+            return -1;
+        }, duplicateId -> {
+            setSaving(false);
+            if (duplicateId != -1) {
+                ThemedDialog.showMessage(parentView,
+                        LanguageHelper.getString("title.duplicate"),
+                        LanguageHelper.getString("msg.err.duplicate"));
+                tableManager.selectById(duplicateId, null);
+                return;
+            }
             formManager.clearAll();
             ThemedDialog.showMessage(parentView,
                     LanguageHelper.getString("title.success"),
                     LanguageHelper.getString("msg.success.add"));
-        } catch (SQLException e) {
-            e.printStackTrace();
-            ThemedDialog.showMessage(parentView,
-                    LanguageHelper.getString("title.error"),
-                    e.getMessage());
-        }
+        }, this::showFailure);
     }
 
     public void updateAppointment() {
@@ -84,39 +86,28 @@ public class AppointmentController {
         ValidationResult data = validateAndFormat(true);
         if (data == null) return;
 
-        // 2. Update Object
-        selected.setClientName(data.name);
-        selected.setClientPhone(data.phone);
-        selected.setCarLicensePlate(data.plate);
-        selected.setCarBrand(data.brand);
-        selected.setCarModel(data.model);
-        selected.setCarYear(data.year);
-        selected.setDate(data.date);
-        selected.setProblemDescription(data.problem);
-        selected.setRepairs(data.repairs);
-
-        selected.setPartList(data.parts); // UPDATED: Set the List<Part>
-
-        selected.setObservations(data.obs);
-
-        // Copy Photo (USB Support)
-        String portablePhotoPath = StorageHelper.copyToAppStorage(data.photo);
-        selected.setCarPhotoPath(portablePhotoPath);
-
-        // 3. Database Action
-        try {
-            DatabaseHelper.updateAppointmentTransaction(selected);
-            tableManager.refreshData();
+        // 2. A new copy with the form's data: 'selected' is the instance the repository and the tables show, it
+        // only changes when the saved row comes back in the change event (never if the save fails)
+        int appointmentId = selected.getAppointmentID();
+        int carId = selected.getCarID();
+        AppointmentStatus status = selected.getStatus();
+
+        // 3. Photo copy (USB Support) and Database Action, on a worker
+        setSaving(true);
+        BackgroundExecutor.submit(null, () -> {
+            Appointment edited = new Appointment(appointmentId, carId, data.date, data.problem, data.repairs,
+                    new ArrayList<>(data.parts), data.obs, status, data.name, data.phone, data.plate,
+                    data.brand, data.model, data.year, StorageHelper.copyToAppStorage(data.photo));
+            AppointmentRepository.update(edited);
+            return null;
+        }, ignored -> {
+            setSaving(false);
             formManager.clearAll();
             tableManager.clearSelection();
             ThemedDialog.showMessage(parentView,
                     LanguageHelper.getString("title.success"),
                     LanguageHelper.getString("msg.success.update"));
-        } catch (SQLException e) {
-            ThemedDialog.showMessage(parentView,
-                    LanguageHelper.getString("title.error"),
-                    e.getMessage());
-        }
+        }, this::showFailure);
     }
 
     public void deleteAppointment() {
@@ -128,14 +119,15 @@ public class AppointmentController {
             return;
         }
         if (ThemedDialog.showConfirm(parentView, LanguageHelper.getString("title.confirm"), LanguageHelper.getString("msg.confirm.delete"))) {
-            try {
-                DatabaseHelper.deleteAppointment(selected.getAppointmentID());
-                tableManager.refreshData();
+            setSaving(true);
+            BackgroundExecutor.submit(null, () -> {
+                AppointmentRepository.delete(selected.getAppointmentID());
+                return null;
+            }, ignored -> {
+                setSaving(false);
                 formManager.clearAll();
                 tableManager.clearSelection();
-            } catch (SQLException e) {
-                ThemedDialog.showMessage(parentView, LanguageHelper.getString("title.error"), e.getMessage());
-            }
+            }, this::showFailure);
         }
     }
 
@@ -213,6 +205,23 @@ public class AppointmentController {
         return "PENDING-" + System.currentTimeMillis();
     }
 
+    // Locks the form buttons while a write is in flight (a second click would race the duplicate check)
+    private void setSaving(boolean saving) {
+        if (saving) updateWasEnabled = formManager.getUpdateButton().isEnabled();
+        formManager.getAddButton().setEnabled(!saving);
+        formManager.getUpdateButton().setEnabled(!saving && updateWasEnabled); // Only enabled with a row loaded
+        formManager.getDeleteButton().setEnabled(!saving);
+        parentView.setCursor(saving ? Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR) : Cursor.getDefaultCursor());
+    }
+
+    private void showFailure(Exception e) {
+        setSaving(false);
+        e.printStackTrace();
+        ThemedDialog.showMessage(parentView,
+                LanguageHelper.getString("title.error"),
+                e.getMessage());
+    }
+
     private void showError(String langKey) {
         ThemedDialog.showMessage(parentView,
                 LanguageHelper.getString("title.error"),
@@ -253,50 +262,46 @@ public class AppointmentController {
             return;
         }
 
-        try {
-            // Check for WEBP
-            if (file.getName().toLowerCase().endsWith(".webp")) {
-                ThemedDialog.showMessage(parentView, "Info",
-                        "Preview not supported for WEBP files.\nThe file is saved safely!");
+        // Check for WEBP
+        if (file.getName().toLowerCase().endsWith(".webp")) {
+            ThemedDialog.showMessage(parentView, "Info",
+                    "Preview not supported for WEBP files.\nThe file is saved safely!");
+            try {
                 if (Desktop.isDesktopSupported()) {
                     Desktop.getDesktop().open(file);
                 }
-                return;
+            } catch (Exception e) {
+                e.printStackTrace();
             }
+            return;
+        }
 
-            // Read Image
-            java.awt.image.BufferedImage rawImage = javax.imageio.ImageIO.read(file);
-            if (rawImage == null) {
+        // Open at once with a placeholder; the preview is read on the image pool (cached, and subsampled from
+        // the original only the first time)
+        JLabel picture = new JLabel(LanguageHelper.getString("lbl.loading"), SwingConstants.CENTER);
+        JDialog photoDialog = new JDialog();
+        photoDialog.setTitle(LanguageHelper.getString("title.photo_viewer") + " - " + file.getName());
+        photoDialog.setLayout(new BorderLayout());
+        photoDialog.add(new JScrollPane(picture), BorderLayout.CENTER);
+        photoDialog.setSize(400, 300);
+        photoDialog.setLocationRelativeTo(parentView);
+        photoDialog.setVisible(true);
+
+        ImageLoader.submit(null, () -> ImageCache.getPreview(relativePath), image -> {
+            if (!photoDialog.isDisplayable()) return; // Closed meanwhile
+            if (image == null) {
+                photoDialog.dispose();
                 ThemedDialog.showMessage(parentView, "Error", "Cannot load image format.");
                 return;
             }
-
-            // Scale Logic
-            int maxWidth = 800;
-            int maxHeight = 600;
-            int imgW = rawImage.getWidth();
-            int imgH = rawImage.getHeight();
-
-            if (imgW > maxWidth || imgH > maxHeight) {
-                double scale = Math.min((double) maxWidth / imgW, (double) maxHeight / imgH);
-                imgW = (int) (imgW * scale);
-                imgH = (int) (imgH * scale);
-            }
-
-            Image scaledImage = rawImage.getScaledInstance(imgW, imgH, Image.SCALE_SMOOTH);
-
-            // Show Dialog
-            JDialog photoDialog = new JDialog();
-            photoDialog.setTitle("Photo Viewer - " + file.getName());
-            photoDialog.setLayout(new BorderLayout());
-            photoDialog.add(new JScrollPane(new JLabel(new ImageIcon(scaledImage))), BorderLayout.CENTER);
-            photoDialog.setSize(imgW + 50, imgH + 80);
+            picture.setText(null);
+            picture.setIcon(new ImageIcon(image));
+            photoDialog.setSize(image.getWidth() + 50, image.getHeight() + 80);
             photoDialog.setLocationRelativeTo(parentView);
-            photoDialog.setVisible(true);
-
-        } catch (Exception e) {
+        }, e -> {
+            photoDialog.dispose();
             e.printStackTrace();
             ThemedDialog.showMessage(parentView, "Error", "Failed to load image: " + e.getMessage());
-        }
+        });
     }
 }
\ No newline at end of file
@@ -1,28 +1,31 @@
 package com.autoshop.app.controller;
 
+import com.autoshop.app.component.AppointmentTableModel;
 import com.autoshop.app.component.ThemedDialog;
 import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.util.AppointmentRepository;
+import com.autoshop.app.util.BackgroundExecutor;
 import com.autoshop.app.util.DatabaseHelper;
 import com.autoshop.app.util.LanguageHelper;
 import com.autoshop.app.util.Utils;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
-import java.sql.SQLException;
-import java.text.SimpleDateFormat;
 import java.util.*;
 import java.util.List;
 import java.util.function.Consumer;
 
 public class DashboardController {
     private final Component view;
-    private final DefaultTableModel tableModel;
-    private final List<Appointment> appointmentList = new ArrayList<>();
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm");
+    private final AppointmentTableModel tableModel;
 
-    // Cache for Calendar counts
-    private List<Appointment> calendarCache = new ArrayList<>();
+    // Calendar load for one month: day_key -> count per status. Re-read when the month or the data changes.
+    private Map<Integer, Map<AppointmentStatus, Integer>> monthLoad = new TreeMap<>();
+    private int loadedMonthKey = -1; // yyyymm00
+    private int loadingMonthKey = -1; // The month a "dashboard.month" task is reading; -1 = none
+    private boolean monthStale;
+    private Runnable onCalendarChanged;
 
     // UI Updaters (Passed from View)
     private final Consumer<String> updateTodayLabel;
@@ -33,102 +36,124 @@ public class DashboardController {
     private Consumer<Date> onSearchDateRequest;
     private Consumer<Date> onCreateRequest;
 
-    public DashboardController(Component view, DefaultTableModel tableModel,
+    public DashboardController(Component view, AppointmentTableModel tableModel,
                                Consumer<String> updateTodayLabel,
                                Consumer<String> updateActiveLabel) {
         this.view = view;
         this.tableModel = tableModel;
         this.updateTodayLabel = updateTodayLabel;
         this.updateActiveLabel = updateActiveLabel;
+
+        // Any change made anywhere in the app (or found by a sync) rebuilds the small today/active list
+        AppointmentRepository.addListener((changes, fresh) -> {
+            rebuild(null);
+            monthStale = true; // Re-read on the next loadMonth(); the old counts answer until then
+            if (onCalendarChanged != null) onCalendarChanged.run();
+        });
     }
 
     public void loadData() {
-        try {
-            DatabaseHelper.autoUpdateStatuses();
-
-            // 1. Load Dashboard Table Data (Today + Active)
-            List<Appointment> dashData = DatabaseHelper.getDashboardAppointments(new Date());
-            appointmentList.clear();
-            appointmentList.addAll(dashData);
-            appointmentList.sort(Comparator.comparing(Appointment::getDate));
-
-            refreshTable();
+        loadData(null);
+    }
 
-            // 2. Update Stats Labels
-            List<Appointment> activeList = DatabaseHelper.getActiveAppointments();
-            long todayCount = appointmentList.stream().filter(a -> Utils.isToday(a.getDate())).count();
+    // Runs on a worker; the table is rebuilt once the sync is done (and again by any change event it publishes).
+    // 'onLoaded' runs on the event thread after the table was redrawn.
+    public void loadData(Runnable onLoaded) {
+        BackgroundExecutor.submit("dashboard.sync", () -> {
+            AppointmentRepository.sync(); // Read-only: status transitions come from StatusTransitionScheduler
+            return null;
+        }, ignored -> rebuild(onLoaded), e -> {
+            e.printStackTrace();
+            ThemedDialog.showMessage(view, "Error", "Database Error: " + e.getMessage());
+        });
+    }
 
-            updateTodayLabel.accept(LanguageHelper.getString("dsb.today") + todayCount);
-            updateActiveLabel.accept(LanguageHelper.getString("dsb.active") + activeList.size());
+    private void rebuild(Runnable onLoaded) {
+        // 1. Dashboard Table Data (Today + Active), read from the repository cache on a worker
+        BackgroundExecutor.submit("dashboard.agenda", () -> {
+            Map<Integer, Appointment> rows = new LinkedHashMap<>();
+            for (Appointment a : AppointmentRepository.getDay(new Date())) rows.put(a.getAppointmentID(), a);
+            for (Appointment a : AppointmentRepository.getByStatus(AppointmentStatus.IN_PROGRESS)) rows.put(a.getAppointmentID(), a);
+
+            List<Appointment> agenda = new ArrayList<>(rows.values());
+            agenda.sort(Comparator.comparing(Appointment::getDate));
+            return agenda;
+        }, agenda -> {
+            // 2. Back on the event thread: swap the list and redraw
+            tableModel.setAppointments(agenda); // One table event, cells are formatted as they are painted
+            updateLabels();
+            if (onLoaded != null) onLoaded.run();
+        }, Throwable::printStackTrace);
+    }
 
-            // 3. Load Calendar Cache (All appointments for counting)
-            this.calendarCache = DatabaseHelper.getAllAppointments();
+    // Stats labels (also re-translates them after a language change)
+    private void updateLabels() {
+        long todayCount = tableModel.asList().stream().filter(a -> Utils.isToday(a.getDate())).count();
+        long activeCount = tableModel.asList().stream().filter(a -> a.getStatus() == AppointmentStatus.IN_PROGRESS).count();
 
-        } catch (SQLException e) {
-            e.printStackTrace();
-            ThemedDialog.showMessage(view, "Error", "Database Error: " + e.getMessage());
-        }
+        updateTodayLabel.accept(LanguageHelper.getString("dsb.today") + todayCount);
+        updateActiveLabel.accept(LanguageHelper.getString("dsb.active") + activeCount);
     }
 
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-        for (Appointment a : appointmentList) {
-
-            // --- 1. Mask the "PENDING-..." Plate ---
-            String displayPlate = a.getCarLicensePlate();
-            if (displayPlate != null && displayPlate.startsWith("PENDING-")) {
-                displayPlate = "-";
-            }
-
-            // --- 2. Mask the NULL Phone ---
-            String displayPhone = a.getClientPhone();
-            if (displayPhone == null || displayPhone.isEmpty()) {
-                displayPhone = "-";
-            }
-
-            // --- 3. Add Row with Clean Data ---
-            tableModel.addRow(new Object[]{
-                    a.getClientName(),
-                    displayPhone,
-                    displayPlate,
-                    a.getCarBrand(),
-                    a.getCarModel(),
-                    dateFormat.format(a.getDate()),
-                    a.getProblemDescription(),
-                    a.getStatus()
-            });
+    // Logic for Calendar Helper & day load: one GROUP BY per month (on a worker), cached until something changes
+    public void loadMonth(Date anyDayOfMonth, Consumer<Map<Integer, Map<AppointmentStatus, Integer>>> onLoaded) {
+        int monthKey = Utils.dayKey(anyDayOfMonth) / 100 * 100;
+        if (monthKey == loadedMonthKey && !monthStale) {
+            BackgroundExecutor.cancel("dashboard.month"); // A slower request for another month must not paint over this one
+            loadingMonthKey = -1;
+            onLoaded.accept(monthLoad);
+            return;
         }
+
+        loadingMonthKey = monthKey;
+        BackgroundExecutor.submit("dashboard.month",
+                () -> DatabaseHelper.getDayHistogram(monthKey + 1, monthKey + 31),
+                load -> {
+                    monthLoad = new TreeMap<>(load);
+                    loadedMonthKey = monthKey;
+                    loadingMonthKey = -1;
+                    monthStale = false;
+                    onLoaded.accept(monthLoad);
+                },
+                e -> {
+                    loadingMonthKey = -1;
+                    e.printStackTrace();
+                });
     }
 
-    // Logic for Calendar Helper
+    // Answered from the month painted on the calendar (kept while a newer one loads), never from the database:
+    // it runs on the event thread. -1 while that month is still loading.
     public int countAppointmentsOnDate(Date date) {
-        int count = 0;
-        Calendar c1 = Calendar.getInstance(); c1.setTime(date);
-        Calendar c2 = Calendar.getInstance();
-
-        for(Appointment a : calendarCache) {
-            c2.setTime(a.getDate());
-            if(c1.get(Calendar.YEAR) == c2.get(Calendar.YEAR) &&
-                    c1.get(Calendar.DAY_OF_YEAR) == c2.get(Calendar.DAY_OF_YEAR)) {
-                count++;
-            }
+        int dayKey = Utils.dayKey(date);
+        if (dayKey / 100 * 100 != loadedMonthKey) {
+            // Normally the calendar's month change already asked for it; if not, the calendar reloads (and repaints)
+            if (dayKey / 100 * 100 != loadingMonthKey && onCalendarChanged != null) onCalendarChanged.run();
+            return -1;
         }
+
+        Map<AppointmentStatus, Integer> day = monthLoad.get(dayKey);
+        if (day == null) return 0;
+
+        int count = 0;
+        for (int n : day.values()) count += n;
         return count;
     }
 
     public void handleJumpRequest(int row) {
-        if (row != -1 && row < appointmentList.size() && onJumpRequest != null) {
-            onJumpRequest.accept(appointmentList.get(row).getAppointmentID());
+        Appointment appointment = tableModel.getAppointmentAt(row);
+        if (appointment != null && onJumpRequest != null) {
+            onJumpRequest.accept(appointment.getAppointmentID());
         }
     }
 
     // Getters for View to attach list
-    public List<Appointment> getAppointmentList() { return appointmentList; }
+    public List<Appointment> getAppointmentList() { return tableModel.asList(); }
 
     // Setters for Navigation
     public void setOnCreateRequest(Consumer<Date> c) { this.onCreateRequest = c; }
     public void setOnJumpRequest(Consumer<Integer> c) { this.onJumpRequest = c; }
     public void setOnSearchDateRequest(Consumer<Date> c) { this.onSearchDateRequest = c; }
+    public void setOnCalendarChanged(Runnable r) { this.onCalendarChanged = r; }
 
     // Proxy methods to trigger navigation
     public void triggerCreate(Date d) { if(onCreateRequest != null) onCreateRequest.accept(d); }
@@ -1,41 +1,179 @@
 package com.autoshop.app.controller;
 
+import com.autoshop.app.component.AppointmentTableModel;
 import com.autoshop.app.component.ThemedDialog;
 import com.autoshop.app.model.Appointment;
 import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.model.ChangeSet;
+import com.autoshop.app.util.AppointmentExporter;
+import com.autoshop.app.util.AppointmentRepository;
+import com.autoshop.app.util.BackgroundExecutor;
 import com.autoshop.app.util.DatabaseHelper;
 import com.autoshop.app.util.LanguageHelper;
+import com.autoshop.app.util.Utils;
 
+import javax.swing.*;
+import javax.swing.filechooser.FileNameExtensionFilter;
 import java.awt.*;
-import java.sql.SQLException;
+import java.io.File;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
 
 public class SearchController {
     private final Component parentView;
 
+    // Last search, so results can be kept current without running it again
+    private String lastKeyword;
+    private AppointmentStatus lastStatus;
+    private Date lastFrom, lastTo;
+    private int searchesShown; // Bumped when a search's rows are shown; older re-checks are dropped
+    private AppointmentTableModel results;
+
     public SearchController(Component parentView) {
         this.parentView = parentView;
+
+        // Results follow edits made anywhere in the app
+        AppointmentRepository.addListener(this::applyChanges);
     }
 
-    public List<Appointment> search(String keyword, Object statusObj, Date from, Date to) {
-        AppointmentStatus status = (statusObj instanceof AppointmentStatus) ? (AppointmentStatus) statusObj : null;
+    // The results table of the view; patched row by row when appointments change
+    public void bindResults(AppointmentTableModel results) {
+        this.results = results;
+    }
 
-        try {
-            List<Appointment> results = DatabaseHelper.searchAppointments(keyword, status, from, to);
+    /**
+     * Runs the search on a worker and hands the rows to 'onResults' on the event thread.
+     * A new search supersedes one still running.
+     */
+    public void search(String keyword, Object statusObj, Date from, Date to, Consumer<List<Appointment>> onResults) {
+        AppointmentStatus status = (statusObj instanceof AppointmentStatus) ? (AppointmentStatus) statusObj : null;
 
+        runSearch(keyword, status, from, to, results -> {
             if (results.isEmpty()) {
                 ThemedDialog.showMessage(parentView, "Info", LanguageHelper.getString("msg.err.search"));
             }
-            return results;
-
-        } catch (SQLException e) {
+            onResults.accept(results);
+        }, e -> {
             e.printStackTrace();
             ThemedDialog.showMessage(parentView,
                     LanguageHelper.getString("title.error"),
                     LanguageHelper.getString("msg.err.search"));
-            return new ArrayList<>();
+            onResults.accept(new ArrayList<>());
+        });
+    }
+
+    /**
+     * Exports every appointment matching the filter (all empty = the full history) to CSV or JSON, chosen by the
+     * file extension. Runs on a worker with a cancellable progress dialog; rows never pile up in memory.
+     */
+    public void export(String keyword, Object statusObj, Date from, Date to) {
+        AppointmentStatus status = (statusObj instanceof AppointmentStatus) ? (AppointmentStatus) statusObj : null;
+
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(LanguageHelper.getString("title.export"));
+        FileNameExtensionFilter csv = new FileNameExtensionFilter("CSV", "csv");
+        chooser.addChoosableFileFilter(csv);
+        chooser.addChoosableFileFilter(new FileNameExtensionFilter("JSON", "json"));
+        chooser.setFileFilter(csv);
+        chooser.setSelectedFile(new File("appointments_" + Utils.getCurrentTimeStamp() + ".csv"));
+        if (chooser.showSaveDialog(parentView) != JFileChooser.APPROVE_OPTION) return;
+
+        // 1. Extension follows the chosen filter when the name has none
+        File file = chooser.getSelectedFile();
+        if (!file.getName().contains(".") && chooser.getFileFilter() instanceof FileNameExtensionFilter filter) {
+            file = new File(file.getParentFile(), file.getName() + "." + filter.getExtensions()[0]);
+        }
+        File target = file;
+
+        // 2. Export on the long-job thread; the dialog is updated on the event thread
+        ProgressMonitor monitor = new ProgressMonitor(parentView, LanguageHelper.getString("export.progress"), target.getName(), 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        AtomicBoolean cancelled = new AtomicBoolean();
+        AppointmentExporter exporter = new AppointmentExporter(AppointmentExporter.Format.forFile(target.toPath()),
+                (done, total) -> SwingUtilities.invokeLater(() -> {
+                    if (monitor.isCanceled()) cancelled.set(true);
+                    monitor.setNote(done + " / " + total);
+                    monitor.setProgress(total == 0 ? 100 : done * 100 / total);
+                }), cancelled::get);
+
+        BackgroundExecutor.submitLong(() -> exporter.export(target.toPath(), keyword, status, from, to), count -> {
+            monitor.close();
+            ThemedDialog.showMessage(parentView,
+                    LanguageHelper.getString("title.success"),
+                    String.format(LanguageHelper.getString("export.success"), count, target.getAbsolutePath()));
+        }, e -> {
+            monitor.close();
+            if (e instanceof CancellationException) return;
+            e.printStackTrace();
+            ThemedDialog.showMessage(parentView,
+                    LanguageHelper.getString("title.error"),
+                    LanguageHelper.getString("export.error"));
+        });
+    }
+
+    /**
+     * AppointmentRepository listener. Edited result rows are swapped for their fresh copies, deleted ones removed.
+     * Edited rows are then checked against the whole filter (keyword, status, dates) on a worker, and dropped
+     * when they no longer match. Newly created appointments only show up on the next search.
+     */
+    private void applyChanges(ChangeSet changes, Map<Integer, Appointment> fresh) {
+        if (results == null || lastKeyword == null) return; // No search yet
+
+        // 1. The repository lost track of changes: run the same search again (quietly)
+        if (!changes.isComplete()) {
+            runSearch(lastKeyword, lastStatus, lastFrom, lastTo, results::setAppointments, Throwable::printStackTrace);
+            return;
         }
+
+        // 2. Patch the rows, dropping those that were deleted.
+        // Backwards, so removing a row does not shift the ones still to visit; each patch is one table event.
+        Set<Integer> edited = new HashSet<>();
+        for (int row = results.getRowCount() - 1; row >= 0; row--) {
+            int id = results.getAppointmentAt(row).getAppointmentID();
+            if (changes.getDeletedIds().contains(id)) {
+                results.remove(row);
+            } else if (changes.getUpdatedIds().contains(id)) {
+                Appointment updated = fresh.get(id);
+                if (updated == null) {
+                    results.remove(row);
+                } else {
+                    results.set(row, updated);
+                    edited.add(id);
+                }
+            }
+        }
+        if (edited.isEmpty()) return;
+
+        // 3. Ask the search itself which edited rows still match (a keyword may be in any field, parts included)
+        String keyword = lastKeyword;
+        AppointmentStatus status = lastStatus;
+        Date from = lastFrom, to = lastTo;
+        int shown = searchesShown;
+        BackgroundExecutor.submit(null, () -> DatabaseHelper.filterSearchMatches(keyword, status, from, to, edited), matches -> {
+            if (shown != searchesShown) return; // Another search replaced these rows meanwhile
+            for (int row = results.getRowCount() - 1; row >= 0; row--) {
+                int id = results.getAppointmentAt(row).getAppointmentID();
+                if (edited.contains(id) && !matches.contains(id)) results.remove(row);
+            }
+        }, Throwable::printStackTrace);
+    }
+
+    private void runSearch(String keyword, AppointmentStatus status, Date from, Date to,
+                           Consumer<List<Appointment>> onFound, Consumer<Exception> onError) {
+        BackgroundExecutor.submit("search", () -> DatabaseHelper.searchAppointments(keyword, status, from, to), found -> {
+            lastKeyword = keyword == null ? "" : keyword;
+            lastStatus = status;
+            lastFrom = from;
+            lastTo = to;
+            searchesShown++;
+            onFound.accept(found);
+        }, onError);
     }
-}
\ No newline at end of file
+}
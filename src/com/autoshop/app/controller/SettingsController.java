@@ -1,6 +1,10 @@
 package com.autoshop.app.controller;
 
+import com.autoshop.app.component.NotificationService;
 import com.autoshop.app.component.ThemedDialog;
+import com.autoshop.app.util.BackgroundExecutor;
+import com.autoshop.app.util.BackupService;
+import com.autoshop.app.util.CsvImporter;
 import com.autoshop.app.util.LanguageHelper;
 import com.autoshop.app.util.PreferencesHelper;
 import com.autoshop.app.util.Utils;
@@ -8,8 +12,8 @@ import com.autoshop.app.util.Utils;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
-import java.io.IOException;
 import java.util.Locale;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SettingsController {
     private final Component parentView;
@@ -25,16 +29,19 @@ public class SettingsController {
         chooser.setDialogTitle(LanguageHelper.getString("title.backup"));
 
         if (chooser.showSaveDialog(parentView) == JFileChooser.APPROVE_OPTION) {
-            try {
-                Utils.copyFile(new File("appointments.db"), chooser.getSelectedFile());
-                ThemedDialog.showMessage(parentView,
-                        LanguageHelper.getString("title.success"),
-                        LanguageHelper.getString("backup.success"));
-            } catch (IOException ex) {
+            File target = chooser.getSelectedFile();
+            // Consistent snapshot of the live database, taken on the long-job thread while the app keeps running
+            BackgroundExecutor.submitLong(() -> {
+                BackupService.backupTo(target);
+                return null;
+            }, ignored -> ThemedDialog.showMessage(parentView,
+                    LanguageHelper.getString("title.success"),
+                    LanguageHelper.getString("backup.success")), ex -> {
+                ex.printStackTrace();
                 ThemedDialog.showMessage(parentView,
                         LanguageHelper.getString("title.error"),
                         LanguageHelper.getString("backup.error"));
-            }
+            });
         }
     }
 
@@ -49,20 +56,59 @@ public class SettingsController {
         chooser.setDialogTitle(LanguageHelper.getString("title.restore"));
 
         if (chooser.showOpenDialog(parentView) == JFileChooser.APPROVE_OPTION) {
-            try {
-                Utils.copyFile(chooser.getSelectedFile(), new File("appointments.db"));
-                ThemedDialog.showMessage(parentView,
-                        LanguageHelper.getString("title.success"),
-                        LanguageHelper.getString("restore.success"));
-                System.exit(0); // Force restart to reload DB connection
-            } catch (IOException ex) {
+            File source = chooser.getSelectedFile();
+            // Swapped in place on the long-job thread; every view reloads itself afterwards, no restart needed
+            BackgroundExecutor.submitLong(() -> {
+                BackupService.restoreFrom(source);
+                return null;
+            }, ignored -> ThemedDialog.showMessage(parentView,
+                    LanguageHelper.getString("title.success"),
+                    LanguageHelper.getString("restore.success")), ex -> {
+                ex.printStackTrace();
                 ThemedDialog.showMessage(parentView,
                         LanguageHelper.getString("title.error"),
-                        LanguageHelper.getString("restore.error"));
-            }
+                        LanguageHelper.getString("restore.error") + "\n" + ex.getMessage());
+            });
         }
     }
 
+    /**
+     * Imports appointment history from a CSV file on a worker, with a cancellable progress dialog.
+     * Cancelling keeps what was imported so far; importing the same file again continues from there.
+     */
+    public void importCsv() {
+        JFileChooser chooser = new JFileChooser();
+        chooser.setDialogTitle(LanguageHelper.getString("title.import"));
+        chooser.setFileFilter(new javax.swing.filechooser.FileNameExtensionFilter("CSV", "csv"));
+        if (chooser.showOpenDialog(parentView) != JFileChooser.APPROVE_OPTION) return;
+
+        File file = chooser.getSelectedFile();
+        ProgressMonitor monitor = new ProgressMonitor(parentView, LanguageHelper.getString("import.progress"), file.getName(), 0, 1000);
+        monitor.setMillisToDecideToPopup(200);
+        AtomicBoolean cancelled = new AtomicBoolean(); // Read by the worker between batches
+
+        CsvImporter importer = new CsvImporter(file, (rows, bytes, total) -> SwingUtilities.invokeLater(() -> {
+            if (monitor.isCanceled()) cancelled.set(true);
+            monitor.setProgress(total == 0 ? 0 : (int) (bytes * 1000 / total));
+        }), cancelled::get);
+
+        BackgroundExecutor.submitLong(importer::run, result -> {
+            monitor.close();
+            String message = String.format(LanguageHelper.getString("import.success"), result.imported, result.rejected, result.skipped);
+            if (result.rejectFile != null && result.rejected > 0) {
+                message += "\n\n" + String.format(LanguageHelper.getString("import.rejected"), result.rejectFile.getAbsolutePath());
+            }
+            if (result.cancelled) message += "\n\n" + LanguageHelper.getString("import.cancelled");
+            ThemedDialog.showMessage(parentView, LanguageHelper.getString("title.import"), message);
+        }, ex -> {
+            monitor.close();
+            ex.printStackTrace();
+            ThemedDialog.showMessage(parentView,
+                    LanguageHelper.getString("title.error"),
+                    LanguageHelper.getString("import.error") + "\n" + ex.getMessage());
+        });
+    }
+
     public void setLanguage(String code, Locale locale) {
         LanguageHelper.setLocale(locale);
         PreferencesHelper.saveLanguage(code);
@@ -74,6 +120,7 @@ public class SettingsController {
 
     public void setNotificationTime(int minutes) {
         PreferencesHelper.setNotificationLeadTime(minutes);
+        NotificationService.leadTimeChanged();
     }
 
     // Getters for initial state
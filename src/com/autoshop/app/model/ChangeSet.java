@@ -0,0 +1,42 @@
+package com.autoshop.app.model;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Appointments that changed between two change-log versions (see DatabaseHelper.getChangesSince).
+ * Each appointment id appears in at most one of the three sets.
+ */
+public class ChangeSet {
+    private final long fromVersion;
+    private final long toVersion;
+    private final boolean complete; // false when the log no longer reaches back to fromVersion
+    private final Set<Integer> insertedIds = new LinkedHashSet<>();
+    private final Set<Integer> updatedIds = new LinkedHashSet<>();
+    private final Set<Integer> deletedIds = new LinkedHashSet<>();
+
+    public ChangeSet(long fromVersion, long toVersion, boolean complete) {
+        this.fromVersion = fromVersion;
+        this.toVersion = toVersion;
+        this.complete = complete;
+    }
+
+    // Getters
+    public long getFromVersion() { return fromVersion; }
+    public long getToVersion() { return toVersion; }
+    public boolean isComplete() { return complete; }
+    public Set<Integer> getInsertedIds() { return insertedIds; }
+    public Set<Integer> getUpdatedIds() { return updatedIds; }
+    public Set<Integer> getDeletedIds() { return deletedIds; }
+
+    public boolean isEmpty() {
+        return complete && insertedIds.isEmpty() && updatedIds.isEmpty() && deletedIds.isEmpty();
+    }
+
+    // Inserted + updated: the rows a view has to (re)load
+    public Set<Integer> getChangedIds() {
+        Set<Integer> ids = new LinkedHashSet<>(insertedIds);
+        ids.addAll(updatedIds);
+        return ids;
+    }
+}
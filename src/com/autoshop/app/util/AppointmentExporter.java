@@ -0,0 +1,214 @@
+package com.autoshop.app.util;
+
+import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.model.Part;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.CancellationException;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Writes appointments (a search, or the whole history) to CSV or JSON.
+ * <p>
+ * Rows are streamed from the database cursor straight into a buffered file channel, one appointment at a
+ * time, so exporting any number of rows takes the same memory. The file is written under a temporary name
+ * and moved into place at the end: a failed or cancelled export never leaves half a file behind.
+ * The CSV columns are the ones CsvImporter reads, so an export can be imported again.
+ */
+public class AppointmentExporter {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+    private static final int PROGRESS_EVERY = 1000; // Rows between progress calls (and cancel checks)
+    private static final List<String> CSV_HEADER = List.of("id", "name", "phone", "plate", "brand", "model", "year",
+            "date", "problem", "repairs", "observations", "status", "parts");
+
+    public enum Format {
+        CSV, JSON;
+
+        // From the file extension; CSV unless it ends in .json
+        public static Format forFile(Path file) {
+            return file.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".json") ? JSON : CSV;
+        }
+    }
+
+    /**
+     * Called every PROGRESS_EVERY rows and at the end, on the exporting thread.
+     */
+    public interface ProgressListener {
+        void progress(int done, int total);
+    }
+
+    private final Format format;
+    private final ProgressListener listener;
+    private final BooleanSupplier cancelRequested;
+    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm"); // What CsvImporter reads first
+
+    public AppointmentExporter(Format format, ProgressListener listener, BooleanSupplier cancelRequested) {
+        this.format = format;
+        this.listener = listener;
+        this.cancelRequested = cancelRequested != null ? cancelRequested : () -> false;
+    }
+
+    /**
+     * Exports what searchAppointments(keyword, status, from, to) would return; all filters null = the full history.
+     * @return number of appointments written
+     * @throws CancellationException if cancelled (the target is left untouched)
+     */
+    public int export(Path target, String keyword, AppointmentStatus status, Date from, Date to) throws IOException, SQLException {
+        int total = DatabaseHelper.countSearchResults(keyword, status, from, to);
+        Path temp = target.resolveSibling(target.getFileName() + ".part");
+
+        int written;
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+             BufferedWriter out = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8), BUFFER_SIZE)) {
+
+            // 1. Header / opening bracket
+            if (format == Format.CSV) CsvImporter.writeCsvLine(out, CSV_HEADER);
+            else out.write("[");
+
+            // 2. Rows, straight from the cursor
+            int[] done = {0};
+            written = DatabaseHelper.streamSearchResults(keyword, status, from, to, appointment -> {
+                if (format == Format.CSV) writeCsv(out, appointment);
+                else writeJson(out, appointment, done[0] == 0);
+
+                if (++done[0] % PROGRESS_EVERY == 0) {
+                    if (listener != null) listener.progress(done[0], Math.max(total, done[0]));
+                    if (cancelRequested.getAsBoolean()) throw new CancellationException();
+                }
+            });
+
+            // 3. Closing bracket
+            if (format == Format.JSON) out.write((written == 0 ? "]" : System.lineSeparator() + "]") + System.lineSeparator());
+        } catch (IOException | SQLException | RuntimeException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+
+        try {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (listener != null) listener.progress(written, written);
+        return written;
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: CSV
+    // =================================================================================================================
+
+    private void writeCsv(Writer out, Appointment a) throws IOException {
+        List<String> parts = new ArrayList<>(a.getPartList().size());
+        for (Part p : a.getPartList()) parts.add(p.getCode() + ":" + p.getName() + ":" + p.getSupplier().name());
+
+        CsvImporter.writeCsvLine(out, List.of(
+                String.valueOf(a.getAppointmentID()),
+                nullToEmpty(a.getClientName()),
+                nullToEmpty(a.getClientPhone()),
+                exportedPlate(a.getCarLicensePlate()),
+                nullToEmpty(a.getCarBrand()),
+                nullToEmpty(a.getCarModel()),
+                String.valueOf(a.getCarYear()),
+                dateFormat.format(a.getDate()),
+                nullToEmpty(a.getProblemDescription()),
+                nullToEmpty(a.getRepairs()),
+                nullToEmpty(a.getObservations()),
+                a.getStatus().name(),
+                String.join(";", parts)));
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: JSON
+    // =================================================================================================================
+
+    // One object per line, so the file can also be read line by line
+    private void writeJson(Writer out, Appointment a, boolean first) throws IOException {
+        out.write(first ? System.lineSeparator() : "," + System.lineSeparator());
+        out.write("  {\"id\":");
+        out.write(String.valueOf(a.getAppointmentID()));
+        field(out, "name", a.getClientName());
+        field(out, "phone", a.getClientPhone());
+        field(out, "plate", exportedPlate(a.getCarLicensePlate()));
+        field(out, "brand", a.getCarBrand());
+        field(out, "model", a.getCarModel());
+        out.write(",\"year\":");
+        out.write(String.valueOf(a.getCarYear()));
+        field(out, "date", dateFormat.format(a.getDate()));
+        field(out, "problem", a.getProblemDescription());
+        field(out, "repairs", a.getRepairs());
+        field(out, "observations", a.getObservations());
+        field(out, "status", a.getStatus().name());
+
+        out.write(",\"parts\":[");
+        boolean firstPart = true;
+        for (Part p : a.getPartList()) {
+            if (!firstPart) out.write(',');
+            firstPart = false;
+            out.write("{\"code\":");
+            string(out, p.getCode());
+            field(out, "name", p.getName());
+            field(out, "supplier", p.getSupplier().name());
+            out.write('}');
+        }
+        out.write("]}");
+    }
+
+    private static void field(Writer out, String name, String value) throws IOException {
+        out.write(",\"");
+        out.write(name);
+        out.write("\":");
+        string(out, value);
+    }
+
+    private static void string(Writer out, String value) throws IOException {
+        if (value == null) {
+            out.write("null");
+            return;
+        }
+        out.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.write("\\\"");
+                case '\\' -> out.write("\\\\");
+                case '\n' -> out.write("\\n");
+                case '\r' -> out.write("\\r");
+                case '\t' -> out.write("\\t");
+                default -> {
+                    if (c < 0x20) out.write(String.format("\\u%04x", (int) c));
+                    else out.write(c);
+                }
+            }
+        }
+        out.write('"');
+    }
+
+    // --- HELPERS ---
+
+    // Placeholder plates are internal; an empty plate gets a fresh one on import
+    private static String exportedPlate(String plate) {
+        return plate == null || plate.startsWith("PENDING-") ? "" : plate;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+}
@@ -0,0 +1,365 @@
+package com.autoshop.app.util;
+
+import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.model.ChangeSet;
+
+import javax.swing.*;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+/**
+ * One shared, in-memory copy of the appointments the screens are looking at, indexed by id, day and status.
+ * <p>
+ * Data is loaded a month at a time (and per status for the IN_PROGRESS list), on first use. Writes go
+ * through here: they hit SQLite first, then sync() reads the change log and reloads exactly the rows that
+ * changed. Every sync that finds changes is published to the listeners, so views patch their own rows
+ * instead of querying again. Months nobody asked for in a while are evicted, the current month never is.
+ */
+public class AppointmentRepository {
+
+    private static final long EVICT_AFTER_MS = 10 * 60 * 1000;
+    private static final Pattern NOT_ALNUM = Pattern.compile("[^A-Z0-9]+");
+
+    /**
+     * Receives every change found by sync(). 'fresh' holds the new copy of each inserted/updated appointment.
+     * When changes.isComplete() is false the listener should reload whatever it shows.
+     * Always called later on the Swing event thread, in the order the changes happened.
+     */
+    public interface Listener {
+        void appointmentsChanged(ChangeSet changes, Map<Integer, Appointment> fresh);
+    }
+
+    private static final Map<Integer, Appointment> byId = new HashMap<>();
+    private static final TreeMap<Long, Set<Integer>> byDay = new TreeMap<>();
+    private static final Map<AppointmentStatus, Set<Integer>> byStatus = new EnumMap<>(AppointmentStatus.class);
+    private static final Map<String, Integer> byDupKey = new HashMap<>(); // Duplicate key -> oldest cached appointment
+
+    // What is cached completely: month start -> last time it was used, and whole statuses
+    private static final Map<Long, Long> loadedMonths = new HashMap<>();
+    private static final Set<AppointmentStatus> loadedStatuses = EnumSet.noneOf(AppointmentStatus.class);
+
+    private static long version = -1;
+    private static final List<Listener> listeners = new CopyOnWriteArrayList<>();
+    private static final List<Runnable> pendingEvents = new ArrayList<>(); // Published once the lock is released
+
+    // =================================================================================================================
+    //  SECTION 1: READS (served from the cache, loaded on first use)
+    // =================================================================================================================
+
+    public static List<Appointment> getDay(Date day) throws SQLException {
+        long dayStart = startOfDay(day.getTime());
+        List<Appointment> rows;
+        synchronized (AppointmentRepository.class) {
+            ensureMonth(dayStart);
+            rows = sorted(byDay.getOrDefault(dayStart, Collections.emptySet()));
+        }
+        publishPending();
+        return rows;
+    }
+
+    public static List<Appointment> getByStatus(AppointmentStatus status) throws SQLException {
+        List<Appointment> list;
+        synchronized (AppointmentRepository.class) {
+            if (!loadedStatuses.contains(status)) {
+                syncLocked();
+                for (Appointment a : DatabaseHelper.getAppointmentsByStatus(status)) index(a);
+                loadedStatuses.add(status);
+            }
+            list = sorted(byStatus.getOrDefault(status, Collections.emptySet()));
+        }
+        publishPending();
+        return list;
+    }
+
+    // Cached copy if there is one, otherwise read from the database (not cached). Null if it does not exist.
+    public static Appointment get(int id) throws SQLException {
+        synchronized (AppointmentRepository.class) {
+            Appointment cached = byId.get(id);
+            if (cached != null) return cached;
+        }
+        List<Appointment> found = DatabaseHelper.getAppointmentsByIds(List.of(id));
+        return found.isEmpty() ? null : found.get(0);
+    }
+
+    /**
+     * Same client phone, car, minute and description. Returns the existing id or -1.
+     * Answered from memory when the month is cached, otherwise by the unique index on Appointments.dup_key.
+     */
+    public static int findDuplicateId(String phone, String plate, Date date, String desc) throws SQLException {
+        String key = duplicateKey(phone == null ? null : Utils.normalizePhone(phone), plate, date, desc); // Phones are stored normalized
+        if (key == null) return -1;
+
+        try {
+            synchronized (AppointmentRepository.class) {
+                syncLocked(); // Edits made elsewhere count too
+                Integer id = byDupKey.get(key);
+                if (id != null) return id;
+                if (loadedMonths.containsKey(startOfMonth(date.getTime()))) return -1; // Every row of that minute is here
+            }
+        } finally {
+            publishPending();
+        }
+        return DatabaseHelper.findDuplicateId(key);
+    }
+
+    /**
+     * The duplicate key of an appointment, as stored in Appointments.dup_key (see DatabaseHelper.claimDupKeys):
+     * phone (stored normalized), plate in upper case without spaces or dashes, minute, and a hash of the problem
+     * trimmed and in lower case, so the index does not hold whole descriptions. Null without a date.
+     */
+    public static String duplicateKey(String phone, String plate, Date date, String problem) {
+        if (date == null) return null;
+        String plateKey = plate == null ? "" : NOT_ALNUM.matcher(plate.toUpperCase(Locale.ROOT)).replaceAll("");
+        String problemKey = problem == null ? "" : problem.trim().toLowerCase(Locale.ROOT);
+        return (phone == null ? "" : phone) + '\u001f' + plateKey + '\u001f' + date.getTime() / 60000 + '\u001f'
+                + problemHash(problemKey);
+    }
+
+    // First 64 bits of the SHA-256, in hex: plenty to tell apart the problems of one car in one minute
+    private static String problemHash(String problem) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256
+        }
+        byte[] hash = digest.digest(problem.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(hash, 0, 8);
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: WRITES (SQLite first, then the cache and listeners)
+    // =================================================================================================================
+
+    public static void add(Appointment appointment) throws SQLException {
+        DatabaseHelper.addAppointmentTransaction(appointment);
+        sync();
+    }
+
+    public static void update(Appointment appointment) throws SQLException {
+        DatabaseHelper.updateAppointmentTransaction(appointment);
+        sync();
+    }
+
+    // Status-only write for one or many appointments, in one transaction. Returns how many rows changed.
+    public static int updateStatus(Collection<Integer> ids, AppointmentStatus status) throws SQLException {
+        int changed = DatabaseHelper.updateStatuses(ids, status);
+        if (changed > 0) sync();
+        return changed;
+    }
+
+    public static void delete(int id) throws SQLException {
+        DatabaseHelper.deleteAppointment(id);
+        sync();
+    }
+
+    // =================================================================================================================
+    //  SECTION 3: SYNC & EVENTS
+    // =================================================================================================================
+
+    /**
+     * Catches the cache up with the database (including edits made outside the repository) and notifies
+     * the listeners. With nothing changed this is a single version lookup.
+     */
+    public static void sync() throws SQLException {
+        synchronized (AppointmentRepository.class) {
+            syncLocked();
+            evictCold();
+        }
+        publishPending();
+    }
+
+    /**
+     * Drops everything (e.g. after the database file was replaced) and tells the listeners to reload.
+     */
+    public static void invalidate() {
+        synchronized (AppointmentRepository.class) {
+            clear();
+            ChangeSet reload = new ChangeSet(version, version, false);
+            pendingEvents.add(() -> notifyListeners(reload, Collections.emptyMap()));
+            version = -1;
+        }
+        publishPending();
+    }
+
+    public static void addListener(Listener listener) {
+        listeners.add(listener);
+    }
+
+    public static void removeListener(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    // Applies the change log to the cache and queues the notification (sent by publishPending)
+    private static void syncLocked() throws SQLException {
+        // 1. First use: nothing cached yet, just remember where the log is
+        if (version < 0) {
+            version = DatabaseHelper.getChangeVersion();
+            return;
+        }
+
+        ChangeSet changes = DatabaseHelper.getChangesSince(version);
+        if (changes.isEmpty()) return;
+
+        // 2. Log was pruned past our version: start over
+        if (!changes.isComplete()) {
+            clear();
+            version = changes.getToVersion();
+            pendingEvents.add(() -> notifyListeners(changes, Collections.emptyMap()));
+            return;
+        }
+
+        // 3. Reload the changed rows once; keep the ones that fall in what we have cached
+        Map<Integer, Appointment> fresh = new HashMap<>();
+        for (Appointment a : DatabaseHelper.getAppointmentsByIds(changes.getChangedIds())) {
+            fresh.put(a.getAppointmentID(), a);
+        }
+        for (int id : changes.getDeletedIds()) unindex(id);
+        for (int id : changes.getChangedIds()) {
+            unindex(id);
+            Appointment a = fresh.get(id);
+            if (a != null && isCovered(a)) index(a);
+        }
+
+        version = changes.getToVersion();
+        Map<Integer, Appointment> published = Collections.unmodifiableMap(fresh);
+        pendingEvents.add(() -> notifyListeners(changes, published));
+    }
+
+    // Listeners touch Swing components: they run on the event thread, never while holding the lock.
+    // Always queued (even from the event thread) so events from different threads keep their order.
+    private static void publishPending() {
+        synchronized (AppointmentRepository.class) {
+            for (Runnable event : pendingEvents) SwingUtilities.invokeLater(event);
+            pendingEvents.clear();
+        }
+    }
+
+    private static void notifyListeners(ChangeSet changes, Map<Integer, Appointment> fresh) {
+        for (Listener listener : listeners) {
+            try {
+                listener.appointmentsChanged(changes, fresh);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // =================================================================================================================
+    //  SECTION 4: INDEXES & EVICTION (call with the class lock held)
+    // =================================================================================================================
+
+    private static void ensureMonth(long dayStart) throws SQLException {
+        long monthStart = startOfMonth(dayStart);
+        if (!loadedMonths.containsKey(monthStart)) {
+            // Catch up first, so the month is loaded on top of a cache that matches 'version'
+            syncLocked();
+            int firstDay = Utils.dayKey(new Date(monthStart)); // yyyymm01
+            for (Appointment a : DatabaseHelper.getAppointmentsForDays(firstDay, firstDay + 30)) index(a);
+        }
+        loadedMonths.put(monthStart, System.currentTimeMillis());
+    }
+
+    private static boolean isCovered(Appointment a) {
+        return loadedMonths.containsKey(startOfMonth(a.getDate().getTime())) || loadedStatuses.contains(a.getStatus());
+    }
+
+    private static void index(Appointment a) {
+        unindex(a.getAppointmentID());
+        byId.put(a.getAppointmentID(), a);
+        byDay.computeIfAbsent(startOfDay(a.getDate().getTime()), k -> new HashSet<>()).add(a.getAppointmentID());
+        byStatus.computeIfAbsent(a.getStatus(), k -> new HashSet<>()).add(a.getAppointmentID());
+        byDupKey.merge(dupKeyOf(a), a.getAppointmentID(), Math::min);
+    }
+
+    private static void unindex(int id) {
+        Appointment old = byId.remove(id);
+        if (old == null) return;
+
+        long day = startOfDay(old.getDate().getTime());
+        Set<Integer> dayIds = byDay.get(day);
+        if (dayIds != null && dayIds.remove(id) && dayIds.isEmpty()) byDay.remove(day);
+
+        Set<Integer> statusIds = byStatus.get(old.getStatus());
+        if (statusIds != null) statusIds.remove(id);
+
+        // Another cached copy of the same visit (always the same day) holds the key now
+        String key = dupKeyOf(old);
+        if (byDupKey.remove(key, id) && dayIds != null) {
+            for (int other : dayIds) {
+                if (key.equals(dupKeyOf(byId.get(other)))) byDupKey.merge(key, other, Math::min);
+            }
+        }
+    }
+
+    private static String dupKeyOf(Appointment a) {
+        return duplicateKey(a.getClientPhone(), a.getCarLicensePlate(), a.getDate(), a.getProblemDescription());
+    }
+
+    // Forget months not used for EVICT_AFTER_MS (never the current one). Rows still needed by a status list stay.
+    private static void evictCold() {
+        long now = System.currentTimeMillis();
+        long currentMonth = startOfMonth(now);
+
+        Iterator<Map.Entry<Long, Long>> it = loadedMonths.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<Long, Long> month = it.next();
+            if (month.getKey() == currentMonth || now - month.getValue() < EVICT_AFTER_MS) continue;
+            it.remove();
+
+            List<Integer> ids = new ArrayList<>();
+            for (Set<Integer> dayIds : byDay.subMap(month.getKey(), nextMonth(month.getKey())).values()) ids.addAll(dayIds);
+            for (int id : ids) {
+                if (!loadedStatuses.contains(byId.get(id).getStatus())) unindex(id);
+            }
+        }
+    }
+
+    private static void clear() {
+        byId.clear();
+        byDay.clear();
+        byStatus.clear();
+        byDupKey.clear();
+        loadedMonths.clear();
+        loadedStatuses.clear();
+    }
+
+    private static List<Appointment> sorted(Set<Integer> ids) {
+        List<Appointment> list = new ArrayList<>(ids.size());
+        for (int id : ids) list.add(byId.get(id));
+        list.sort(Comparator.comparing(Appointment::getDate));
+        return list;
+    }
+
+    // --- DATE HELPERS ---
+
+    private static long startOfDay(long time) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(time);
+        cal.set(Calendar.HOUR_OF_DAY, 0);
+        cal.set(Calendar.MINUTE, 0);
+        cal.set(Calendar.SECOND, 0);
+        cal.set(Calendar.MILLISECOND, 0);
+        return cal.getTimeInMillis();
+    }
+
+    private static long startOfMonth(long time) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(startOfDay(time));
+        cal.set(Calendar.DAY_OF_MONTH, 1);
+        return cal.getTimeInMillis();
+    }
+
+    private static long nextMonth(long monthStart) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(monthStart);
+        cal.add(Calendar.MONTH, 1);
+        return cal.getTimeInMillis();
+    }
+}
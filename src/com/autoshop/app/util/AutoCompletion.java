@@ -3,25 +3,67 @@ package com.autoshop.app.util;
 import javax.swing.*;
 import javax.swing.text.JTextComponent;
 import java.awt.event.*;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Suggestion popup for an editable combo box.
+ * <p>
+ * Lookups wait for a short pause in typing (the debounce window), then run on a BackgroundExecutor worker;
+ * a newer keystroke supersedes the lookup in flight, and results that no longer match the text are dropped.
+ * Each field remembers its recent answers, so backspacing to an earlier prefix shows them without a lookup.
+ */
 public class AutoCompletion extends KeyAdapter {
+    public static final int DEFAULT_DEBOUNCE_MS = 120;
+    private static final int CACHE_SIZE = 32;
+    private static final long CACHE_TTL_MS = 15_000; // Cached answers may miss what was saved since
+
     private final JComboBox<String> comboBox;
     private final JTextComponent editor;
     private final DefaultComboBoxModel<String> model;
     private final AutoCompleteProvider provider;
+    private final String taskKey;
+    private final Timer debounce; // null when lookups start right away
+    private final FieldStats stats;
     private boolean isProcessing = false;
+    private int cacheGeneration; // Bumped by clearCache(), so answers still in flight are not cached
+
+    // Recent answers of this field, by text (event thread only)
+    private record Cached(List<String> suggestions, long time) {}
+    private final Map<String, Cached> cache = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Cached> eldest) {
+            return size() > CACHE_SIZE;
+        }
+    };
 
+    private static final AtomicInteger instances = new AtomicInteger();
+    private static final Map<String, FieldStats> allStats = new ConcurrentHashMap<>();
+
+    // Called on a BackgroundExecutor worker: must not touch Swing components
     public interface AutoCompleteProvider {
         List<String> getSuggestions(String text);
     }
 
-    public AutoCompletion(JComboBox<String> comboBox, AutoCompleteProvider provider) {
+    public AutoCompletion(JComboBox<String> comboBox, String name, int debounceMs, AutoCompleteProvider provider) {
         this.comboBox = comboBox;
         this.provider = provider;
         this.model = (DefaultComboBoxModel<String>) comboBox.getModel();
         this.editor = (JTextComponent) comboBox.getEditor().getEditorComponent();
         this.editor.addKeyListener(this);
+        this.taskKey = "autocomplete." + instances.incrementAndGet();
+        this.stats = allStats.computeIfAbsent(name, n -> new FieldStats());
+
+        if (debounceMs > 0) {
+            debounce = new Timer(debounceMs, e -> lookup());
+            debounce.setRepeats(false);
+        } else {
+            debounce = null;
+        }
     }
 
     // Static helper for simple String arrays (like your Brand list)
@@ -32,7 +74,8 @@ public class AutoCompletion extends KeyAdapter {
             originalItems[i] = comboBox.getItemAt(i);
         }
 
-        enable(comboBox, text -> {
+        // Filtering a handful of items costs nothing: no debounce
+        new AutoCompletion(comboBox, "list." + instances.get(), 0, text -> {
             java.util.List<String> list = new java.util.ArrayList<>();
             for (String item : originalItems) {
                 if (item.toLowerCase().startsWith(text.toLowerCase())) {
@@ -44,7 +87,18 @@ public class AutoCompletion extends KeyAdapter {
     }
 
     public static void enable(JComboBox<String> comboBox, AutoCompleteProvider provider) {
-        new AutoCompletion(comboBox, provider);
+        enable(comboBox, "field." + instances.get(), provider);
+    }
+
+    // 'name' labels the field in the latency stats
+    public static AutoCompletion enable(JComboBox<String> comboBox, String name, AutoCompleteProvider provider) {
+        return new AutoCompletion(comboBox, name, DEFAULT_DEBOUNCE_MS, provider);
+    }
+
+    // Forget the remembered answers, e.g. when something else the provider depends on changed (event thread)
+    public void clearCache() {
+        cache.clear();
+        cacheGeneration++;
     }
 
     @Override
@@ -55,32 +109,66 @@ public class AutoCompletion extends KeyAdapter {
         // Run AFTER the event is processed to fix "even letter" bug
         SwingUtilities.invokeLater(() -> {
             if (isProcessing) return;
-            isProcessing = true;
-            try {
-                String text = editor.getText();
-                // If empty, usually we don't show popup or we show all.
-                // Let's hide if empty to be clean.
-                if (text.isEmpty()) {
-                    comboBox.hidePopup();
-                    return;
-                }
+            String text = editor.getText();
+            // If empty, usually we don't show popup or we show all.
+            // Let's hide if empty to be clean.
+            if (text.isEmpty()) {
+                if (debounce != null) debounce.stop();
+                BackgroundExecutor.cancel(taskKey);
+                comboBox.hidePopup();
+                return;
+            }
+
+            // 1. Asked recently (typically backspacing): answer at once
+            Cached cached = cache.get(text);
+            if (cached != null && System.currentTimeMillis() - cached.time() < CACHE_TTL_MS) {
+                if (debounce != null) debounce.stop();
+                BackgroundExecutor.cancel(taskKey);
+                stats.cacheHits.incrementAndGet();
+                showSuggestions(text, cached.suggestions());
+                return;
+            }
 
-                List<String> suggestions = provider.getSuggestions(text);
+            // 2. Otherwise look up once typing pauses
+            if (debounce != null) debounce.restart();
+            else lookup();
+        });
+    }
 
-                if (!suggestions.isEmpty()) {
-                    model.removeAllElements();
-                    for (String s : suggestions) model.addElement(s);
+    // Providers may query the database: ask on a worker. A newer lookup supersedes this one.
+    private void lookup() {
+        String text = editor.getText();
+        if (text.isEmpty()) return;
 
-                    // Essential: restore the typed text because removing elements clears it
-                    editor.setText(text);
-                    comboBox.showPopup();
-                } else {
-                    comboBox.hidePopup();
-                }
-            } finally {
-                isProcessing = false;
+        long start = System.nanoTime();
+        int generation = cacheGeneration;
+        BackgroundExecutor.submit(taskKey, () -> provider.getSuggestions(text), suggestions -> {
+            stats.record(System.nanoTime() - start);
+            if (generation == cacheGeneration) cache.put(text, new Cached(suggestions, System.currentTimeMillis()));
+            if (!text.equals(editor.getText())) { // Typed on meanwhile, a newer lookup is coming
+                stats.stale.incrementAndGet();
+                return;
             }
-        });
+            showSuggestions(text, suggestions);
+        }, Throwable::printStackTrace);
+    }
+
+    private void showSuggestions(String text, List<String> suggestions) {
+        isProcessing = true;
+        try {
+            if (!suggestions.isEmpty()) {
+                model.removeAllElements();
+                for (String s : suggestions) model.addElement(s);
+
+                // Essential: restore the typed text because removing elements clears it
+                editor.setText(text);
+                if (comboBox.isShowing()) comboBox.showPopup(); // Not on screen (e.g. a closed dialog): nothing to pop up
+            } else {
+                comboBox.hidePopup();
+            }
+        } finally {
+            isProcessing = false;
+        }
     }
 
     private boolean isNavigationKey(int keyCode) {
@@ -88,4 +176,40 @@ public class AutoCompletion extends KeyAdapter {
                 keyCode == KeyEvent.VK_UP || keyCode == KeyEvent.VK_DOWN ||
                 keyCode == KeyEvent.VK_LEFT || keyCode == KeyEvent.VK_RIGHT;
     }
-}
\ No newline at end of file
+
+    // =================================================================================================================
+    //  METRICS
+    // =================================================================================================================
+
+    // Per field name: lookups (keystroke pause -> results on the event thread), cache hits, stale results
+    private static class FieldStats {
+        final AtomicLong lookups = new AtomicLong();
+        final AtomicLong totalNanos = new AtomicLong();
+        final AtomicLong maxNanos = new AtomicLong();
+        final AtomicLong cacheHits = new AtomicLong();
+        final AtomicLong stale = new AtomicLong();
+
+        void record(long nanos) {
+            lookups.incrementAndGet();
+            totalNanos.addAndGet(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+    }
+
+    public static String getStats() {
+        StringBuilder sb = new StringBuilder();
+        allStats.forEach((name, s) -> {
+            long n = s.lookups.get();
+            if (n == 0 && s.cacheHits.get() == 0) return;
+            if (sb.length() > 0) sb.append("; ");
+            sb.append(String.format("%s: lookups=%d (avg %.2f ms, max %.2f ms), cache hits=%d, stale=%d",
+                    name, n, n == 0 ? 0.0 : s.totalNanos.get() / 1e6 / n, s.maxNanos.get() / 1e6,
+                    s.cacheHits.get(), s.stale.get()));
+        });
+        return sb.length() == 0 ? "no lookups" : sb.toString();
+    }
+
+    public static void logStats() {
+        System.out.println("[Autocomplete] " + getStats());
+    }
+}
@@ -0,0 +1,427 @@
+package com.autoshop.app.util;
+
+import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.Car;
+import com.autoshop.app.model.ChangeSet;
+import com.autoshop.app.model.Client;
+
+import java.sql.SQLException;
+import java.text.Normalizer;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Pattern;
+
+/**
+ * In-memory lookup tables for the appointment form's autocomplete: client names, phones, plates and the models
+ * of each brand.
+ * <p>
+ * Each table is a pair of sorted arrays (search key -> value shown), so a suggestion is one binary search and a
+ * short walk instead of a query. Names and models are folded (lower case, no diacritics: "stefan" finds "Ștefan")
+ * and names are indexed from every word, so "ion" finds "Popescu Ion". Phones are matched on their digits (national form), plates
+ * without spaces or dashes. The tables are built once in the background at startup, then kept current from the
+ * AppointmentRepository change events. Lookups never lock: an edit publishes a new copy of the arrays.
+ * Until the first build is done, lookups fall back to the SQL helpers.
+ */
+public class AutocompleteIndex {
+
+    public static final int MAX_SUGGESTIONS = 20;
+    private static final int MIN_INFIX_LENGTH = 3;
+
+    private static final Pattern MARKS = Pattern.compile("\\p{M}+");
+    private static final Pattern SPACES = Pattern.compile("\\s+");
+    private static final Pattern NOT_DIGIT = Pattern.compile("\\D+");
+    private static final Pattern NOT_ALNUM = Pattern.compile("[^a-z0-9]+");
+
+    private static final Terms names = new Terms(AutocompleteIndex::foldText, true);
+    private static final Terms phones = new Terms(AutocompleteIndex::foldPhone, false);
+    private static final Terms plates = new Terms(AutocompleteIndex::foldPlate, false);
+    private static final Map<String, Terms> modelsByBrand = new ConcurrentHashMap<>(); // Folded brand -> its models
+
+    // What each client and car currently is, so an edit can take back what it replaced (guarded by 'lock')
+    private static final Object lock = new Object();
+    private static final Map<String, String> nameByClient = new HashMap<>(); // Phone (or the name, without one) -> name
+    private static final Map<String, String[]> carByPlate = new HashMap<>(); // Plate -> {brand, model}
+    private static List<Appointment> missedWhileBuilding; // Changes published during a build; null when none runs
+
+    private static final Object buildLock = new Object();
+    private static final AppointmentRepository.Listener listener = AutocompleteIndex::applyChanges;
+    private static volatile boolean ready;
+    private static boolean started;
+
+    /**
+     * Builds the tables on a worker and keeps them current afterwards. Safe to call more than once.
+     */
+    public static synchronized void start() {
+        if (started) return;
+        started = true;
+        AppointmentRepository.addListener(listener);
+        rebuildLater();
+    }
+
+    public static boolean isReady() {
+        return ready;
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: LOOKUPS (any thread)
+    // =================================================================================================================
+
+    public static List<String> suggestNames(String text) {
+        if (ready) return names.suggest(text, MAX_SUGGESTIONS);
+        try {
+            List<String> result = new ArrayList<>();
+            for (Client client : DatabaseHelper.getClientsByName(text)) result.add(client.getClientName());
+            return result;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    public static List<String> suggestPhones(String text) {
+        if (ready) return phones.suggest(text, MAX_SUGGESTIONS);
+        try {
+            List<String> result = new ArrayList<>();
+            for (Client client : DatabaseHelper.getClientsByPhone(Utils.normalizePhone(text))) result.add(client.getClientPhone());
+            return result;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    public static List<String> suggestPlates(String text) {
+        if (ready) return plates.suggest(text, MAX_SUGGESTIONS);
+        try {
+            List<String> result = new ArrayList<>();
+            for (Car car : DatabaseHelper.getCarDetailsByPlate(text)) result.add(car.getLicensePlate());
+            return result;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    // Models seen with this brand
+    public static List<String> suggestModels(String brand, String text) {
+        if (brand == null || brand.isBlank()) return new ArrayList<>();
+        if (ready) {
+            Terms models = modelsByBrand.get(foldText(brand));
+            return models == null ? new ArrayList<>() : models.suggest(text, MAX_SUGGESTIONS);
+        }
+        try {
+            List<String> result = new ArrayList<>();
+            for (Car car : DatabaseHelper.getCarModelsByBrand(brand, text)) {
+                if (!result.contains(car.getCarModel())) result.add(car.getCarModel());
+            }
+            return result;
+        } catch (SQLException e) {
+            e.printStackTrace();
+            return new ArrayList<>();
+        }
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: BUILDING & UPDATES
+    // =================================================================================================================
+
+    private static void rebuildLater() {
+        BackgroundExecutor.run("autocomplete.index", () -> {
+            rebuild();
+            return null;
+        });
+    }
+
+    /**
+     * Reads every client and car and replaces the tables. Runs on the calling thread; lookups keep
+     * answering from the old tables (or from SQL before the first build) meanwhile.
+     */
+    public static void rebuild() throws SQLException {
+        synchronized (buildLock) {
+            long start = System.currentTimeMillis();
+            synchronized (lock) {
+                missedWhileBuilding = new ArrayList<>();
+            }
+
+            try {
+                // 1. Read (the slow part, without holding the lock)
+                List<Client> clients = DatabaseHelper.getAllClients();
+                List<Car> cars = DatabaseHelper.getAllCars();
+
+                Map<String, String> clientNames = new HashMap<>();
+                List<String> clientPhones = new ArrayList<>();
+                for (Client client : clients) {
+                    if (isBlank(client.getClientName())) continue;
+                    String phone = isBlank(client.getClientPhone()) ? null : client.getClientPhone();
+                    clientNames.put(clientKey(phone, client.getClientName()), client.getClientName());
+                    if (phone != null) clientPhones.add(phone);
+                }
+                Map<String, String[]> carValues = new HashMap<>();
+                Map<String, List<String>> modelValues = new HashMap<>();
+                for (Car car : cars) {
+                    if (isBlank(car.getLicensePlate())) continue;
+                    carValues.put(car.getLicensePlate(), new String[]{car.getCarBrand(), car.getCarModel()});
+                    if (!isBlank(car.getCarBrand()) && !isBlank(car.getCarModel())) {
+                        modelValues.computeIfAbsent(foldText(car.getCarBrand()), b -> new ArrayList<>()).add(car.getCarModel());
+                    }
+                }
+
+                // 2. Swap, then replay what changed while reading
+                synchronized (lock) {
+                    nameByClient.clear();
+                    nameByClient.putAll(clientNames);
+                    carByPlate.clear();
+                    carByPlate.putAll(carValues);
+                    names.load(clientNames.values());
+                    phones.load(clientPhones);
+                    plates.load(carValues.keySet());
+                    modelsByBrand.keySet().retainAll(modelValues.keySet());
+                    for (Map.Entry<String, List<String>> entry : modelValues.entrySet()) {
+                        modelsByBrand.computeIfAbsent(entry.getKey(), b -> new Terms(AutocompleteIndex::foldText, false)).load(entry.getValue());
+                    }
+                    for (Appointment a : missedWhileBuilding) apply(a);
+                    ready = true;
+                }
+                System.out.println("[Autocomplete] Indexed " + clientNames.size() + " clients and " + carValues.size()
+                        + " cars in " + (System.currentTimeMillis() - start) + " ms");
+            } finally {
+                synchronized (lock) {
+                    missedWhileBuilding = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * AppointmentRepository listener: the client and car of each saved appointment go into the tables (a renamed
+     * client or a car with a new model replaces its old entry). Lost track of changes: build again.
+     */
+    private static void applyChanges(ChangeSet changes, Map<Integer, Appointment> fresh) {
+        if (!changes.isComplete()) {
+            rebuildLater();
+            return;
+        }
+        synchronized (lock) {
+            for (Appointment a : fresh.values()) {
+                apply(a);
+                if (missedWhileBuilding != null) missedWhileBuilding.add(a);
+            }
+        }
+    }
+
+    // Call with 'lock' held. Applying the same appointment twice changes nothing.
+    private static void apply(Appointment a) {
+        // 1. Client
+        String name = a.getClientName();
+        if (!isBlank(name)) {
+            String phone = isBlank(a.getClientPhone()) ? null : a.getClientPhone();
+            String previous = nameByClient.put(clientKey(phone, name), name);
+            if (!name.equals(previous)) {
+                if (previous != null) names.release(previous);
+                names.retain(name);
+            }
+            if (previous == null && phone != null) phones.retain(phone);
+        }
+
+        // 2. Car
+        String plate = a.getCarLicensePlate();
+        if (!isBlank(plate)) {
+            String[] car = {a.getCarBrand(), a.getCarModel()};
+            String[] previous = carByPlate.put(plate, car);
+            if (previous == null) plates.retain(plate);
+            if (previous == null || !Arrays.equals(previous, car)) {
+                if (previous != null) releaseModel(previous[0], previous[1]);
+                retainModel(car[0], car[1]);
+            }
+        }
+    }
+
+    private static void retainModel(String brand, String model) {
+        if (isBlank(brand) || isBlank(model)) return;
+        modelsByBrand.computeIfAbsent(foldText(brand), b -> new Terms(AutocompleteIndex::foldText, false)).retain(model);
+    }
+
+    private static void releaseModel(String brand, String model) {
+        if (isBlank(brand) || isBlank(model)) return;
+        Terms models = modelsByBrand.get(foldText(brand));
+        if (models != null) models.release(model);
+    }
+
+    // Clients are unique by phone; the few without one are told apart by name
+    private static String clientKey(String phone, String name) {
+        return phone != null ? phone : "\u0000" + name;
+    }
+
+    private static boolean isBlank(String s) {
+        return s == null || s.isBlank();
+    }
+
+    // =================================================================================================================
+    //  SECTION 3: KEY FOLDING
+    // =================================================================================================================
+
+    // "  Ștefan   Popescu" -> "stefan popescu"
+    private static String foldText(String s) {
+        String noMarks = MARKS.matcher(Normalizer.normalize(s, Normalizer.Form.NFD)).replaceAll("");
+        return SPACES.matcher(noMarks.toLowerCase(Locale.ROOT).trim()).replaceAll(" ");
+    }
+
+    // Stored phones are international ("+40744123456"), people type them national: both fold to "0744123456"
+    private static String foldPhone(String s) {
+        String digits = NOT_DIGIT.matcher(s).replaceAll("");
+        if (s.trim().startsWith("+40")) return "0" + digits.substring(2);
+        if (digits.startsWith("0040")) return "0" + digits.substring(4);
+        return digits;
+    }
+
+    private static String foldPlate(String s) {
+        return NOT_ALNUM.matcher(s.toLowerCase(Locale.ROOT)).replaceAll("");
+    }
+
+    // =================================================================================================================
+    //  SECTION 4: SORTED TABLE
+    // =================================================================================================================
+
+    /**
+     * Values searchable by key prefix. Entries are sorted by (key, value); with 'everyWord' a value gets one
+     * entry per word it contains. Writers (holding AutocompleteIndex.lock) publish new arrays; readers take
+     * whatever snapshot is current.
+     */
+    private static final class Terms {
+        private record Snapshot(String[] keys, String[] values) {}
+
+        private final Function<String, String> fold;
+        private final boolean everyWord;
+        private final Map<String, Integer> refs = new HashMap<>(); // Value -> how many records use it
+        private volatile Snapshot snapshot = new Snapshot(new String[0], new String[0]);
+
+        Terms(Function<String, String> fold, boolean everyWord) {
+            this.fold = fold;
+            this.everyWord = everyWord;
+        }
+
+        List<String> suggest(String text, int limit) {
+            String query = fold.apply(text); // Empty: the first 'limit' values
+            Snapshot s = snapshot;
+
+            // 1. Keys starting with the query (for names: any word starting with it)
+            Set<String> found = new LinkedHashSet<>();
+            for (int i = lowerBound(s.keys, query); i < s.keys.length && found.size() < limit && s.keys[i].startsWith(query); i++) {
+                found.add(s.values[i]);
+            }
+
+            // 2. Names only, when no word starts with it: inside a word, as the old LIKE '%text%' did. This walks
+            // every key, so it waits for 3 characters (shorter fragments match nearly everything anyway).
+            if (everyWord && found.isEmpty() && query.length() >= MIN_INFIX_LENGTH) {
+                for (int i = 0; i < s.keys.length && found.size() < limit; i++) {
+                    if (s.keys[i].contains(query)) found.add(s.values[i]);
+                }
+            }
+            return new ArrayList<>(found);
+        }
+
+        void load(Collection<String> values) {
+            refs.clear();
+            List<String[]> entries = new ArrayList<>();
+            for (String value : values) {
+                if (refs.merge(value, 1, Integer::sum) > 1) continue;
+                for (String key : keysOf(value)) entries.add(new String[]{key, value});
+            }
+            entries.sort(Comparator.<String[], String>comparing(e -> e[0]).thenComparing(e -> e[1]));
+
+            String[] keys = new String[entries.size()];
+            String[] vals = new String[entries.size()];
+            for (int i = 0; i < keys.length; i++) {
+                keys[i] = entries.get(i)[0];
+                vals[i] = entries.get(i)[1];
+            }
+            snapshot = new Snapshot(keys, vals);
+        }
+
+        void retain(String value) {
+            if (refs.merge(value, 1, Integer::sum) > 1) return;
+            Snapshot s = snapshot;
+            String[] keys = s.keys, vals = s.values;
+            for (String key : keysOf(value)) {
+                int at = find(keys, vals, key, value);
+                if (at >= 0) continue;
+                at = -at - 1;
+                String[] newKeys = new String[keys.length + 1];
+                String[] newVals = new String[vals.length + 1];
+                System.arraycopy(keys, 0, newKeys, 0, at);
+                System.arraycopy(vals, 0, newVals, 0, at);
+                newKeys[at] = key;
+                newVals[at] = value;
+                System.arraycopy(keys, at, newKeys, at + 1, keys.length - at);
+                System.arraycopy(vals, at, newVals, at + 1, vals.length - at);
+                keys = newKeys;
+                vals = newVals;
+            }
+            snapshot = new Snapshot(keys, vals);
+        }
+
+        void release(String value) {
+            Integer count = refs.get(value);
+            if (count == null) return;
+            if (count > 1) {
+                refs.put(value, count - 1);
+                return;
+            }
+            refs.remove(value);
+
+            Snapshot s = snapshot;
+            String[] keys = s.keys, vals = s.values;
+            for (String key : keysOf(value)) {
+                int at = find(keys, vals, key, value);
+                if (at < 0) continue;
+                String[] newKeys = new String[keys.length - 1];
+                String[] newVals = new String[vals.length - 1];
+                System.arraycopy(keys, 0, newKeys, 0, at);
+                System.arraycopy(vals, 0, newVals, 0, at);
+                System.arraycopy(keys, at + 1, newKeys, at, keys.length - at - 1);
+                System.arraycopy(vals, at + 1, newVals, at, vals.length - at - 1);
+                keys = newKeys;
+                vals = newVals;
+            }
+            snapshot = new Snapshot(keys, vals);
+        }
+
+        // The folded value, plus (everyWord) the rest of it from each later word: "popescu ion" -> also "ion"
+        private List<String> keysOf(String value) {
+            String folded = fold.apply(value);
+            List<String> keys = new ArrayList<>();
+            if (folded.isEmpty()) return keys;
+            keys.add(folded);
+            if (everyWord) {
+                for (int i = folded.indexOf(' '); i >= 0; i = folded.indexOf(' ', i + 1)) keys.add(folded.substring(i + 1));
+            }
+            return keys;
+        }
+
+        // First index whose key is >= 'key'
+        private static int lowerBound(String[] keys, String key) {
+            int lo = 0, hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                if (keys[mid].compareTo(key) < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        // Index of the exact (key, value) entry, or -(insertion point) - 1 like Arrays.binarySearch
+        private static int find(String[] keys, String[] vals, String key, String value) {
+            int lo = 0, hi = keys.length;
+            while (lo < hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = keys[mid].compareTo(key);
+                if (c == 0) c = vals[mid].compareTo(value);
+                if (c == 0) return mid;
+                if (c < 0) lo = mid + 1;
+                else hi = mid;
+            }
+            return -lo - 1;
+        }
+    }
+}
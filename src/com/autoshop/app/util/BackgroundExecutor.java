@@ -0,0 +1,254 @@
+package com.autoshop.app.util;
+
+import javax.swing.*;
+import java.awt.*;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Runs database work on a small pool of worker threads so the Swing event thread never waits for SQLite.
+ * <p>
+ * Results (and errors) are handed back on the event thread. Tasks can be given a key: submitting a new
+ * task with the same key supersedes the previous one, which is skipped if it has not started yet and whose
+ * result is dropped if it has (e.g. a search typed again before the first one finished).
+ * Long jobs (imports, backups, exports) get one thread of their own, so they never take the workers that
+ * searches and refreshes are waiting for.
+ * A watchdog measures how long the event thread is blocked, and whether it was blocked inside JDBC.
+ */
+public class BackgroundExecutor {
+
+    private static final int WORKERS = 2;
+    private static final long PROBE_INTERVAL_MS = 100;
+    private static final long STALL_THRESHOLD_MS = 200; // Event thread busy longer than this counts as a stall
+
+    /**
+     * Work to run off the event thread.
+     */
+    public interface Task<T> {
+        T run() throws Exception;
+    }
+
+    private static final AtomicInteger workerCount = new AtomicInteger();
+    private static final ExecutorService workers = Executors.newFixedThreadPool(WORKERS, r -> {
+        Thread t = new Thread(r, "db-worker-" + workerCount.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+    private static final ExecutorService longJobs = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "long-job");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Latest ticket per key; anything older is stale
+    private static final Map<String, Ticket> latest = new ConcurrentHashMap<>();
+
+    // Tasks submitted but not yet delivered, and who wants to know (e.g. the "Loading..." indicator)
+    private static final AtomicInteger pending = new AtomicInteger();
+    private static final List<IntConsumer> activityListeners = new CopyOnWriteArrayList<>();
+
+    // --- STATS ---
+    private static final AtomicLong submitted = new AtomicLong();
+    private static final AtomicLong superseded = new AtomicLong();
+    private static final AtomicLong failed = new AtomicLong();
+    private static final AtomicLong taskNanos = new AtomicLong();
+    private static final AtomicLong stalls = new AtomicLong();
+    private static final AtomicLong stallsInJdbc = new AtomicLong();
+    private static final AtomicLong stallNanos = new AtomicLong();
+    private static final AtomicLong longestStallNanos = new AtomicLong();
+
+    private static Thread watchdog;
+
+    private static class Ticket {
+        volatile boolean cancelled;
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: SUBMITTING WORK
+    // =================================================================================================================
+
+    /**
+     * Runs 'task' on a worker, then 'onSuccess' or 'onError' on the event thread.
+     * @param key tasks with the same key replace each other (null = never superseded)
+     */
+    public static <T> void submit(String key, Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        submit(workers, key, task, onSuccess, onError);
+    }
+
+    /**
+     * Like submit(), for work that can take minutes: it runs on the long-job thread, one job at a time (a second
+     * one waits for the first).
+     */
+    public static <T> void submitLong(Task<T> task, Consumer<T> onSuccess, Consumer<Exception> onError) {
+        submit(longJobs, null, task, onSuccess, onError);
+    }
+
+    private static <T> void submit(ExecutorService executor, String key, Task<T> task, Consumer<T> onSuccess,
+                                   Consumer<Exception> onError) {
+        Ticket ticket = new Ticket();
+        if (key != null) {
+            Ticket previous = latest.put(key, ticket);
+            if (previous != null) {
+                previous.cancelled = true;
+                superseded.incrementAndGet();
+            }
+        }
+        submitted.incrementAndGet();
+        changePending(1);
+
+        executor.execute(() -> {
+            if (ticket.cancelled) {
+                finish(key, ticket);
+                return;
+            }
+
+            T result = null;
+            Exception error = null;
+            long start = System.nanoTime();
+            try {
+                result = task.run();
+            } catch (Exception e) {
+                error = e;
+                failed.incrementAndGet();
+            }
+            taskNanos.addAndGet(System.nanoTime() - start);
+
+            T value = result;
+            Exception problem = error;
+            SwingUtilities.invokeLater(() -> {
+                finish(key, ticket);
+                if (ticket.cancelled) return; // A newer request with the same key owns the screen now
+
+                if (problem == null) {
+                    if (onSuccess != null) onSuccess.accept(value);
+                } else if (onError != null) {
+                    onError.accept(problem);
+                } else {
+                    problem.printStackTrace();
+                }
+            });
+        });
+    }
+
+    // Fire-and-forget variant for work that has nothing to show afterwards
+    public static void run(String key, Task<?> task) {
+        submit(key, task, null, null);
+    }
+
+    /**
+     * Drops the pending task with this key, if any. Its callbacks will not run.
+     */
+    public static void cancel(String key) {
+        Ticket ticket = latest.remove(key);
+        if (ticket != null) ticket.cancelled = true;
+    }
+
+    /**
+     * Called with the number of unfinished tasks whenever it changes, on the event thread.
+     */
+    public static void addActivityListener(IntConsumer listener) {
+        activityListeners.add(listener);
+    }
+
+    private static void finish(String key, Ticket ticket) {
+        if (key != null) latest.remove(key, ticket);
+        changePending(-1);
+    }
+
+    private static void changePending(int delta) {
+        int now = pending.addAndGet(delta);
+        if (activityListeners.isEmpty()) return;
+        SwingUtilities.invokeLater(() -> {
+            for (IntConsumer listener : activityListeners) listener.accept(now);
+        });
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: EVENT THREAD WATCHDOG
+    // =================================================================================================================
+
+    /**
+     * Starts probing the event thread: every PROBE_INTERVAL_MS a no-op is queued on it and timed. When it takes
+     * longer than STALL_THRESHOLD_MS the event thread's stack is sampled once to see if it is stuck in JDBC.
+     */
+    public static synchronized void startWatchdog() {
+        if (watchdog != null || GraphicsEnvironment.isHeadless()) return;
+
+        watchdog = new Thread(() -> {
+            Thread[] edt = new Thread[1];
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    long queued = System.nanoTime();
+                    AtomicLong ranAt = new AtomicLong();
+                    EventQueue.invokeLater(() -> {
+                        edt[0] = Thread.currentThread();
+                        ranAt.set(System.nanoTime());
+                    });
+
+                    // Wait for the probe, sampling the stack once if it is late
+                    boolean sampled = false;
+                    while (ranAt.get() == 0) {
+                        Thread.sleep(10);
+                        long waited = (System.nanoTime() - queued) / 1_000_000;
+                        if (!sampled && waited > STALL_THRESHOLD_MS && edt[0] != null) {
+                            sampled = true;
+                            if (isInJdbc(edt[0].getStackTrace())) stallsInJdbc.incrementAndGet();
+                        }
+                    }
+
+                    long delay = ranAt.get() - queued;
+                    if (delay > STALL_THRESHOLD_MS * 1_000_000) {
+                        stalls.incrementAndGet();
+                        stallNanos.addAndGet(delay);
+                        longestStallNanos.accumulateAndGet(delay, Math::max);
+                    }
+                    Thread.sleep(PROBE_INTERVAL_MS);
+                } catch (InterruptedException e) {
+                    return;
+                }
+            }
+        }, "edt-watchdog");
+        watchdog.setDaemon(true);
+        watchdog.start();
+    }
+
+    public static synchronized void stopWatchdog() {
+        if (watchdog != null) {
+            watchdog.interrupt();
+            watchdog = null;
+        }
+    }
+
+    private static boolean isInJdbc(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            String cls = frame.getClassName();
+            if (cls.startsWith("org.sqlite.") || cls.startsWith("java.sql.")) return true;
+        }
+        return false;
+    }
+
+    // =================================================================================================================
+    //  SECTION 3: METRICS
+    // =================================================================================================================
+
+    public static String getStats() {
+        long s = submitted.get(), st = stalls.get();
+        return String.format("tasks submitted=%d (avg %.2f ms), superseded=%d, failed=%d; EDT stalls=%d (in JDBC=%d, avg %.0f ms, longest %.0f ms)",
+                s, s == 0 ? 0.0 : taskNanos.get() / 1e6 / s,
+                superseded.get(), failed.get(),
+                st, stallsInJdbc.get(), st == 0 ? 0.0 : stallNanos.get() / 1e6 / st,
+                longestStallNanos.get() / 1e6);
+    }
+
+    public static void logStats() {
+        System.out.println("[UI] " + getStats());
+    }
+}
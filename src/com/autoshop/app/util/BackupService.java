@@ -0,0 +1,229 @@
+package com.autoshop.app.util;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Consistent backups of the live database, taken while the app keeps working.
+ * <p>
+ * A backup is a VACUUM INTO from a private connection: SQLite copies one read snapshot into a new, compacted
+ * file, so writes made meanwhile are either fully in it or not at all, and (WAL) nobody waits for it.
+ * Every backup is checked with PRAGMA integrity_check before it replaces anything.
+ * Automatic backups go to "backups/" on a schedule, keeping the newest few.
+ * <p>
+ * A restore swaps the database file under the running app: the backup is checked and copied (and migrated)
+ * beside the live file first, then the connections are quiesced for the short moment of the rename.
+ */
+public class BackupService {
+
+    public static final File AUTO_DIR = new File("backups");
+    private static final String AUTO_PREFIX = "appointments_auto_";
+    private static final long CHECK_EVERY_MINUTES = 30; // How often the schedule looks whether a backup is due
+    private static final long QUIESCE_TIMEOUT_MS = 10_000; // How long a restore waits for running queries to finish
+
+    private static ScheduledExecutorService scheduler;
+
+    // =================================================================================================================
+    //  SECTION 1: BACKUP & VERIFY
+    // =================================================================================================================
+
+    /**
+     * Writes a verified snapshot of the database to 'target' (replaced if it exists). Runs on the calling thread;
+     * call it from a worker. The snapshot is built next to the target and only moved into place once it checks out.
+     */
+    public static synchronized void backupTo(File target) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        File temp = new File(target.getAbsoluteFile().getParentFile(), target.getName() + ".part");
+        Files.deleteIfExists(temp.toPath()); // VACUUM INTO refuses to overwrite
+
+        try {
+            // 1. Snapshot (a read transaction on a private connection; the writer keeps going)
+            try (Connection conn = ConnectionManager.openUnpooled();
+                 PreparedStatement ps = conn.prepareStatement("VACUUM INTO ?")) {
+                ps.setString(1, temp.getAbsolutePath());
+                ps.executeUpdate();
+            }
+
+            // 2. Verify, then publish
+            verify(temp);
+            try {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            }
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
+
+        System.out.println("[Backup] " + target.getName() + " (" + target.length() / 1024 + " KB) in "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    /**
+     * Checks that 'file' is a healthy database of this app: integrity_check passes and the main tables exist.
+     * @throws SQLException describing the problem otherwise
+     */
+    public static void verify(File file) throws SQLException {
+        if (!file.isFile()) throw new SQLException("Not a file: " + file);
+
+        try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + file.getAbsolutePath());
+             Statement stmt = conn.createStatement()) {
+            stmt.execute("PRAGMA query_only=1");
+
+            // 1. Page-level check (reads the whole file)
+            try (ResultSet rs = stmt.executeQuery("PRAGMA integrity_check")) {
+                String result = rs.next() ? rs.getString(1) : "no result";
+                if (!"ok".equalsIgnoreCase(result)) throw new SQLException("Integrity check failed: " + result);
+            }
+
+            // 2. It is one of ours
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM sqlite_master WHERE type = 'table' "
+                    + "AND name IN ('Clients', 'Cars', 'Appointments', 'Parts')")) {
+                if (!rs.next() || rs.getInt(1) != 4) throw new SQLException("Not an AutoShop database: " + file.getName());
+            }
+        }
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: RESTORE
+    // =================================================================================================================
+
+    /**
+     * Replaces the live database with 'source' while the app keeps running. Call it from a worker.
+     * <p>
+     * The backup is verified, copied next to the live file and brought to the current schema before anything
+     * is stopped. The current data is saved to backups/ as a safety net. Then connections are quiesced, the
+     * prepared copy is renamed over the live file, connections resume and every view is told to reload.
+     * If any step fails before the rename, the live database is left as it was.
+     */
+    public static synchronized void restoreFrom(File source) throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+        File live = DatabaseHelper.getDatabaseFile().getAbsoluteFile();
+        File staged = new File(live.getParentFile(), live.getName() + ".restore");
+
+        try {
+            // 1. Check and stage the backup (the long part, done while everything still runs)
+            verify(source);
+            Files.copy(source.toPath(), staged.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            try (Connection conn = DriverManager.getConnection("jdbc:sqlite:" + staged.getAbsolutePath())) {
+                if (hasTable(conn, "SchemaVersion") && SchemaMigrator.getCurrentVersion(conn) > SchemaMigrator.getLatestVersion()) {
+                    throw new SQLException("The backup was made by a newer version of the app");
+                }
+                SchemaMigrator.migrate(conn);
+                try (Statement stmt = conn.createStatement()) {
+                    stmt.execute("PRAGMA journal_mode=DELETE"); // Self-contained file: no -wal beside it to lose
+                }
+            }
+
+            // 2. Safety net: what we are about to replace
+            if (live.exists()) {
+                if (!AUTO_DIR.isDirectory() && !AUTO_DIR.mkdirs()) throw new IOException("Cannot create " + AUTO_DIR);
+                String stamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+                backupTo(new File(AUTO_DIR, "appointments_before_restore_" + stamp + ".db"));
+            }
+
+            // 3. Swap while no connection is open (closing the last one checkpoints and removes the WAL)
+            ConnectionManager.suspend(QUIESCE_TIMEOUT_MS);
+            try {
+                Files.deleteIfExists(new File(live.getPath() + "-wal").toPath()); // A leftover WAL would be replayed into the new file
+                Files.deleteIfExists(new File(live.getPath() + "-shm").toPath());
+                try {
+                    Files.move(staged.toPath(), live.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(staged.toPath(), live.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                ConnectionManager.resume();
+            }
+        } finally {
+            Files.deleteIfExists(staged.toPath());
+        }
+
+        // 4. Everything cached describes the old file. Not done while suspended: a thread holding the
+        // repository lock may be waiting for a connection.
+        AppointmentRepository.invalidate();
+
+        System.out.println("[Backup] Restored " + source.getName() + " in " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static boolean hasTable(Connection conn, String name) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT 1 FROM sqlite_master WHERE type = 'table' AND name = ?")) {
+            ps.setString(1, name);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next();
+            }
+        }
+    }
+
+    // =================================================================================================================
+    //  SECTION 3: SCHEDULED BACKUPS
+    // =================================================================================================================
+
+    /**
+     * Starts automatic backups (if enabled in the preferences): one whenever the newest automatic backup is
+     * older than the configured interval, checked every CHECK_EVERY_MINUTES, on a background thread.
+     */
+    public static synchronized void startScheduled() {
+        if (scheduler != null || !PreferencesHelper.isAutoBackupEnabled()) return;
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "db-backup");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(BackupService::backupIfDue, 1, CHECK_EVERY_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void stopScheduled() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    private static void backupIfDue() {
+        try {
+            long interval = TimeUnit.HOURS.toMillis(PreferencesHelper.getAutoBackupIntervalHours());
+            File[] existing = listAutoBackups();
+            long newest = existing.length == 0 ? 0 : existing[existing.length - 1].lastModified();
+            if (System.currentTimeMillis() - newest < interval) return;
+
+            if (!AUTO_DIR.isDirectory() && !AUTO_DIR.mkdirs()) throw new IOException("Cannot create " + AUTO_DIR);
+            String stamp = new SimpleDateFormat("yyyy-MM-dd_HH-mm-ss").format(new Date());
+            backupTo(new File(AUTO_DIR, AUTO_PREFIX + stamp + ".db"));
+            rotate(PreferencesHelper.getBackupRetention());
+        } catch (Exception e) {
+            e.printStackTrace(); // Tried again at the next check
+        }
+    }
+
+    /**
+     * Deletes the oldest automatic backups so that at most 'keep' remain. Manual backups are never touched.
+     */
+    public static void rotate(int keep) throws IOException {
+        File[] backups = listAutoBackups();
+        for (int i = 0; i < backups.length - Math.max(keep, 1); i++) {
+            Files.deleteIfExists(backups[i].toPath());
+        }
+    }
+
+    // Oldest first (the timestamp in the name sorts chronologically)
+    private static File[] listAutoBackups() {
+        File[] files = AUTO_DIR.listFiles((dir, name) -> name.startsWith(AUTO_PREFIX) && name.endsWith(".db"));
+        if (files == null) return new File[0];
+        Arrays.sort(files, Comparator.comparing(File::getName));
+        return files;
+    }
+}
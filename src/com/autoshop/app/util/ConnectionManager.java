@@ -0,0 +1,482 @@
+package com.autoshop.app.util;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Keeps SQLite connections warm instead of opening a new one for every query.
+ * There is a single writer connection (SQLite only allows one writer at a time anyway)
+ * and a small pool of read connections. All connections run in WAL mode, so readers
+ * never block the writer and the writer never blocks readers.
+ * <p>
+ * Borrowed connections are handed out as proxies: calling close() returns them to the
+ * manager, and prepareStatement() is served from a per-connection statement cache.
+ */
+public class ConnectionManager {
+
+    private static final int READ_POOL_SIZE = 4;
+    private static final int STATEMENT_CACHE_SIZE = 32;
+    private static final int BUSY_TIMEOUT_MS = 5000;
+
+    private static String url;
+    private static PhysicalConnection writer;
+    private static final ReentrantLock writerLock = new ReentrantLock();
+    private static final BlockingQueue<PhysicalConnection> idleReaders = new ArrayBlockingQueue<>(READ_POOL_SIZE);
+
+    // Quiescing (e.g. to swap the database file): new borrows wait while suspended, suspend() waits for open leases
+    private static final Object gate = new Object();
+    private static boolean suspended;
+    private static int openLeases;
+    private static final ThreadLocal<int[]> leasesHeld = ThreadLocal.withInitial(() -> new int[1]);
+
+    // --- STATS ---
+    private static final AtomicLong opens = new AtomicLong();
+    private static final AtomicLong openNanos = new AtomicLong();
+    private static final AtomicLong borrows = new AtomicLong();
+    private static final AtomicLong borrowNanos = new AtomicLong();
+    private static final AtomicLong edtBorrows = new AtomicLong(); // Should stay 0: the UI thread never touches the DB
+    private static final AtomicLong statementHits = new AtomicLong();
+    private static final AtomicLong statementMisses = new AtomicLong();
+
+    // =================================================================================================================
+    //  SECTION 1: CONFIGURATION
+    // =================================================================================================================
+
+    /**
+     * Points the manager at a database. Any connections to a previous database are closed.
+     */
+    public static synchronized void configure(String jdbcUrl) {
+        if (jdbcUrl.equals(url)) return;
+        shutdown();
+        url = jdbcUrl;
+    }
+
+    /**
+     * Closes every pooled connection. The next borrow re-opens them on demand.
+     */
+    public static synchronized void shutdown() {
+        writerLock.lock();
+        try {
+            if (writer != null) {
+                writer.closeQuietly();
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+
+        List<PhysicalConnection> readers = new ArrayList<>();
+        idleReaders.drainTo(readers);
+        for (PhysicalConnection reader : readers) reader.closeQuietly();
+    }
+
+    /**
+     * Stops handing out connections, waits for every borrowed one to come back, then closes them all, so the
+     * database file can be replaced. Borrowers arriving meanwhile wait until resume(). Must not be called while
+     * holding a borrowed connection.
+     * @throws SQLException if the leases are not all back within 'timeoutMs' (nothing is suspended then)
+     */
+    public static void suspend(long timeoutMs) throws SQLException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        synchronized (gate) {
+            suspended = true;
+            try {
+                while (openLeases > 0) {
+                    long left = deadline - System.currentTimeMillis();
+                    if (left <= 0) throw new SQLException("Database still in use (" + openLeases + " connections borrowed)");
+                    gate.wait(left);
+                }
+            } catch (SQLException | InterruptedException e) {
+                suspended = false;
+                gate.notifyAll();
+                if (e instanceof InterruptedException) Thread.currentThread().interrupt();
+                throw e instanceof SQLException sql ? sql : new SQLException("Interrupted while suspending", e);
+            }
+        }
+        shutdown();
+    }
+
+    /**
+     * Lets borrowers in again after suspend(). Connections re-open on demand (to whatever file is there now).
+     */
+    public static void resume() {
+        synchronized (gate) {
+            suspended = false;
+            gate.notifyAll();
+        }
+    }
+
+    /**
+     * Opens the writer and a couple of readers up front, so the first screen does not pay for connection setup.
+     */
+    public static void warmUp() throws SQLException {
+        borrowWriter().close();
+        List<Connection> readers = new ArrayList<>();
+        for (int i = 0; i < READ_POOL_SIZE / 2; i++) readers.add(borrowReader());
+        for (Connection reader : readers) reader.close();
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: BORROWING
+    // =================================================================================================================
+
+    /**
+     * Returns the shared writer connection. The calling thread holds it exclusively until close() is called.
+     * Nested borrows on the same thread share the connection (and its transaction).
+     */
+    public static Connection borrowWriter() throws SQLException {
+        long start = System.nanoTime();
+        enterGate();
+        writerLock.lock();
+        try {
+            if (writer == null || writer.isBroken()) {
+                if (writer != null) writer.closeQuietly();
+                writer = open(false);
+            }
+        } catch (SQLException e) {
+            writerLock.unlock();
+            leaveGate();
+            throw e;
+        }
+        recordBorrow(start);
+
+        PhysicalConnection leased = writer;
+        return leased.lease(() -> {
+            // Only reset state once the outermost borrower is done
+            if (writerLock.getHoldCount() == 1) leased.reset();
+            writerLock.unlock();
+            leaveGate();
+        });
+    }
+
+    /**
+     * Returns a read-only connection from the pool, opening a new one if all are busy.
+     */
+    public static Connection borrowReader() throws SQLException {
+        long start = System.nanoTime();
+        enterGate();
+        PhysicalConnection reader;
+        try {
+            reader = idleReaders.poll();
+            if (reader == null || reader.isBroken()) {
+                if (reader != null) reader.closeQuietly();
+                reader = open(true);
+            }
+        } catch (SQLException e) {
+            leaveGate();
+            throw e;
+        }
+        recordBorrow(start);
+
+        PhysicalConnection leased = reader;
+        return leased.lease(() -> {
+            leased.reset();
+            // Pool is full (burst of nested reads): drop the extra connection
+            if (!idleReaders.offer(leased)) leased.closeQuietly();
+            leaveGate();
+        });
+    }
+
+    // Waits while suspended, unless this thread already holds a lease (it would never give it back otherwise)
+    private static void enterGate() throws SQLException {
+        int[] held = leasesHeld.get();
+        synchronized (gate) {
+            try {
+                while (suspended && held[0] == 0) gate.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while waiting for the database", e);
+            }
+            openLeases++;
+        }
+        held[0]++;
+    }
+
+    private static void leaveGate() {
+        leasesHeld.get()[0]--;
+        synchronized (gate) {
+            openLeases--;
+            if (openLeases == 0) gate.notifyAll();
+        }
+    }
+
+    /**
+     * A private connection outside the pool, for long jobs (backups) that should not hold a pooled one.
+     * Same settings as the pooled ones; close() really closes it.
+     */
+    public static Connection openUnpooled() throws SQLException {
+        return open(false).raw;
+    }
+
+    private static PhysicalConnection open(boolean readOnly) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException e) {
+            throw new SQLException("SQLite Driver not found!");
+        }
+
+        Connection raw = DriverManager.getConnection(url);
+        try (Statement stmt = raw.createStatement()) {
+            stmt.execute("PRAGMA journal_mode=WAL");
+            stmt.execute("PRAGMA synchronous=NORMAL");
+            stmt.execute("PRAGMA busy_timeout=" + BUSY_TIMEOUT_MS);
+            stmt.execute("PRAGMA foreign_keys=ON"); // Off by default in SQLite: without it ON DELETE CASCADE never fires
+            if (readOnly) stmt.execute("PRAGMA query_only=1");
+        }
+
+        opens.incrementAndGet();
+        openNanos.addAndGet(System.nanoTime() - start);
+        return new PhysicalConnection(raw);
+    }
+
+    private static void recordBorrow(long start) {
+        borrows.incrementAndGet();
+        borrowNanos.addAndGet(System.nanoTime() - start);
+        if (java.awt.EventQueue.isDispatchThread()) edtBorrows.incrementAndGet();
+    }
+
+    // =================================================================================================================
+    //  SECTION 3: METRICS
+    // =================================================================================================================
+
+    public static String getStats() {
+        long o = opens.get(), b = borrows.get();
+        return String.format("connections opened=%d (avg %.2f ms), borrowed=%d (avg %.3f ms, on EDT=%d), statement cache hits=%d misses=%d",
+                o, o == 0 ? 0.0 : openNanos.get() / 1e6 / o,
+                b, b == 0 ? 0.0 : borrowNanos.get() / 1e6 / b, edtBorrows.get(),
+                statementHits.get(), statementMisses.get());
+    }
+
+    public static long getStatementHits() {
+        return statementHits.get();
+    }
+
+    // Connections borrowed on the Swing event thread so far (each one is UI time spent waiting on SQLite)
+    public static long getEdtBorrows() {
+        return edtBorrows.get();
+    }
+
+    public static void logStats() {
+        System.out.println("[DB] " + getStats());
+    }
+
+    // =================================================================================================================
+    //  SECTION 4: INTERNAL PROXIES
+    // =================================================================================================================
+
+    /**
+     * A real JDBC connection plus its prepared-statement cache.
+     */
+    private static class PhysicalConnection {
+        private final Connection raw;
+        private final Map<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedStatement> eldest) {
+                if (size() <= STATEMENT_CACHE_SIZE) return false;
+                eldest.getValue().evict();
+                return true;
+            }
+        };
+
+        PhysicalConnection(Connection raw) {
+            this.raw = raw;
+        }
+
+        Connection lease(Runnable onClose) {
+            return (Connection) Proxy.newProxyInstance(
+                    Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class},
+                    new LeaseHandler(this, onClose));
+        }
+
+        PreparedStatement prepare(String sql, int generatedKeys) throws SQLException {
+            String key = generatedKeys + "|" + sql;
+            CachedStatement cached = statements.get(key);
+
+            // A nested borrow of the writer may run the same SQL while the outer caller still reads its results:
+            // that one gets a statement of its own, outside the cache (closing it really closes it)
+            if (cached != null && cached.inUse) {
+                statementMisses.incrementAndGet();
+                return raw.prepareStatement(sql, generatedKeys);
+            }
+
+            if (cached == null || cached.ps.isClosed()) {
+                statementMisses.incrementAndGet();
+                cached = new CachedStatement(raw.prepareStatement(sql, generatedKeys));
+                statements.put(key, cached);
+            } else {
+                statementHits.incrementAndGet();
+            }
+            cached.inUse = true;
+            return cached.lease();
+        }
+
+        boolean isBroken() {
+            try {
+                return raw.isClosed();
+            } catch (SQLException e) {
+                return true;
+            }
+        }
+
+        // Leaves the connection as a fresh borrower expects it: no open transaction, autocommit on, and every
+        // cached statement free again (in case a borrower forgot to close one)
+        void reset() {
+            try {
+                for (CachedStatement cached : statements.values()) {
+                    if (cached.inUse) cached.release();
+                }
+                if (!raw.getAutoCommit()) {
+                    raw.rollback();
+                    raw.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                closeQuietly();
+            }
+        }
+
+        void closeQuietly() {
+            for (CachedStatement cached : statements.values()) closeStatement(cached.ps);
+            statements.clear();
+            try {
+                raw.close();
+            } catch (SQLException ignored) { }
+        }
+
+        private static void closeStatement(PreparedStatement ps) {
+            try {
+                ps.close();
+            } catch (SQLException ignored) { }
+        }
+    }
+
+    /**
+     * One cached statement. While a borrower holds it ('inUse') nobody else gets it, and it is not closed when
+     * it drops out of the cache: that waits until the borrower is done with it.
+     */
+    private static class CachedStatement {
+        private final PreparedStatement ps;
+        private final List<ResultSet> results = new ArrayList<>();
+        private boolean inUse;
+        private boolean evicted;
+        private int leases; // Tells a borrower's handle from an older one that reset() already took back
+
+        CachedStatement(PreparedStatement ps) {
+            this.ps = ps;
+        }
+
+        void evict() {
+            evicted = true;
+            if (!inUse) PhysicalConnection.closeStatement(ps);
+        }
+
+        // Back to the cache: result sets closed (an open one would pin an old WAL snapshot), parameters cleared
+        void release() throws SQLException {
+            inUse = false;
+            for (ResultSet rs : results) rs.close();
+            results.clear();
+            if (evicted) {
+                ps.close();
+                return;
+            }
+            ps.clearParameters();
+            ps.clearBatch();
+        }
+
+        // Handed to the borrower: close() only gives the statement back
+        PreparedStatement lease() {
+            int ticket = ++leases;
+            boolean[] closed = {false};
+            return (PreparedStatement) Proxy.newProxyInstance(
+                    PreparedStatement.class.getClassLoader(),
+                    new Class<?>[]{PreparedStatement.class},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "close" -> {
+                                if (!closed[0]) {
+                                    closed[0] = true;
+                                    if (inUse && leases == ticket) release(); // Not if reset() already took it back
+                                }
+                                return null;
+                            }
+                            case "isClosed" -> {
+                                return closed[0] || !inUse || leases != ticket;
+                            }
+                            case "unwrap" -> {
+                                return ps.unwrap((Class<?>) args[0]);
+                            }
+                        }
+                        if (closed[0] || !inUse || leases != ticket) throw new SQLException("Statement already closed");
+                        Object result = invoke(ps, method, args);
+                        if (result instanceof ResultSet rs) results.add(rs);
+                        return result;
+                    });
+        }
+    }
+
+    private static class LeaseHandler implements InvocationHandler {
+        private final PhysicalConnection connection;
+        private final Runnable onClose;
+        private boolean closed = false;
+
+        LeaseHandler(PhysicalConnection connection, Runnable onClose) {
+            this.connection = connection;
+            this.onClose = onClose;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            switch (name) {
+                case "close" -> {
+                    if (!closed) {
+                        closed = true;
+                        onClose.run();
+                    }
+                    return null;
+                }
+                case "isClosed" -> {
+                    return closed || connection.raw.isClosed();
+                }
+                case "unwrap" -> {
+                    return connection.raw.unwrap((Class<?>) args[0]);
+                }
+                case "equals" -> {
+                    return proxy == args[0];
+                }
+                case "hashCode" -> {
+                    return System.identityHashCode(proxy);
+                }
+            }
+            if (closed) throw new SQLException("Connection already returned to the pool");
+
+            // prepareStatement(String) and prepareStatement(String, int) go through the cache
+            if (name.equals("prepareStatement") && args.length <= 2
+                    && (args.length == 1 || args[1] instanceof Integer)) {
+                int keys = args.length == 2 ? (Integer) args[1] : Statement.NO_GENERATED_KEYS;
+                return connection.prepare((String) args[0], keys);
+            }
+            return ConnectionManager.invoke(connection.raw, method, args);
+        }
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,572 @@
+package com.autoshop.app.util;
+
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.model.Part;
+import com.autoshop.app.model.Supplier;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.*;
+import java.text.ParsePosition;
+import java.text.SimpleDateFormat;
+import java.util.*;
+import java.util.Date;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Bulk import of appointment history from a CSV file (first row = header, one appointment per row).
+ * <p>
+ * The file is streamed, never loaded whole. Rows are validated and normalized like the appointment form does
+ * (phone and plate validators, title case), then written BATCH_SIZE rows per transaction. Clients and cars are
+ * resolved through maps filled from the database up front, so there is no lookup query per row.
+ * <p>
+ * Rows that fail validation go to "&lt;file&gt;.rejected.csv" with the reason. After every batch the position
+ * is saved in ImportProgress, in the same transaction, so an interrupted or cancelled import continues where
+ * it stopped when the same file is imported again.
+ * <p>
+ * Recognized columns (any order, case-insensitive, unknown ones ignored): name, phone, plate, brand, model,
+ * year, date, problem, repairs, observations, status, parts. Only date is required. Parts are written as
+ * "code:name:supplier" separated by ';'.
+ */
+public class CsvImporter {
+
+    private static final int BATCH_SIZE = 5000;
+    private static final String[] DATE_FORMATS = {"dd/MM/yyyy HH:mm", "dd/MM/yyyy", "yyyy-MM-dd HH:mm", "yyyy-MM-dd"};
+
+    /**
+     * Called after every committed batch, on the importing thread.
+     */
+    public interface ProgressListener {
+        void progress(long rowsDone, long bytesRead, long totalBytes);
+    }
+
+    public static class Result {
+        public final int imported;
+        public final int rejected;
+        public final int skipped; // Already imported by an earlier, interrupted run
+        public final boolean cancelled;
+        public final long elapsedMs;
+        public final File rejectFile;
+
+        Result(int imported, int rejected, int skipped, boolean cancelled, long elapsedMs, File rejectFile) {
+            this.imported = imported;
+            this.rejected = rejected;
+            this.skipped = skipped;
+            this.cancelled = cancelled;
+            this.elapsedMs = elapsedMs;
+            this.rejectFile = rejectFile;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("imported=%d, rejected=%d, skipped=%d%s in %d ms",
+                    imported, rejected, skipped, cancelled ? " (cancelled)" : "", elapsedMs);
+        }
+    }
+
+    private enum Column {
+        NAME("name", "client"), PHONE("phone"), PLATE("plate", "license_plate"), BRAND("brand"), MODEL("model"),
+        YEAR("year"), DATE("date"), PROBLEM("problem", "description"), REPAIRS("repairs"),
+        OBSERVATIONS("observations"), STATUS("status"), PARTS("parts");
+
+        private final String[] names;
+
+        Column(String... names) {
+            this.names = names;
+        }
+
+        static Column of(String header) {
+            String h = header.trim().toLowerCase(Locale.ROOT);
+            for (Column c : values()) {
+                for (String n : c.names) if (n.equals(h)) return c;
+            }
+            return null;
+        }
+    }
+
+    // A validated, normalized row, ready to insert
+    private record Row(int rowNo, String name, String phone, String plate, String brand, String model, int year,
+                       Date date, String problem, String repairs, String observations, AppointmentStatus status,
+                       List<Part> parts) {}
+
+    private final File source;
+    private final ProgressListener listener;
+    private final BooleanSupplier cancelRequested;
+
+    // Pre-warmed from the database, then extended as rows create clients and cars
+    private final Map<String, Integer> clientsByPhone = new HashMap<>();
+    private final Map<String, Integer> carsByPlate = new HashMap<>();
+
+    private final SimpleDateFormat[] dateFormats = new SimpleDateFormat[DATE_FORMATS.length];
+    private final Map<String, String> phoneCache = new HashMap<>(); // raw -> normalized (validation is the slow part)
+
+    public CsvImporter(File source, ProgressListener listener, BooleanSupplier cancelRequested) {
+        this.source = source;
+        this.listener = listener;
+        this.cancelRequested = cancelRequested != null ? cancelRequested : () -> false;
+        for (int i = 0; i < DATE_FORMATS.length; i++) {
+            dateFormats[i] = new SimpleDateFormat(DATE_FORMATS[i]);
+            dateFormats[i].setLenient(false);
+        }
+    }
+
+    public static File rejectFileFor(File source) {
+        return new File(source.getParentFile(), source.getName() + ".rejected.csv");
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: PIPELINE
+    // =================================================================================================================
+
+    public Result run() throws IOException, SQLException {
+        long start = System.currentTimeMillis();
+        String key = source.getCanonicalPath();
+        long totalBytes = source.length();
+
+        // 1. Where did a previous run of this exact file stop?
+        int resumeAfter = readCheckpoint(key);
+        warmUpMaps();
+
+        File rejectFile = rejectFileFor(source);
+        int imported = 0, rejected = 0, skipped = 0;
+        boolean cancelled = false;
+
+        try (CountingInputStream counter = new CountingInputStream(new BufferedInputStream(new FileInputStream(source), 1 << 16));
+             BufferedReader reader = new BufferedReader(new InputStreamReader(counter, StandardCharsets.UTF_8));
+             BufferedWriter rejects = openRejectFile(rejectFile, resumeAfter)) {
+
+            // 2. Header
+            List<String> header = readRecord(reader);
+            if (header == null) throw new IOException("The file is empty");
+            if (!header.isEmpty() && header.get(0).startsWith("\uFEFF")) header.set(0, header.get(0).substring(1)); // BOM
+            Column[] columns = new Column[header.size()];
+            for (int i = 0; i < header.size(); i++) columns[i] = Column.of(header.get(i));
+            if (!Arrays.asList(columns).contains(Column.DATE)) throw new IOException("The file has no 'date' column");
+            if (resumeAfter == 0) writeCsvLine(rejects, prepend(List.of("row", "reason"), header));
+
+            // 3. Stream the rows, one transaction per batch
+            List<Row> batch = new ArrayList<>(BATCH_SIZE);
+            List<List<String>> batchRejects = new ArrayList<>();
+            int rowNo = 0;
+            List<String> record;
+            while ((record = readRecord(reader)) != null) {
+                if (record.size() == 1 && record.get(0).isBlank()) continue; // Empty line
+                rowNo++;
+                if (rowNo <= resumeAfter) {
+                    skipped++;
+                    continue;
+                }
+
+                try {
+                    batch.add(parse(rowNo, columns, record));
+                } catch (IllegalArgumentException e) {
+                    batchRejects.add(prepend(List.of(String.valueOf(rowNo), e.getMessage()), record));
+                }
+
+                if (batch.size() + batchRejects.size() >= BATCH_SIZE) {
+                    imported += writeBatch(key, batch, rowNo, imported + batch.size(), rejected + batchRejects.size());
+                    rejected += flushRejects(rejects, batchRejects);
+                    batch.clear();
+                    if (listener != null) listener.progress(rowNo, counter.count, totalBytes);
+                    if (cancelRequested.getAsBoolean()) {
+                        cancelled = true;
+                        break;
+                    }
+                }
+            }
+
+            // 4. Last partial batch; a finished import forgets its checkpoint
+            if (!cancelled) {
+                imported += writeBatch(key, batch, rowNo, imported + batch.size(), rejected + batchRejects.size());
+                rejected += flushRejects(rejects, batchRejects);
+                clearCheckpoint(key);
+                if (listener != null) listener.progress(rowNo, totalBytes, totalBytes);
+            }
+        } finally {
+            // The batches wrote no ChangeLog rows: the views get one incomplete change and reload once (also after
+            // a failed run, for the batches that were committed)
+            if (imported > 0) AppointmentRepository.invalidate();
+        }
+
+        if (rejected == 0 && resumeAfter == 0) Files.deleteIfExists(rejectFile.toPath());
+
+        return new Result(imported, rejected, skipped, cancelled, System.currentTimeMillis() - start,
+                rejected > 0 || resumeAfter > 0 ? rejectFile : null);
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: VALIDATION & NORMALIZATION
+    // =================================================================================================================
+
+    private Row parse(int rowNo, Column[] columns, List<String> record) {
+        EnumMap<Column, String> values = new EnumMap<>(Column.class);
+        for (int i = 0; i < columns.length && i < record.size(); i++) {
+            if (columns[i] != null) values.put(columns[i], record.get(i).trim());
+        }
+
+        // 1. Date (required)
+        String rawDate = values.getOrDefault(Column.DATE, "");
+        if (rawDate.isEmpty()) throw new IllegalArgumentException("missing date");
+        Date date = parseDate(rawDate);
+
+        // 2. Phone and plate: same rules as the appointment form
+        String phone = null;
+        String rawPhone = values.getOrDefault(Column.PHONE, "");
+        if (!rawPhone.isEmpty()) {
+            phone = phoneCache.computeIfAbsent(rawPhone, raw -> Utils.isValidPhone(raw) ? Utils.normalizePhone(raw) : "");
+            if (phone.isEmpty()) throw new IllegalArgumentException("invalid phone: " + rawPhone);
+        }
+
+        String plate;
+        String rawPlate = values.getOrDefault(Column.PLATE, "");
+        if (rawPlate.isEmpty()) {
+            plate = "PENDING-" + System.currentTimeMillis() + "-" + rowNo; // Same placeholder the form uses, kept unique
+        } else {
+            if (!Utils.isValidPlate(rawPlate)) throw new IllegalArgumentException("invalid plate: " + rawPlate);
+            plate = Utils.formatPlate(rawPlate);
+        }
+
+        // 3. Year and status
+        int year = 0;
+        String rawYear = values.getOrDefault(Column.YEAR, "");
+        if (!rawYear.isEmpty()) {
+            try {
+                year = Integer.parseInt(rawYear);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("invalid year: " + rawYear);
+            }
+        }
+
+        AppointmentStatus status;
+        String rawStatus = values.getOrDefault(Column.STATUS, "");
+        if (rawStatus.isEmpty()) {
+            // History is done; only future rows are still scheduled (otherwise autoUpdateStatuses flags them IN_PROGRESS)
+            status = date.getTime() < System.currentTimeMillis() ? AppointmentStatus.DONE : AppointmentStatus.SCHEDULED;
+        } else {
+            try {
+                status = AppointmentStatus.valueOf(rawStatus.toUpperCase(Locale.ROOT).replace(' ', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("invalid status: " + rawStatus);
+            }
+        }
+
+        // 4. Free text ("-" when empty, like the form)
+        return new Row(rowNo,
+                orDash(Utils.toTitleCase(values.getOrDefault(Column.NAME, ""))), phone, plate,
+                orDash(Utils.toTitleCase(values.getOrDefault(Column.BRAND, ""))),
+                orDash(Utils.toTitleCase(values.getOrDefault(Column.MODEL, ""))),
+                year, date,
+                values.getOrDefault(Column.PROBLEM, ""),
+                orDash(values.getOrDefault(Column.REPAIRS, "")),
+                orDash(values.getOrDefault(Column.OBSERVATIONS, "")),
+                status, parseParts(values.getOrDefault(Column.PARTS, "")));
+    }
+
+    private Date parseDate(String raw) {
+        for (SimpleDateFormat format : dateFormats) {
+            ParsePosition position = new ParsePosition(0);
+            Date date = format.parse(raw, position);
+            if (date != null && position.getIndex() == raw.length()) return date; // Whole text, not just a prefix
+        }
+        throw new IllegalArgumentException("invalid date: " + raw);
+    }
+
+    private List<Part> parseParts(String raw) {
+        List<Part> parts = new ArrayList<>();
+        if (raw.isEmpty()) return parts;
+
+        for (String entry : raw.split(";")) {
+            if (entry.isBlank()) continue;
+            String[] fields = entry.split(":", -1);
+            if (fields.length != 3) throw new IllegalArgumentException("invalid part (code:name:supplier): " + entry);
+            try {
+                parts.add(new Part(fields[0].trim(), fields[1].trim(), Supplier.valueOf(fields[2].trim().toUpperCase(Locale.ROOT))));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("unknown supplier: " + fields[2].trim());
+            }
+        }
+        return parts;
+    }
+
+    private static String orDash(String value) {
+        return value == null || value.isEmpty() ? "-" : value;
+    }
+
+    // =================================================================================================================
+    //  SECTION 3: DATABASE
+    // =================================================================================================================
+
+    private void warmUpMaps() throws SQLException {
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT client_id, phone FROM Clients WHERE phone IS NOT NULL")) {
+                while (rs.next()) clientsByPhone.put(rs.getString("phone"), rs.getInt("client_id"));
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT car_id, license_plate FROM Cars")) {
+                while (rs.next()) carsByPlate.put(rs.getString("license_plate"), rs.getInt("car_id"));
+            }
+        }
+    }
+
+    /**
+     * Inserts one batch and moves the checkpoint to 'rowNo', all in one transaction. Existing clients and cars
+     * are reused as they are: imported history is older than what the app already knows about them.
+     * The per-row triggers are suspended for the batch (SchemaMigrator.createChangeLog): it writes its day keys,
+     * search rows and duplicate keys itself, and run() reports the whole import as one incomplete change.
+     */
+    private int writeBatch(String key, List<Row> batch, int rowNo, int importedSoFar, int rejectedSoFar) throws SQLException {
+        try (Connection conn = DatabaseHelper.connect()) {
+            conn.setAutoCommit(false);
+            try (Statement guard = conn.createStatement();
+                 PreparedStatement insertClient = conn.prepareStatement("INSERT INTO Clients(name, phone) VALUES(?, ?)");
+                 PreparedStatement insertCar = conn.prepareStatement("INSERT INTO Cars(client_id, license_plate, brand_name, model, year, photo_path) VALUES(?, ?, ?, ?, ?, '')");
+                 PreparedStatement insertAppointment = conn.prepareStatement("INSERT INTO Appointments(car_id, client_id, date, day_key, problem, repairs, observations, status, dup_key) VALUES(?, ?, ?, ?, ?, ?, ?, ?, " + DatabaseHelper.FREE_DUP_KEY + ")");
+                 PreparedStatement insertPart = conn.prepareStatement("INSERT INTO Parts(appointment_id, code, name, supplier) VALUES(?, ?, ?, ?)");
+                 PreparedStatement lastId = conn.prepareStatement("SELECT last_insert_rowid()")) { // Prepared once, unlike getGeneratedKeys()
+                // 0. Triggers off until this transaction ends (never committed: the row is gone again before commit)
+                guard.executeUpdate("INSERT INTO BulkLoad(started_at) VALUES(" + System.currentTimeMillis() + ")");
+
+                for (Row row : batch) {
+                    // 1. Client (rows without a phone always get their own, like the form)
+                    Integer clientId = row.phone() != null ? clientsByPhone.get(row.phone()) : null;
+                    if (clientId == null) {
+                        insertClient.setString(1, row.name());
+                        insertClient.setString(2, row.phone());
+                        insertClient.executeUpdate();
+                        clientId = lastInsertId(lastId);
+                        if (row.phone() != null) clientsByPhone.put(row.phone(), clientId);
+                    }
+
+                    // 2. Car
+                    Integer carId = carsByPlate.get(row.plate());
+                    if (carId == null) {
+                        insertCar.setInt(1, clientId);
+                        insertCar.setString(2, row.plate());
+                        insertCar.setString(3, row.brand());
+                        insertCar.setString(4, row.model());
+                        insertCar.setInt(5, row.year());
+                        insertCar.executeUpdate();
+                        carId = lastInsertId(lastId);
+                        carsByPlate.put(row.plate(), carId);
+                    }
+
+                    // 3. Appointment, with its duplicate key unless an earlier row holds it (phone and plate are
+                    // exactly what the client and car rows store)
+                    String dupKey = AppointmentRepository.duplicateKey(row.phone(), row.plate(), row.date(), row.problem());
+                    insertAppointment.setInt(1, carId);
+                    insertAppointment.setInt(2, clientId);
+                    insertAppointment.setLong(3, row.date().getTime());
+                    insertAppointment.setInt(4, Utils.dayKey(row.date()));
+                    insertAppointment.setString(5, row.problem());
+                    insertAppointment.setString(6, row.repairs());
+                    insertAppointment.setString(7, row.observations());
+                    insertAppointment.setString(8, row.status().name());
+                    insertAppointment.setString(9, dupKey);
+                    insertAppointment.setString(10, dupKey);
+                    insertAppointment.addBatch();
+                }
+                if (!batch.isEmpty()) {
+                    insertAppointment.executeBatch();
+
+                    // 4. Ids are consecutive inside the transaction: the last one gives the whole range
+                    int lastAppointmentId = lastInsertId(lastId);
+                    int firstId = lastAppointmentId - batch.size() + 1;
+
+                    // 5. Parts, then the search rows of the whole batch in one statement
+                    for (int i = 0; i < batch.size(); i++) {
+                        for (Part p : batch.get(i).parts()) {
+                            insertPart.setInt(1, firstId + i);
+                            insertPart.setString(2, p.getCode());
+                            insertPart.setString(3, p.getName());
+                            insertPart.setString(4, p.getSupplier().name());
+                            insertPart.addBatch();
+                        }
+                    }
+                    insertPart.executeBatch();
+                    DatabaseHelper.writeSearchRows(conn, firstId, lastAppointmentId);
+                }
+
+                guard.executeUpdate("DELETE FROM BulkLoad");
+                saveCheckpoint(conn, key, rowNo, importedSoFar, rejectedSoFar);
+                conn.commit();
+                return batch.size();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
+        }
+    }
+
+    private static int lastInsertId(PreparedStatement lastId) throws SQLException {
+        try (ResultSet rs = lastId.executeQuery()) {
+            return rs.getInt(1);
+        }
+    }
+
+    // Rows already imported from this file, or 0 if it was never started (or has changed since)
+    private int readCheckpoint(String key) throws SQLException {
+        String sql = "SELECT file_size, file_modified, rows_done FROM ImportProgress WHERE source = ?";
+        try (Connection conn = DatabaseHelper.connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, key);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return 0;
+                if (rs.getLong("file_size") == source.length() && rs.getLong("file_modified") == source.lastModified()) {
+                    return rs.getInt("rows_done");
+                }
+            }
+        }
+        clearCheckpoint(key); // Same name, different content: start over
+        return 0;
+    }
+
+    private void saveCheckpoint(Connection conn, String key, int rowNo, int imported, int rejected) throws SQLException {
+        String sql = "INSERT OR REPLACE INTO ImportProgress(source, file_size, file_modified, rows_done, imported, rejected, updated_at) "
+                + "VALUES(?, ?, ?, ?, ?, ?, ?)";
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setString(1, key);
+            ps.setLong(2, source.length());
+            ps.setLong(3, source.lastModified());
+            ps.setInt(4, rowNo);
+            ps.setInt(5, imported);
+            ps.setInt(6, rejected);
+            ps.setLong(7, System.currentTimeMillis());
+            ps.executeUpdate();
+        }
+    }
+
+    private static void clearCheckpoint(String key) throws SQLException {
+        try (Connection conn = DatabaseHelper.connect();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM ImportProgress WHERE source = ?")) {
+            ps.setString(1, key);
+            ps.executeUpdate();
+        }
+    }
+
+    // =================================================================================================================
+    //  SECTION 4: CSV READING & WRITING
+    // =================================================================================================================
+
+    /**
+     * Reads one CSV record (RFC 4180: quoted fields may contain commas, "" and line breaks). Null at end of file.
+     */
+    static List<String> readRecord(BufferedReader reader) throws IOException {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean any = false;
+
+        int c;
+        while ((c = reader.read()) != -1) {
+            any = true;
+            if (quoted) {
+                if (c == '"') {
+                    reader.mark(1);
+                    if (reader.read() == '"') {
+                        field.append('"');
+                    } else {
+                        reader.reset();
+                        quoted = false;
+                    }
+                } else {
+                    field.append((char) c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else if (c == '\n') {
+                break;
+            } else if (c != '\r') {
+                field.append((char) c);
+            }
+        }
+        if (!any) return null;
+        fields.add(field.toString());
+        return fields;
+    }
+
+    static void writeCsvLine(Writer out, List<String> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) out.write(',');
+            String f = fields.get(i) == null ? "" : fields.get(i);
+            if (f.contains(",") || f.contains("\"") || f.contains("\n") || f.contains("\r")) {
+                out.write('"');
+                out.write(f.replace("\"", "\"\""));
+                out.write('"');
+            } else {
+                out.write(f);
+            }
+        }
+        out.write(System.lineSeparator());
+    }
+
+    private static int flushRejects(BufferedWriter out, List<List<String>> rows) throws IOException {
+        int count = rows.size();
+        for (List<String> row : rows) writeCsvLine(out, row);
+        out.flush();
+        rows.clear();
+        return count;
+    }
+
+    /**
+     * Fresh import: a new reject file. Resumed import: keep the rejects of the rows already done (a crash between
+     * commit and flush can leave rejects of a batch that will be read again, those are dropped).
+     */
+    private static BufferedWriter openRejectFile(File rejectFile, int resumeAfter) throws IOException {
+        List<List<String>> kept = new ArrayList<>();
+        if (resumeAfter > 0 && rejectFile.exists()) {
+            try (BufferedReader in = Files.newBufferedReader(rejectFile.toPath(), StandardCharsets.UTF_8)) {
+                List<String> record;
+                boolean first = true;
+                while ((record = readRecord(in)) != null) {
+                    if (first || Integer.parseInt(record.get(0)) <= resumeAfter) kept.add(record);
+                    first = false;
+                }
+            } catch (NumberFormatException e) {
+                kept.clear(); // Not ours; start it over
+            }
+        }
+
+        BufferedWriter out = Files.newBufferedWriter(rejectFile.toPath(), StandardCharsets.UTF_8);
+        for (List<String> record : kept) writeCsvLine(out, record);
+        return out;
+    }
+
+    private static List<String> prepend(List<String> first, List<String> rest) {
+        List<String> all = new ArrayList<>(first.size() + rest.size());
+        all.addAll(first);
+        all.addAll(rest);
+        return all;
+    }
+
+    // Bytes read so far, for the progress bar
+    private static class CountingInputStream extends FilterInputStream {
+        volatile long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) count++;
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) count += n;
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+    }
+}
@@ -5,26 +5,50 @@ import com.autoshop.app.model.*; // Imports Appointment, Client, Car, Part, Supp
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
 
 public class DatabaseHelper {
     private static String URL = "jdbc:sqlite:appointments.db";
+    private static final int ID_CHUNK = 500; // Appointment ids per IN (...) query (well below SQLite's variable limit)
+    private static final long CHANGE_LOG_RETENTION_MS = 24L * 60 * 60 * 1000;
+
+    static {
+        ConnectionManager.configure(URL);
+    }
 
     // =================================================================================================================
     //  SECTION 1: CONNECTION & SETUP
     // =================================================================================================================
 
+    // Borrows the shared writer connection. close() hands it back to the ConnectionManager.
     public static Connection connect() throws SQLException {
-        try {
-            Class.forName("org.sqlite.JDBC");
-        } catch (ClassNotFoundException e) {
-            throw new SQLException("SQLite Driver not found!");
-        }
-        return DriverManager.getConnection(URL);
+        return ConnectionManager.borrowWriter();
+    }
+
+    // Borrows a pooled read-only connection (WAL lets these run alongside the writer)
+    static Connection connectRead() throws SQLException {
+        return ConnectionManager.borrowReader();
+    }
+
+    // The database file currently in use (e.g. to back it up)
+    public static java.io.File getDatabaseFile() {
+        return new java.io.File(URL.substring("jdbc:sqlite:".length()));
     }
 
     public static void setDataBaseName(String dbName){
         URL = "jdbc:sqlite:" + dbName;
+        ConnectionManager.configure(URL);
     }
 
     public static void createNewTable() throws SQLException {
@@ -60,6 +84,14 @@ public class DatabaseHelper {
             stmt.execute(appointmentsQuery);
             stmt.execute(partsQuery); // <--- Execute new table
         }
+
+        // Indexes, search index and later schema changes are versioned migrations
+        try (Connection conn = connect()) {
+            SchemaMigrator.migrate(conn);
+        }
+
+        // Views start from a fresh load, so old change-log rows are only dead weight
+        pruneChangeLog();
     }
 
     // =================================================================================================================
@@ -112,6 +144,12 @@ public class DatabaseHelper {
                     }
                 }
 
+                // 5. Search row, once, now that the parts are there
+                writeSearchRows(conn, appointmentId, appointmentId);
+
+                // 6. Duplicate key, unless an earlier copy holds it
+                claimDupKeys(conn, appointmentId, appointmentId);
+
                 conn.commit();
             } catch (SQLException e) {
                 conn.rollback();
@@ -120,7 +158,12 @@ public class DatabaseHelper {
         }
     }
 
-    public static void updateAppointmentTransaction(Appointment appointment) throws SQLException {
+    /**
+     * Rewrites the appointment (client, car, appointment row) and brings its parts in line with getPartList().
+     * Returns the number of Parts rows inserted, updated or deleted (0 when the parts did not change).
+     */
+    public static int updateAppointmentTransaction(Appointment appointment) throws SQLException {
+        int partRows;
         try (Connection conn = connect()) {
             conn.setAutoCommit(false); // Start Transaction
             try {
@@ -135,7 +178,8 @@ public class DatabaseHelper {
                         appointment.getCarYear(),
                         appointment.getCarPhotoPath());
 
-                // 3. Update Appointment Table
+                // 3. Update Appointment Table (remembering the duplicate key it held)
+                HeldDupKey held = heldDupKey(conn, appointment.getAppointmentID());
                 String sqlAppointment = "UPDATE Appointments SET client_id=?, car_id=?, date=?, problem=?, repairs=?, observations=?, status=? WHERE appointment_id=?";
                 try (PreparedStatement ps = conn.prepareStatement(sqlAppointment)) {
                     ps.setInt(1, clientId);
@@ -149,29 +193,226 @@ public class DatabaseHelper {
                     ps.executeUpdate();
                 }
 
-                // 4. Update Parts (Wipe and Replace Strategy)
-                // A. Delete old parts for this appointment
-                String deleteParts = "DELETE FROM Parts WHERE appointment_id = ?";
-                try (PreparedStatement ps = conn.prepareStatement(deleteParts)) {
-                    ps.setInt(1, appointment.getAppointmentID());
-                    ps.executeUpdate();
+                // 4. Update Parts: only the rows that differ from what is stored
+                partRows = syncParts(conn, appointment);
+
+                // 5. Search row, rewritten once for the appointment and all its parts
+                writeSearchRows(conn, appointment.getAppointmentID(), appointment.getAppointmentID());
+
+                // 6. Duplicate key: the edit may give it another one, and free the old one for a twin
+                claimDupKeys(conn, appointment.getAppointmentID(), appointment.getAppointmentID());
+                handOverDupKey(conn, held);
+
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                e.printStackTrace();
+                throw e;
+            }
+        }
+        return partRows;
+    }
+
+    /**
+     * (Re)writes the full-text search rows of appointments firstId..lastId, parts included: one FTS write per
+     * appointment. Call it inside the transaction, after the parts were written.
+     */
+    static void writeSearchRows(Connection conn, int firstId, int lastId) throws SQLException {
+        String range = " BETWEEN " + firstId + " AND " + lastId;
+        try (Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM AppointmentSearch WHERE rowid" + range);
+            stmt.executeUpdate(SchemaMigrator.searchRowInsert("app.appointment_id" + range));
+        }
+    }
+
+    // The stored fields AppointmentRepository.duplicateKey() is built from, and the key each appointment holds
+    private static final String DUP_KEY_SOURCE = "SELECT app.appointment_id, cl.phone, c.license_plate, app.date, app.problem, app.dup_key "
+            + "FROM Appointments app LEFT JOIN Clients cl ON app.client_id = cl.client_id LEFT JOIN Cars c ON app.car_id = c.car_id ";
+    // A key nobody holds yet, else NULL (binds the key twice); CsvImporter writes it with the row
+    static final String FREE_DUP_KEY = "CASE WHEN EXISTS (SELECT 1 FROM Appointments WHERE dup_key = ?) THEN NULL ELSE ? END";
+    private static final String CLAIM_DUP_KEY = "UPDATE Appointments SET dup_key = " + FREE_DUP_KEY + " WHERE appointment_id = ?";
+
+    // The duplicate key an appointment held before an edit or delete, and its date (to find its twins)
+    private record HeldDupKey(String key, long date) {}
+
+    /**
+     * Gives appointments firstId..lastId their duplicate key (AppointmentRepository.duplicateKey), in id order,
+     * unless another appointment already holds it; a row that had another key gives it up. Appointments.dup_key
+     * is unique, so a duplicate is one index lookup away. Call it inside the transaction that wrote the rows.
+     */
+    static void claimDupKeys(Connection conn, int firstId, int lastId) throws SQLException {
+        // 1. Keys of the stored rows (phone and plate as saved), only where they differ from what is held
+        List<Object[]> claims = new ArrayList<>(); // {id, key}
+        try (PreparedStatement ps = conn.prepareStatement(DUP_KEY_SOURCE
+                + "WHERE app.appointment_id BETWEEN ? AND ? ORDER BY app.appointment_id")) {
+            ps.setInt(1, firstId);
+            ps.setInt(2, lastId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    String key = dupKeyOf(rs);
+                    if (!Objects.equals(key, rs.getString("dup_key"))) claims.add(new Object[]{rs.getInt("appointment_id"), key});
                 }
+            }
+        }
+        if (claims.isEmpty()) return;
 
-                // B. Insert current parts
-                if (appointment.getPartList() != null && !appointment.getPartList().isEmpty()) {
-                    String partSql = "INSERT INTO Parts(appointment_id, code, name, supplier) VALUES(?, ?, ?, ?)";
-                    try (PreparedStatement ps = conn.prepareStatement(partSql)) {
-                        for (Part p : appointment.getPartList()) {
-                            ps.setInt(1, appointment.getAppointmentID());
-                            ps.setString(2, p.getCode());
-                            ps.setString(3, p.getName());
-                            ps.setString(4, p.getSupplier().name());
-                            ps.addBatch();
-                        }
-                        ps.executeBatch();
-                    }
+        // 2. Run in order, so an earlier row of the range wins over a later copy
+        try (PreparedStatement ps = conn.prepareStatement(CLAIM_DUP_KEY)) {
+            for (Object[] claim : claims) {
+                ps.setString(1, (String) claim[1]);
+                ps.setString(2, (String) claim[1]);
+                ps.setInt(3, (Integer) claim[0]);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static HeldDupKey heldDupKey(Connection conn, int id) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT dup_key, date FROM Appointments WHERE appointment_id = ?")) {
+            ps.setInt(1, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() && rs.getString(1) != null ? new HeldDupKey(rs.getString(1), rs.getLong(2)) : null;
+            }
+        }
+    }
+
+    // 'held' may be free again: the oldest appointment left with that key (same minute, so the date index finds it) takes it
+    private static void handOverDupKey(Connection conn, HeldDupKey held) throws SQLException {
+        if (held == null || findDuplicateId(conn, held.key()) != -1) return;
+
+        long minute = held.date() / 60000 * 60000;
+        int heir = -1;
+        try (PreparedStatement ps = conn.prepareStatement(DUP_KEY_SOURCE
+                + "WHERE app.date >= ? AND app.date < ? AND app.dup_key IS NULL ORDER BY app.appointment_id")) {
+            ps.setLong(1, minute);
+            ps.setLong(2, minute + 60000);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (heir == -1 && rs.next()) {
+                    if (held.key().equals(dupKeyOf(rs))) heir = rs.getInt("appointment_id");
                 }
+            }
+        }
+        if (heir == -1) return;
+        try (PreparedStatement ps = conn.prepareStatement("UPDATE Appointments SET dup_key = ? WHERE appointment_id = ?")) {
+            ps.setString(1, held.key());
+            ps.setInt(2, heir);
+            ps.executeUpdate();
+        }
+    }
+
+    private static String dupKeyOf(ResultSet rs) throws SQLException {
+        long date = rs.getLong("date");
+        return rs.wasNull() ? null : AppointmentRepository.duplicateKey(rs.getString("phone"), rs.getString("license_plate"),
+                new java.util.Date(date), rs.getString("problem"));
+    }
+
+    /**
+     * Diffs the incoming part list against the stored rows by part_id: new parts (id -1) are inserted,
+     * changed ones updated, missing ones deleted. Unchanged parts are not written. Inserted parts get their
+     * new ids in the appointment's list, so saving the same object again is a no-op.
+     */
+    private static int syncParts(Connection conn, Appointment appointment) throws SQLException {
+        int appointmentId = appointment.getAppointmentID();
+        List<Part> incoming = appointment.getPartList() != null ? appointment.getPartList() : new ArrayList<>();
+
+        // 1. What is stored now
+        Map<Integer, Part> stored = new HashMap<>();
+        try (PreparedStatement ps = conn.prepareStatement("SELECT part_id, code, name, supplier FROM Parts WHERE appointment_id = ?")) {
+            ps.setInt(1, appointmentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    stored.put(rs.getInt("part_id"), new Part(rs.getInt("part_id"), appointmentId,
+                            rs.getString("code"), rs.getString("name"), Supplier.valueOf(rs.getString("supplier"))));
+                }
+            }
+        }
 
+        // 2. Sort the incoming list into inserts and updates; whatever is left in 'stored' was removed
+        List<Part> result = new ArrayList<>(incoming.size());
+        List<Integer> toInsert = new ArrayList<>();
+        List<Part> toUpdate = new ArrayList<>();
+        for (Part p : incoming) {
+            Part old = stored.remove(p.getId());
+            if (old == null) {
+                toInsert.add(result.size());
+            } else if (!Objects.equals(old.getCode(), p.getCode()) || !Objects.equals(old.getName(), p.getName())
+                    || old.getSupplier() != p.getSupplier()) {
+                toUpdate.add(p);
+            }
+            result.add(p);
+        }
+        if (toInsert.isEmpty() && toUpdate.isEmpty() && stored.isEmpty()) return 0; // Unchanged: Parts is not written
+
+        int touched = 0;
+        if (!stored.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("DELETE FROM Parts WHERE part_id = ?")) {
+                for (int partId : stored.keySet()) {
+                    ps.setInt(1, partId);
+                    touched += ps.executeUpdate();
+                }
+            }
+        }
+        if (!toUpdate.isEmpty()) {
+            try (PreparedStatement ps = conn.prepareStatement("UPDATE Parts SET code = ?, name = ?, supplier = ? WHERE part_id = ?")) {
+                for (Part p : toUpdate) {
+                    ps.setString(1, p.getCode());
+                    ps.setString(2, p.getName());
+                    ps.setString(3, p.getSupplier().name());
+                    ps.setInt(4, p.getId());
+                    touched += ps.executeUpdate();
+                }
+            }
+        }
+        if (!toInsert.isEmpty()) {
+            String partSql = "INSERT INTO Parts(appointment_id, code, name, supplier) VALUES(?, ?, ?, ?)";
+            try (PreparedStatement ps = conn.prepareStatement(partSql, Statement.RETURN_GENERATED_KEYS)) {
+                for (int index : toInsert) {
+                    Part p = result.get(index);
+                    ps.setInt(1, appointmentId);
+                    ps.setString(2, p.getCode());
+                    ps.setString(3, p.getName());
+                    ps.setString(4, p.getSupplier().name());
+                    touched += ps.executeUpdate();
+                    result.set(index, new Part(ps.getGeneratedKeys().getInt(1), appointmentId, p.getCode(), p.getName(), p.getSupplier()));
+                }
+            }
+        }
+
+        appointment.setPartList(result);
+        return touched;
+    }
+
+    // Status change only: one UPDATE, no client/car/parts rewrite
+    public static boolean updateStatus(int appointmentId, AppointmentStatus status) throws SQLException {
+        return updateStatuses(List.of(appointmentId), status) == 1;
+    }
+
+    /**
+     * Moves many appointments to one status in a single transaction (e.g. a whole day marked DONE).
+     * Rows already in that status are left alone. Returns the number of rows changed.
+     */
+    public static int updateStatuses(Collection<Integer> ids, AppointmentStatus status) throws SQLException {
+        if (ids.isEmpty()) return 0;
+
+        String sql = "UPDATE Appointments SET status = ? WHERE status <> ? AND appointment_id IN ("
+                + String.join(",", Collections.nCopies(ID_CHUNK, "?")) + ")";
+
+        List<Integer> idList = new ArrayList<>(new LinkedHashSet<>(ids));
+        int changed = 0;
+        try (Connection conn = connect()) {
+            conn.setAutoCommit(false); // Start Transaction
+            try (PreparedStatement ps = conn.prepareStatement(sql)) {
+                ps.setString(1, status.name());
+                ps.setString(2, status.name());
+                for (int from = 0; from < idList.size(); from += ID_CHUNK) {
+                    int to = Math.min(from + ID_CHUNK, idList.size());
+                    // Pad the last chunk with its final id so the same cached statement is reused
+                    for (int i = 0; i < ID_CHUNK; i++) {
+                        ps.setInt(i + 3, idList.get(Math.min(from + i, to - 1)));
+                    }
+                    changed += ps.executeUpdate();
+                }
                 conn.commit();
             } catch (SQLException e) {
                 conn.rollback();
@@ -179,15 +420,25 @@ public class DatabaseHelper {
                 throw e;
             }
         }
+        return changed;
     }
 
     public static void deleteAppointment(int id) throws SQLException {
         // Note: Because we used ON DELETE CASCADE in the Parts table creation,
-        // deleting the appointment automatically deletes the parts.
+        // deleting the appointment automatically deletes the parts (ConnectionManager turns foreign keys on).
         String sql = "DELETE FROM Appointments WHERE appointment_id = ?";
-        try (Connection conn = connect(); PreparedStatement preparedStatement = conn.prepareStatement(sql)) {
-            preparedStatement.setInt(1, id);
-            preparedStatement.executeUpdate();
+        try (Connection conn = connect()) {
+            conn.setAutoCommit(false);
+            try (PreparedStatement preparedStatement = conn.prepareStatement(sql)) {
+                HeldDupKey held = heldDupKey(conn, id);
+                preparedStatement.setInt(1, id);
+                preparedStatement.executeUpdate();
+                handOverDupKey(conn, held); // A copy of this appointment becomes the one found as its duplicate
+                conn.commit();
+            } catch (SQLException e) {
+                conn.rollback();
+                throw e;
+            }
         }
     }
 
@@ -222,123 +473,455 @@ public class DatabaseHelper {
 
     public static List<Appointment> getDashboardAppointments(java.util.Date day) throws SQLException {
         List<Appointment> list = new ArrayList<>();
-        // Calculate Today's Range
-        java.util.Calendar cal = java.util.Calendar.getInstance();
-        cal.setTime(day);
-        cal.set(java.util.Calendar.HOUR_OF_DAY, 0);
-        cal.set(java.util.Calendar.MINUTE, 0);
-        cal.set(java.util.Calendar.SECOND, 0);
-        cal.set(java.util.Calendar.MILLISECOND, 0);
-        long start = cal.getTimeInMillis();
-
-        cal.set(java.util.Calendar.HOUR_OF_DAY, 23);
-        cal.set(java.util.Calendar.MINUTE, 59);
-        cal.set(java.util.Calendar.SECOND, 59);
-        cal.set(java.util.Calendar.MILLISECOND, 999);
-        long end = cal.getTimeInMillis();
-
         String sql = "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
                 "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
                 "client.name, client.phone " +
                 "FROM Appointments app " +
                 "JOIN Cars car ON app.car_id = car.car_id " +
                 "JOIN Clients client ON car.client_id = client.client_id " +
-                "WHERE (app.date >= " + start + " AND app.date <= " + end + ") " +
+                "WHERE app.day_key = ? " +
                 "OR (app.status = 'IN_PROGRESS')";
 
-        return getAppointments(list, sql);
+        return getAppointments(list, sql, Utils.dayKey(day));
     }
 
-    public static List<Appointment> searchAppointments(String rawKeywords, AppointmentStatus status, java.util.Date from, java.util.Date to) throws SQLException {
+    // Appointments whose day_key (yyyymmdd) is between the two keys, inclusive
+    public static List<Appointment> getAppointmentsForDays(int fromKey, int toKey) throws SQLException {
         List<Appointment> list = new ArrayList<>();
+        String sql = "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
+                "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
+                "client.name, client.phone " +
+                "FROM Appointments app " +
+                "JOIN Cars car ON app.car_id = car.car_id " +
+                "JOIN Clients client ON app.client_id = client.client_id " +
+                "WHERE app.day_key BETWEEN ? AND ? " +
+                "ORDER BY app.date";
 
-        // UPDATED QUERY: Use DISTINCT because LEFT JOIN on Parts will duplicate rows if multiple parts exist
-        StringBuilder sql = new StringBuilder(
-                "SELECT DISTINCT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
-                        "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
-                        "client.name, client.phone " +
-                        "FROM Appointments app " +
-                        "JOIN Cars car ON app.car_id = car.car_id " +
-                        "JOIN Clients client ON car.client_id = client.client_id " +
-                        "LEFT JOIN Parts p ON app.appointment_id = p.appointment_id " + // <--- Join Parts
-                        "WHERE 1=1 "
-        );
+        return getAppointments(list, sql, fromKey, toKey);
+    }
+
+    // Per-day counts by status for day keys in [fromKey, toKey] (e.g. a month: 20250301..20250331).
+    // Answered from idx_appointments_day_key alone; days without appointments are absent.
+    public static Map<Integer, Map<AppointmentStatus, Integer>> getDayHistogram(int fromKey, int toKey) throws SQLException {
+        Map<Integer, Map<AppointmentStatus, Integer>> histogram = new TreeMap<>();
+        String sql = "SELECT day_key, status, COUNT(*) FROM Appointments " +
+                "WHERE day_key BETWEEN ? AND ? GROUP BY day_key, status";
 
-        if (status != null) sql.append("AND app.status = ? ");
-        if (from != null) sql.append("AND app.date >= ? ");
-        if (to != null)   sql.append("AND app.date <= ? ");
-
-        String[] tokens = null;
-        if (rawKeywords != null && !rawKeywords.isEmpty()) {
-            tokens = rawKeywords.trim().split("\\s+");
-            for (int i = 0; i < tokens.length; i++) {
-                sql.append("AND (")
-                        .append("client.name LIKE ? OR ")
-                        .append("client.phone LIKE ? OR ")
-                        .append("car.brand_name LIKE ? OR ")
-                        .append("car.model LIKE ? OR ")
-                        .append("car.year LIKE ? OR ")
-                        .append("app.problem LIKE ? OR ")
-                        .append("app.repairs LIKE ? OR ")
-                        .append("app.observations LIKE ? OR ")
-                        // Removed app.parts_used, added Parts table search:
-                        .append("p.code LIKE ? OR ")
-                        .append("p.name LIKE ? OR ")
-                        .append("p.supplier LIKE ? OR ")
-                        // Car Plates
-                        .append("car.license_plate LIKE ? OR ")
-                        .append("car.license_plate LIKE ? ")
-                        .append(") ");
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, fromKey);
+            ps.setInt(2, toKey);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    histogram.computeIfAbsent(rs.getInt(1), k -> new EnumMap<>(AppointmentStatus.class))
+                            .put(AppointmentStatus.valueOf(rs.getString(2)), rs.getInt(3));
+                }
             }
         }
+        return histogram;
+    }
 
-        try (Connection conn = connect();
-             PreparedStatement preparedStatement = conn.prepareStatement(sql.toString())) {
-            int index = 1;
-            if (status != null) preparedStatement.setString(index++, status.name());
-            if (from != null) {
-                java.util.Calendar cal = java.util.Calendar.getInstance();
-                cal.setTime(from);
-                cal.set(java.util.Calendar.HOUR_OF_DAY, 0);
-                cal.set(java.util.Calendar.MINUTE, 0);
-                cal.set(java.util.Calendar.SECOND, 0);
-                preparedStatement.setLong(index++, cal.getTimeInMillis());
-            }
-            if (to != null) {
-                java.util.Calendar cal = java.util.Calendar.getInstance();
-                cal.setTime(to);
-                cal.set(java.util.Calendar.HOUR_OF_DAY, 23);
-                cal.set(java.util.Calendar.MINUTE, 59);
-                cal.set(java.util.Calendar.SECOND, 59);
-                preparedStatement.setLong(index++, cal.getTimeInMillis());
-            }
-            if (tokens != null) {
-                for (String token : tokens) {
-                    String pattern = "%" + token + "%";
-                    // 8 basic text fields (name, phone, brand, model, year, problem, repairs, obs)
-                    for(int k=0; k<8; k++) preparedStatement.setString(index++, pattern);
-
-                    // 3 New Part fields (code, name, supplier)
-                    preparedStatement.setString(index++, pattern);
-                    preparedStatement.setString(index++, pattern);
-                    preparedStatement.setString(index++, pattern);
-
-                    // 2 Plate fields (raw, formatted)
-                    preparedStatement.setString(index++, pattern);
-                    String formattedPlate = com.autoshop.app.util.Utils.formatPlate(token);
-                    preparedStatement.setString(index++, "%" + formattedPlate + "%");
+    public static List<Appointment> getAppointmentsByStatus(AppointmentStatus status) throws SQLException {
+        List<Appointment> list = new ArrayList<>();
+        String sql = "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
+                "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
+                "client.name, client.phone " +
+                "FROM Appointments app " +
+                "JOIN Cars car ON app.car_id = car.car_id " +
+                "JOIN Clients client ON app.client_id = client.client_id " +
+                "WHERE app.status = ? " +
+                "ORDER BY app.date";
+
+        return getAppointments(list, sql, status.name());
+    }
+
+    // SCHEDULED appointments from 'fromMillis' on, soonest first (idx_appointments_status_date)
+    public static List<Appointment> getScheduledFrom(long fromMillis) throws SQLException {
+        List<Appointment> list = new ArrayList<>();
+        String sql = "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
+                "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
+                "client.name, client.phone " +
+                "FROM Appointments app " +
+                "JOIN Cars car ON app.car_id = car.car_id " +
+                "JOIN Clients client ON app.client_id = client.client_id " +
+                "WHERE app.status = 'SCHEDULED' AND app.date >= ? " +
+                "ORDER BY app.date";
+
+        return getAppointments(list, sql, fromMillis);
+    }
+
+    // --- KEYSET PAGING (Appointments tab) ---
+    // Rows are ordered by (date, appointment_id). A page starts strictly after the given key;
+    // getPageStartKey finds that key for a page the caller has no boundary for yet.
+
+    public static List<Appointment> getAppointmentsPage(long afterDate, int afterId, int limit) throws SQLException {
+        List<Appointment> list = new ArrayList<>();
+        String sql = "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
+                "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
+                "client.name, client.phone " +
+                "FROM Appointments app " +
+                "JOIN Cars car ON app.car_id = car.car_id " +
+                "JOIN Clients client ON app.client_id = client.client_id " +
+                "WHERE app.date > ? OR (app.date = ? AND app.appointment_id > ?) " +
+                "ORDER BY app.date, app.appointment_id " +
+                "LIMIT ?";
+
+        return getAppointments(list, sql, afterDate, afterDate, afterId, limit);
+    }
+
+    // Key {date, appointment_id} of the row 'skip' rows after the given key (skip >= 1), or null past the end.
+    // Reads only idx_appointments_date (date plus the rowid), so jumping far ahead never reads the rows it skips.
+    public static long[] getPageStartKey(long afterDate, int afterId, int skip) throws SQLException {
+        String sql = "SELECT date, appointment_id FROM Appointments " +
+                "WHERE date > ? OR (date = ? AND appointment_id > ?) " +
+                "ORDER BY date, appointment_id " +
+                "LIMIT 1 OFFSET ?";
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterDate);
+            ps.setLong(2, afterDate);
+            ps.setInt(3, afterId);
+            ps.setInt(4, skip - 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? new long[]{rs.getLong(1), rs.getInt(2)} : null;
+            }
+        }
+    }
+
+    // Ids of 'count' rows from row 'fromRow' on, in table order. Index-only (idx_appointments_date), for rows
+    // whose page is not in memory.
+    public static List<Integer> getAppointmentIdsInRows(int fromRow, int count) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        String sql = "SELECT appointment_id FROM Appointments ORDER BY date, appointment_id LIMIT ? OFFSET ?";
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, count);
+            ps.setInt(2, fromRow);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) ids.add(rs.getInt(1));
+            }
+        }
+        return ids;
+    }
+
+    public static int countAppointments() throws SQLException {
+        try (Connection conn = connectRead();
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM Appointments");
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    // Position of an appointment in (date, appointment_id) order, or -1 if it does not exist
+    public static int getAppointmentRowIndex(int appointmentId) throws SQLException {
+        String sql = "SELECT (SELECT COUNT(*) FROM Appointments a " +
+                "WHERE a.date < t.date OR (a.date = t.date AND a.appointment_id < t.appointment_id)) " +
+                "FROM Appointments t WHERE t.appointment_id = ?";
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, appointmentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    // Appointment holding a duplicate key (see AppointmentRepository.duplicateKey), or -1. One unique-index lookup.
+    public static int findDuplicateId(String dupKey) throws SQLException {
+        try (Connection conn = connectRead()) {
+            return findDuplicateId(conn, dupKey);
+        }
+    }
+
+    private static int findDuplicateId(Connection conn, String dupKey) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("SELECT appointment_id FROM Appointments WHERE dup_key = ?")) {
+            ps.setString(1, dupKey);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : -1;
+            }
+        }
+    }
+
+    // --- CHANGE TRACKING (incremental refresh) ---
+    // Triggers append to ChangeLog on every change to an appointment, its parts, car or client.
+    // A view remembers the version it last loaded and asks only for what changed since then.
+
+    // Current change version. A single-row lookup, cheap enough for every periodic refresh.
+    public static long getChangeVersion() throws SQLException {
+        try (Connection conn = connectRead()) {
+            return readChangeVersion(conn);
+        }
+    }
+
+    public static ChangeSet getChangesSince(long version) throws SQLException {
+        try (Connection conn = connectRead()) {
+            long current = readChangeVersion(conn);
+            if (current == version) return new ChangeSet(version, current, true);
+
+            // 1. The log must still hold every row after 'version' (older rows are pruned)
+            boolean complete = version < current;
+            try (PreparedStatement ps = conn.prepareStatement("SELECT MIN(version) FROM ChangeLog");
+                 ResultSet rs = ps.executeQuery()) {
+                long oldest = rs.next() ? rs.getLong(1) : 0;
+                if (oldest == 0 || oldest > version + 1) complete = false;
+            }
+            ChangeSet changes = new ChangeSet(version, current, complete);
+            if (!complete) return changes;
+
+            // 2. Collapse the log to one entry per appointment
+            Map<Integer, String> ops = new LinkedHashMap<>();
+            try (PreparedStatement ps = conn.prepareStatement(
+                    "SELECT appointment_id, op FROM ChangeLog WHERE version > ? AND version <= ? ORDER BY version")) {
+                ps.setLong(1, version);
+                ps.setLong(2, current);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) ops.merge(rs.getInt(1), rs.getString(2), String::concat);
                 }
             }
 
+            for (Map.Entry<Integer, String> entry : ops.entrySet()) {
+                String history = entry.getValue();
+                boolean inserted = history.contains("I"); // Not always first: an id reused after a delete logs "DI"
+                boolean deleted = history.endsWith("D");
+                if (deleted && inserted && history.indexOf('D') == history.length() - 1) continue; // Created and removed in between: nothing to show
+                if (deleted) changes.getDeletedIds().add(entry.getKey());
+                else if (inserted) changes.getInsertedIds().add(entry.getKey()); // Also an id reused after a delete ("DI")
+                else changes.getUpdatedIds().add(entry.getKey());
+            }
+            return changes;
+        }
+    }
+
+    // Loads specific appointments (with parts). Ids that no longer exist are simply missing from the result.
+    public static List<Appointment> getAppointmentsByIds(Collection<Integer> ids) throws SQLException {
+        List<Appointment> list = new ArrayList<>();
+        if (ids.isEmpty()) return list;
+
+        String sql = "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
+                "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
+                "client.name, client.phone " +
+                "FROM Appointments app " +
+                "JOIN Cars car ON app.car_id = car.car_id " +
+                "JOIN Clients client ON app.client_id = client.client_id " +
+                "WHERE app.appointment_id IN (" + String.join(",", Collections.nCopies(ID_CHUNK, "?")) + ")";
+
+        List<Integer> idList = new ArrayList<>(ids);
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int from = 0; from < idList.size(); from += ID_CHUNK) {
+                int to = Math.min(from + ID_CHUNK, idList.size());
+                // Pad the last chunk with its final id so the same cached statement is reused
+                for (int i = 0; i < ID_CHUNK; i++) {
+                    ps.setInt(i + 1, idList.get(Math.min(from + i, to - 1)));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) list.add(extractAppointment(rs));
+                }
+            }
+            attachParts(conn, list);
+        }
+        return list;
+    }
+
+    // Highest version handed out. sqlite_sequence keeps it after the log is pruned; MAX(version) covers
+    // the sequence row being reset. Both are single-row lookups.
+    private static long readChangeVersion(Connection conn) throws SQLException {
+        String sql = "SELECT MAX(ifnull((SELECT seq FROM sqlite_sequence WHERE name = 'ChangeLog'), 0), "
+                + "ifnull((SELECT MAX(version) FROM ChangeLog), 0))";
+        try (PreparedStatement ps = conn.prepareStatement(sql); ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getLong(1) : 0;
+        }
+    }
+
+    // Drops change-log rows older than the retention (at startup and every hour, see MaintenanceService). A view
+    // that is further behind than that gets an incomplete change set and reloads. Returns how many went.
+    public static int pruneChangeLog() throws SQLException {
+        return pruneChangeLog(System.currentTimeMillis() - CHANGE_LOG_RETENTION_MS);
+    }
+
+    public static int pruneChangeLog(long olderThan) throws SQLException {
+        try (Connection conn = connect();
+             PreparedStatement ps = conn.prepareStatement("DELETE FROM ChangeLog WHERE changed_at < ?")) {
+            ps.setLong(1, olderThan);
+            return ps.executeUpdate();
+        }
+    }
+
+    public static List<Appointment> searchAppointments(String rawKeywords, AppointmentStatus status, java.util.Date from, java.util.Date to) throws SQLException {
+        List<Appointment> list = new ArrayList<>();
+        SearchQuery query = buildSearchQuery(rawKeywords, status, from, to, false);
+
+        try (Connection conn = connectRead();
+             PreparedStatement preparedStatement = conn.prepareStatement(query.sql())) {
+            query.bind(preparedStatement);
             try (ResultSet rs = preparedStatement.executeQuery()) {
                 while (rs.next()) {
                     list.add(extractAppointment(rs));
                 }
             }
+            attachParts(conn, list);
         }
         return list;
     }
 
+    // How many appointments searchAppointments would return (e.g. to show export progress)
+    public static int countSearchResults(String rawKeywords, AppointmentStatus status, java.util.Date from, java.util.Date to) throws SQLException {
+        SearchQuery query = buildSearchQuery(rawKeywords, status, from, to, false);
+        try (Connection conn = connectRead();
+             PreparedStatement ps = conn.prepareStatement("SELECT COUNT(*) FROM (" + query.sql() + ")")) {
+            query.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    // Which of 'ids' searchAppointments would still return (e.g. result rows that were just edited)
+    public static Set<Integer> filterSearchMatches(String rawKeywords, AppointmentStatus status, java.util.Date from,
+                                                   java.util.Date to, Collection<Integer> ids) throws SQLException {
+        Set<Integer> matches = new HashSet<>();
+        if (ids.isEmpty()) return matches;
+
+        SearchQuery query = buildSearchQuery(rawKeywords, status, from, to, false);
+        String sql = "SELECT appointment_id FROM (" + query.sql() + ") WHERE appointment_id IN ("
+                + String.join(",", Collections.nCopies(ids.size(), "?")) + ")";
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            query.bind(ps);
+            int i = query.params().size();
+            for (int id : ids) ps.setInt(++i, id);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) matches.add(rs.getInt(1));
+            }
+        }
+        return matches;
+    }
+
+    /**
+     * Receives appointments one at a time from streamSearchResults.
+     */
+    public interface AppointmentVisitor {
+        void visit(Appointment appointment) throws java.io.IOException;
+    }
+
+    /**
+     * Same rows and order as searchAppointments (no filter = the whole history), but handed to 'visitor' one by one
+     * straight off the cursor, parts included, so memory stays flat however many rows match.
+     * Parts come from the same query (LEFT JOIN, ordered), so each appointment's rows arrive together.
+     * @return number of appointments visited
+     */
+    public static int streamSearchResults(String rawKeywords, AppointmentStatus status, java.util.Date from, java.util.Date to,
+                                          AppointmentVisitor visitor) throws SQLException, java.io.IOException {
+        SearchQuery query = buildSearchQuery(rawKeywords, status, from, to, true);
+        int count = 0;
+
+        try (Connection conn = connectRead();
+             PreparedStatement ps = conn.prepareStatement(query.sql())) {
+            query.bind(ps);
+            try (ResultSet rs = ps.executeQuery()) {
+                Appointment current = null;
+                while (rs.next()) {
+                    // 1. A new appointment starts: the previous one is complete
+                    int id = rs.getInt("appointment_id");
+                    if (current == null || current.getAppointmentID() != id) {
+                        if (current != null) {
+                            visitor.visit(current);
+                            count++;
+                        }
+                        current = extractAppointment(rs);
+                    }
+
+                    // 2. Its parts (none: the LEFT JOIN gives one row of NULLs)
+                    int partId = rs.getInt("part_id");
+                    if (!rs.wasNull()) {
+                        current.getPartList().add(new Part(partId, id, rs.getString("part_code"),
+                                rs.getString("part_name"), Supplier.valueOf(rs.getString("part_supplier"))));
+                    }
+                }
+                if (current != null) {
+                    visitor.visit(current);
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    // A search statement and its parameters, in binding order
+    private record SearchQuery(String sql, List<Object> params) {
+        void bind(PreparedStatement ps) throws SQLException {
+            for (int i = 0; i < params.size(); i++) ps.setObject(i + 1, params.get(i));
+        }
+    }
+
+    private static SearchQuery buildSearchQuery(String rawKeywords, AppointmentStatus status, java.util.Date from, java.util.Date to,
+                                                boolean withParts) {
+        // Keywords go through the AppointmentSearch full-text index (one row per appointment, so no DISTINCT).
+        // Tokens of 3+ characters become a trigram MATCH (ranked with bm25); shorter ones fall back to LIKE.
+        List<String> matchTerms = new ArrayList<>();
+        List<String> shortTokens = new ArrayList<>();
+        if (rawKeywords != null && !rawKeywords.trim().isEmpty()) {
+            for (String token : rawKeywords.trim().split("\\s+")) {
+                if (token.length() >= 3) matchTerms.add(buildMatchTerm(token));
+                else shortTokens.add(token);
+            }
+        }
+        boolean useIndex = !matchTerms.isEmpty() || !shortTokens.isEmpty();
+
+        StringBuilder sql = new StringBuilder(
+                "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
+                        "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
+                        "client.name, client.phone ");
+        if (withParts) sql.append(", p.part_id, p.code AS part_code, p.name AS part_name, p.supplier AS part_supplier ");
+        if (useIndex) {
+            sql.append("FROM AppointmentSearch s JOIN Appointments app ON app.appointment_id = s.rowid ");
+        } else {
+            sql.append("FROM Appointments app ");
+        }
+        sql.append("JOIN Cars car ON app.car_id = car.car_id ")
+                .append("JOIN Clients client ON car.client_id = client.client_id ");
+        if (withParts) sql.append("LEFT JOIN Parts p ON p.appointment_id = app.appointment_id ");
+        sql.append("WHERE 1=1 ");
+
+        List<Object> params = new ArrayList<>();
+        if (!matchTerms.isEmpty()) {
+            sql.append("AND AppointmentSearch MATCH ? ");
+            params.add(String.join(" AND ", matchTerms));
+        }
+        for (String token : shortTokens) {
+            sql.append("AND (s.client LIKE ? OR s.phone LIKE ? OR s.plate LIKE ? OR s.vehicle LIKE ? OR s.notes LIKE ? OR s.parts LIKE ?) ");
+            for (int k = 0; k < 6; k++) params.add("%" + token + "%");
+        }
+        if (status != null) {
+            sql.append("AND app.status = ? ");
+            params.add(status.name());
+        }
+        if (from != null) {
+            sql.append("AND app.day_key >= ? ");
+            params.add(Utils.dayKey(from));
+        }
+        if (to != null) {
+            sql.append("AND app.day_key <= ? ");
+            params.add(Utils.dayKey(to));
+        }
+
+        // Best matches first (column weights: client, phone, plate, vehicle, notes, parts)
+        if (!matchTerms.isEmpty()) sql.append("ORDER BY bm25(AppointmentSearch, 10.0, 10.0, 10.0, 4.0, 2.0, 3.0)");
+        else sql.append("ORDER BY app.date DESC");
+        // Keeps the part rows of one appointment together (and in order) when they are joined in
+        if (withParts) sql.append(", app.appointment_id, p.part_id");
+
+        return new SearchQuery(sql.toString(), params);
+    }
+
+    // One FTS5 term per keyword: the raw token, OR-ed with its formatted plate form (TM12ABC -> TM-12-ABC)
+    private static String buildMatchTerm(String token) {
+        String term = quoteFts(token);
+        String formattedPlate = com.autoshop.app.util.Utils.formatPlate(token);
+        if (formattedPlate.length() >= 3 && !formattedPlate.equalsIgnoreCase(token)) {
+            term = "(" + term + " OR " + quoteFts(formattedPlate) + ")";
+        }
+        return term;
+    }
+
+    private static String quoteFts(String text) {
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
     // =================================================================================================================
     //  SECTION 4: AUTOCOMPLETE HELPERS
     // =================================================================================================================
@@ -347,7 +930,7 @@ public class DatabaseHelper {
     public static List<Client> getClientsByName(String partialName) throws SQLException {
         List<Client> clientList = new ArrayList<>();
         String sql = "SELECT * FROM Clients WHERE name LIKE ?";
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, "%" + partialName + "%");
             ResultSet rs = ps.executeQuery();
             while (rs.next()) clientList.add(new Client(rs.getInt("client_id"), rs.getString("name"), rs.getString("phone")));
@@ -358,7 +941,7 @@ public class DatabaseHelper {
     public static List<Client> getClientsByPhone(String partialPhone) throws SQLException {
         List<Client> clientList = new ArrayList<>();
         String sql = "SELECT * FROM Clients WHERE phone LIKE ?";
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, partialPhone + "%");
             ResultSet rs = ps.executeQuery();
             while (rs.next()) clientList.add(new Client(rs.getInt("client_id"), rs.getString("name"), rs.getString("phone")));
@@ -369,7 +952,7 @@ public class DatabaseHelper {
     public static List<Car> getCarModelsByBrand(String brand, String partialModel) throws SQLException {
         List<Car> carList = new ArrayList<>();
         String sql = "SELECT * FROM Cars WHERE brand_name = ? AND model LIKE ?";
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, brand);
             ps.setString(2, partialModel + "%");
             ResultSet rs = ps.executeQuery();
@@ -381,7 +964,7 @@ public class DatabaseHelper {
     public static List<Car> getCarDetailsByPlate(String plate) throws SQLException {
         List<Car> carList = new ArrayList<>();
         String sql = "SELECT * FROM Cars WHERE license_plate LIKE ?";
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setString(1, plate + "%");
             ResultSet rs = ps.executeQuery();
             while (rs.next()) carList.add(extractCar(rs));
@@ -389,6 +972,25 @@ public class DatabaseHelper {
         return carList;
     }
 
+    // Every client and car, for building AutocompleteIndex (one pass over each table)
+    public static List<Client> getAllClients() throws SQLException {
+        List<Client> clientList = new ArrayList<>();
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement("SELECT client_id, name, phone FROM Clients");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) clientList.add(new Client(rs.getInt("client_id"), rs.getString("name"), rs.getString("phone")));
+        }
+        return clientList;
+    }
+
+    public static List<Car> getAllCars() throws SQLException {
+        List<Car> carList = new ArrayList<>();
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement("SELECT * FROM Cars");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) carList.add(extractCar(rs));
+        }
+        return carList;
+    }
+
     // =================================================================================================================
     //  SECTION 5: INTERNAL HELPERS (Private)
     // =================================================================================================================
@@ -464,51 +1066,65 @@ public class DatabaseHelper {
         }
     }
 
-    private static List<Appointment> getAppointments(List<Appointment> list, String sql) throws SQLException {
-        try (Connection conn = connect();
-             Statement stmt = conn.createStatement();
-             ResultSet rs = stmt.executeQuery(sql)) {
-            while (rs.next()) {
-                list.add(extractAppointment(rs));
+    // Runs a fixed appointment query. Parameters are bound in order (Long, Integer or String).
+    private static List<Appointment> getAppointments(List<Appointment> list, String sql, Object... params) throws SQLException {
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int i = 0; i < params.length; i++) ps.setObject(i + 1, params[i]);
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    list.add(extractAppointment(rs));
+                }
             }
+            attachParts(conn, list);
         }
         return list;
     }
 
-    // Helper to fetch the parts for a specific appointment
-    private static List<Part> getPartsForAppointment(int appointmentId) {
-        List<Part> parts = new ArrayList<>();
-        String sql = "SELECT * FROM Parts WHERE appointment_id = ?";
-        try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
-            ps.setInt(1, appointmentId);
-            ResultSet rs = ps.executeQuery();
-            while (rs.next()) {
-                parts.add(new Part(
-                        rs.getInt("part_id"),
-                        rs.getInt("appointment_id"),
-                        rs.getString("code"),
-                        rs.getString("name"),
-                        Supplier.valueOf(rs.getString("supplier"))
-                ));
+    // Bulk parts loader: fetches the parts for every appointment in the list using chunked IN (...) queries
+    // (one query per ID_CHUNK appointments instead of one per appointment) and stitches them on.
+    private static void attachParts(Connection conn, List<Appointment> appointments) throws SQLException {
+        if (appointments.isEmpty()) return;
+
+        Map<Integer, Appointment> byId = new HashMap<>(appointments.size() * 2);
+        for (Appointment a : appointments) byId.put(a.getAppointmentID(), a);
+        List<Integer> ids = new ArrayList<>(byId.keySet());
+
+        String sql = "SELECT part_id, appointment_id, code, name, supplier FROM Parts WHERE appointment_id IN ("
+                + String.join(",", Collections.nCopies(ID_CHUNK, "?"))
+                + ") ORDER BY appointment_id, part_id";
+
+        try (PreparedStatement ps = conn.prepareStatement(sql)) {
+            for (int from = 0; from < ids.size(); from += ID_CHUNK) {
+                int to = Math.min(from + ID_CHUNK, ids.size());
+                // Pad the last chunk with its final id so the same cached statement is reused
+                for (int i = 0; i < ID_CHUNK; i++) {
+                    ps.setInt(i + 1, ids.get(Math.min(from + i, to - 1)));
+                }
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        int appointmentId = rs.getInt("appointment_id");
+                        byId.get(appointmentId).getPartList().add(new Part(
+                                rs.getInt("part_id"),
+                                appointmentId,
+                                rs.getString("code"),
+                                rs.getString("name"),
+                                Supplier.valueOf(rs.getString("supplier"))
+                        ));
+                    }
+                }
             }
-        } catch (SQLException e) {
-            e.printStackTrace(); // Log error but return empty list to avoid breaking UI
         }
-        return parts;
     }
 
+    // Parts are not loaded here: callers run attachParts() once over the whole result set
     private static Appointment extractAppointment(ResultSet rs) throws SQLException {
-        int appId = rs.getInt("appointment_id");
-        // FETCH PARTS HERE
-        List<Part> parts = getPartsForAppointment(appId);
-
         return new Appointment(
-                appId,
+                rs.getInt("appointment_id"),
                 rs.getInt("car_id"),
                 new Date(rs.getLong("date")),
                 rs.getString("problem"),
                 rs.getString("repairs"),
-                parts, // <--- Now passing List<Part>
+                new ArrayList<>(),
                 rs.getString("observations"),
                 AppointmentStatus.valueOf(rs.getString("status")),
                 rs.getString("name"),
@@ -533,13 +1149,28 @@ public class DatabaseHelper {
         );
     }
 
-    public static void autoUpdateStatuses() throws SQLException {
+    // SCHEDULED appointments whose time has come become IN_PROGRESS. Returns how many changed.
+    public static int autoUpdateStatuses() throws SQLException {
         long now = System.currentTimeMillis();
         String sql = "UPDATE Appointments SET status = 'IN_PROGRESS' WHERE date <= ? AND status = 'SCHEDULED'";
         try (Connection conn = connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
             ps.setLong(1, now);
             int rows = ps.executeUpdate();
             if(rows > 0) System.out.println("Auto-updated " + rows + " appointments.");
+            return rows;
+        }
+    }
+
+    // Time of the next SCHEDULED appointment after 'afterMillis', or -1 if there is none (idx_appointments_status_date)
+    public static long getNextScheduledTime(long afterMillis) throws SQLException {
+        String sql = "SELECT MIN(date) FROM Appointments WHERE status = 'SCHEDULED' AND date > ?";
+        try (Connection conn = connectRead(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setLong(1, afterMillis);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (!rs.next()) return -1;
+                long next = rs.getLong(1);
+                return rs.wasNull() ? -1 : next;
+            }
         }
     }
 }
\ No newline at end of file
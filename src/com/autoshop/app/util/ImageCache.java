@@ -0,0 +1,102 @@
+package com.autoshop.app.util;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Decoded car photos, least recently used first out, bounded by the memory they take (not by count).
+ * <p>
+ * Images come from the small variants StorageHelper writes next to each photo. A photo stored before variants
+ * existed is decoded subsampled from the original instead, and its variants are made in the background
+ * for next time. Loading reads files: call it from the ImageLoader pool, never the event thread.
+ */
+public class ImageCache {
+
+    private static final long MAX_BYTES = 48L * 1024 * 1024; // About 25 previews at 800x600
+
+    private static final LinkedHashMap<String, BufferedImage> images = new LinkedHashMap<>(16, 0.75f, true);
+    private static long bytes;
+
+    private static final AtomicLong hits = new AtomicLong();
+    private static final AtomicLong misses = new AtomicLong();
+    private static final AtomicLong fromOriginal = new AtomicLong();
+
+    public static BufferedImage getPreview(String relativePath) throws IOException {
+        return get(relativePath, StorageHelper.Variant.PREVIEW);
+    }
+
+    public static BufferedImage getThumbnail(String relativePath) throws IOException {
+        return get(relativePath, StorageHelper.Variant.THUMBNAIL);
+    }
+
+    /**
+     * The variant of a stored photo, or null when the photo's format cannot be decoded (WEBP).
+     * @throws IOException when the photo is missing or unreadable
+     */
+    public static BufferedImage get(String relativePath, StorageHelper.Variant variant) throws IOException {
+        String key = variant + ":" + relativePath;
+        synchronized (ImageCache.class) {
+            BufferedImage cached = images.get(key);
+            if (cached != null) {
+                hits.incrementAndGet();
+                return cached;
+            }
+        }
+        misses.incrementAndGet();
+
+        // 1. The variant file (small, decodes in a few ms)
+        BufferedImage image = null;
+        File variantFile = StorageHelper.getVariantFile(relativePath, variant);
+        if (variantFile.isFile()) image = ImageIO.read(variantFile);
+
+        // 2. Legacy photo: subsampled decode of the original, variants for next time
+        if (image == null) {
+            File original = new File(StorageHelper.getAbsolutePath(relativePath));
+            if (!original.isFile()) throw new IOException("Missing photo: " + original);
+            image = ImageLoader.decode(original, variant.maxWidth, variant.maxHeight, variant.fit);
+            if (image == null) return null;
+            fromOriginal.incrementAndGet();
+            StorageHelper.generateVariantsLater(relativePath);
+        }
+
+        put(key, image);
+        return image;
+    }
+
+    private static synchronized void put(String key, BufferedImage image) {
+        long size = sizeOf(image);
+        if (size > MAX_BYTES) return; // Would push out everything else
+
+        BufferedImage previous = images.put(key, image);
+        if (previous != null) bytes -= sizeOf(previous);
+        bytes += size;
+
+        // Oldest first, until it fits again
+        for (Iterator<BufferedImage> it = images.values().iterator(); bytes > MAX_BYTES && it.hasNext(); ) {
+            bytes -= sizeOf(it.next());
+            it.remove();
+        }
+    }
+
+    private static long sizeOf(BufferedImage image) {
+        return (long) image.getWidth() * image.getHeight() * 4; // INT_RGB; close enough for the others
+    }
+
+    // =================================================================================================================
+    //  METRICS
+    // =================================================================================================================
+
+    public static synchronized String getStats() {
+        return String.format("hits=%d, misses=%d (decoded from the original=%d); %d images, %.1f MB",
+                hits.get(), misses.get(), fromOriginal.get(), images.size(), bytes / 1024.0 / 1024.0);
+    }
+
+    public static void logStats() {
+        System.out.println("[Images] " + getStats());
+    }
+}
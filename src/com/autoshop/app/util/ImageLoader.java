@@ -0,0 +1,188 @@
+package com.autoshop.app.util;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.*;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Decodes photos at the size they are shown, on a small pool of its own.
+ * <p>
+ * The size is read from the file header first; the reader then skips pixels while decoding (source
+ * subsampling) and, when cropping, reads only the needed region. A 12 MP photo shown at 800x600 therefore never
+ * exists in memory at full size (48 MB), only at about twice the shown size. At most POOL_SIZE decodes run at
+ * once, so opening several photos cannot stack those buffers either; a newer request with the same key makes
+ * an older one that has not started yet be skipped.
+ */
+public class ImageLoader {
+
+    // How the image fills maxWidth x maxHeight
+    public enum Fit {
+        CONTAIN, // Whole image, within the box (viewer)
+        COVER    // Fills the box, the overflow cropped around the center (thumbnails)
+    }
+
+    private static final int POOL_SIZE = 2;
+
+    private static final ExecutorService pool;
+    private static final Map<String, Object> latest = new ConcurrentHashMap<>(); // Key -> ticket of the newest request
+
+    static {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "image-loader-" + count.incrementAndGet());
+            t.setDaemon(true);
+            t.setPriority(Thread.NORM_PRIORITY - 1);
+            return t;
+        });
+        executor.allowCoreThreadTimeOut(true); // No idle threads while nobody looks at photos
+        pool = executor;
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: DECODING (any thread; blocking)
+    // =================================================================================================================
+
+    /**
+     * Width and height from the file header, without decoding pixels. Null when no ImageIO reader knows the format.
+     */
+    public static Dimension readSize(File file) throws IOException {
+        try (ImageInputStream in = open(file)) {
+            ImageReader reader = readerFor(in);
+            if (reader == null) return null;
+            try {
+                reader.setInput(in, true, true);
+                return new Dimension(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decodes 'file' to at most maxWidth x maxHeight (exactly that with COVER), as an RGB image.
+     * Returns null when no ImageIO reader knows the format (e.g. WEBP).
+     */
+    public static BufferedImage decode(File file, int maxWidth, int maxHeight, Fit fit) throws IOException {
+        try (ImageInputStream in = open(file)) {
+            ImageReader reader = readerFor(in);
+            if (reader == null) return null;
+            try {
+                reader.setInput(in, true, true);
+                int width = reader.getWidth(0), height = reader.getHeight(0);
+                ImageReadParam param = reader.getDefaultReadParam();
+
+                // 1. COVER: read only the part with the box's proportions
+                if (fit == Fit.COVER) {
+                    double box = (double) maxWidth / maxHeight;
+                    if ((double) width / height > box) {
+                        int cropped = (int) Math.round(height * box);
+                        param.setSourceRegion(new Rectangle((width - cropped) / 2, 0, cropped, height));
+                        width = cropped;
+                    } else {
+                        int cropped = (int) Math.round(width / box);
+                        param.setSourceRegion(new Rectangle(0, (height - cropped) / 2, width, cropped));
+                        height = cropped;
+                    }
+                }
+
+                // 2. Skip pixels: the largest step that still leaves at least the target size
+                double scale = Math.min((double) maxWidth / width, (double) maxHeight / height);
+                int step = scale >= 1 ? 1 : (int) Math.floor(1 / scale);
+                param.setSourceSubsampling(step, step, 0, 0);
+
+                // 3. Decode, then the last (small) bit of scaling
+                return scaleToFit(reader.read(0, param), maxWidth, maxHeight);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    // Bilinear downscale into an RGB image (JPEG has no alpha); returns the image itself when it already fits
+    public static BufferedImage scaleToFit(BufferedImage image, int maxWidth, int maxHeight) {
+        double scale = Math.min(1, Math.min((double) maxWidth / image.getWidth(), (double) maxHeight / image.getHeight()));
+        int width = Math.max(1, (int) Math.round(image.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(image.getHeight() * scale));
+        if (scale == 1 && image.getType() == BufferedImage.TYPE_INT_RGB) return image;
+
+        BufferedImage result = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = result.createGraphics();
+        try {
+            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            g.drawImage(image, 0, 0, width, height, Color.WHITE, null);
+        } finally {
+            g.dispose();
+        }
+        return result;
+    }
+
+    private static ImageInputStream open(File file) throws IOException {
+        ImageInputStream in = ImageIO.createImageInputStream(file);
+        if (in == null) throw new IOException("Cannot open " + file);
+        return in;
+    }
+
+    private static ImageReader readerFor(ImageInputStream in) {
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(in);
+        return readers.hasNext() ? readers.next() : null;
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: IMAGE POOL
+    // =================================================================================================================
+
+    /**
+     * Runs 'task' on the image pool, then 'onLoaded' or 'onError' on the event thread (like BackgroundExecutor).
+     * @param key requests with the same key replace each other (null = never superseded)
+     */
+    public static <T> void submit(String key, BackgroundExecutor.Task<T> task, Consumer<T> onLoaded, Consumer<Exception> onError) {
+        Object ticket = new Object();
+        if (key != null) latest.put(key, ticket);
+
+        pool.execute(() -> {
+            if (key != null && latest.get(key) != ticket) return; // Superseded before it started
+
+            T result = null;
+            Exception error = null;
+            try {
+                result = task.run();
+            } catch (Exception e) {
+                error = e;
+            }
+
+            T value = result;
+            Exception problem = error;
+            SwingUtilities.invokeLater(() -> {
+                if (key != null && !latest.remove(key, ticket)) return; // A newer request owns the screen now
+                if (problem == null) {
+                    if (onLoaded != null) onLoaded.accept(value);
+                } else if (onError != null) {
+                    onError.accept(problem);
+                } else {
+                    problem.printStackTrace();
+                }
+            });
+        });
+    }
+
+    // Fire-and-forget variant (e.g. writing variants)
+    public static void run(String key, BackgroundExecutor.Task<?> task) {
+        submit(key, task, null, null);
+    }
+}
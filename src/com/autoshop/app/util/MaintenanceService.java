@@ -0,0 +1,250 @@
+package com.autoshop.app.util;
+
+import java.awt.*;
+import java.awt.event.AWTEventListener;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.*;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * Housekeeping that nothing else does: removes part rows whose appointment is gone and photo files no car
+ * points at any more, and keeps the change log short.
+ * <p>
+ * Unused photos are first moved to "taloane/.trash" and only deleted after QUARANTINE_DAYS, so a photo can
+ * still be put back by hand. Parts are purged in small transactions, so the writer is never held for long.
+ * The job runs on its own low-priority thread, once a day, when nobody has touched the app for a while.
+ */
+public class MaintenanceService {
+
+    private static final int PART_CHUNK = 500;
+    private static final long CHUNK_PAUSE_MS = 50; // Lets other writers in between chunks
+    private static final long GRACE_MS = TimeUnit.HOURS.toMillis(1); // A photo copied for a save still in progress
+    private static final long QUARANTINE_DAYS = 30;
+    private static final long IDLE_MS = TimeUnit.MINUTES.toMillis(5);
+    private static final long RUN_EVERY_MS = TimeUnit.HOURS.toMillis(24);
+    private static final long PRUNE_LOG_EVERY_MINUTES = 60;
+
+    // What one run did
+    public record Report(int orphanParts, int filesScanned, int filesQuarantined, long bytesQuarantined,
+                         int filesDeleted, long bytesReclaimed, long elapsedMs) {
+        @Override
+        public String toString() {
+            return String.format("orphan parts=%d; photos scanned=%d, quarantined=%d (%.1f MB); deleted=%d, reclaimed %.1f MB; in %d ms",
+                    orphanParts, filesScanned, filesQuarantined, bytesQuarantined / 1048576.0,
+                    filesDeleted, bytesReclaimed / 1048576.0, elapsedMs);
+        }
+    }
+
+    private static ScheduledExecutorService scheduler;
+    private static volatile long lastInput = System.currentTimeMillis();
+    private static final AWTEventListener inputListener = e -> lastInput = System.currentTimeMillis();
+
+    // Inside the photo folder, so it moves with StorageHelper.setBaseDirectory
+    public static File getTrashDir() {
+        return new File(StorageHelper.resolve(StorageHelper.IMAGE_DIR), ".trash");
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: THE JOB
+    // =================================================================================================================
+
+    /**
+     * Runs every step once, on the calling thread, and returns what it did. Call it from a worker.
+     */
+    public static synchronized Report run() throws SQLException, IOException {
+        long start = System.currentTimeMillis();
+
+        // 1. Database: parts of deleted appointments (left over from before foreign keys were enforced)
+        int orphanParts = purgeOrphanParts();
+
+        // 2. Photo folder against Cars.photo_path
+        int[] counts = new int[3];   // scanned, quarantined, deleted
+        long[] bytes = new long[2];  // quarantined, reclaimed
+        quarantineUnusedPhotos(counts, bytes);
+        emptyTrash(counts, bytes);
+
+        Report report = new Report(orphanParts, counts[0], counts[1], bytes[0], counts[2], bytes[1],
+                System.currentTimeMillis() - start);
+        System.out.println("[Maintenance] " + report);
+        return report;
+    }
+
+    private static int purgeOrphanParts() throws SQLException {
+        String sql = "DELETE FROM Parts WHERE part_id IN (SELECT part_id FROM Parts p WHERE NOT EXISTS "
+                + "(SELECT 1 FROM Appointments a WHERE a.appointment_id = p.appointment_id) LIMIT " + PART_CHUNK + ")";
+        int total = 0;
+        while (true) {
+            int deleted;
+            try (Connection conn = DatabaseHelper.connect(); PreparedStatement ps = conn.prepareStatement(sql)) {
+                deleted = ps.executeUpdate(); // One short transaction per chunk
+            }
+            total += deleted;
+            if (deleted < PART_CHUNK) return total;
+            pause();
+        }
+    }
+
+    // Moves photo files nothing refers to into the trash, with their preview variants deleted
+    private static void quarantineUnusedPhotos(int[] counts, long[] bytes) throws SQLException, IOException {
+        Path root = StorageHelper.resolve(StorageHelper.IMAGE_DIR).toPath();
+        if (!Files.isDirectory(root)) return;
+
+        // 1. Everything the database still points at: the cars' paths and the photos counted as in use. Paths are
+        // relative (separators vary with the OS); very old rows may hold absolute ones, whose drive letter can
+        // differ now: those protect any file of that name.
+        Set<String> referenced = new HashSet<>();
+        Set<String> referencedNames = new HashSet<>();
+        try (Connection conn = DatabaseHelper.connectRead(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT photo_path FROM Cars WHERE ifnull(photo_path, '') <> '' "
+                     + "UNION SELECT path FROM Photos WHERE ref_count > 0")) {
+            while (rs.next()) {
+                String path = normalize(rs.getString(1));
+                referenced.add(path);
+                if (new File(path).isAbsolute() || path.matches("^[A-Za-z]:/.*")) {
+                    referencedNames.add(path.substring(path.lastIndexOf('/') + 1));
+                }
+            }
+        }
+
+        // 2. Walk the folder lazily; the variants and the trash are not photos
+        Path variants = StorageHelper.resolve(StorageHelper.VARIANT_DIR).toPath(), trash = getTrashDir().toPath();
+        long cutoff = System.currentTimeMillis() - GRACE_MS;
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                Path file = it.next();
+                if (file.startsWith(variants) || file.startsWith(trash) || !Files.isRegularFile(file)) continue;
+                counts[0]++;
+
+                String relativePath = StorageHelper.IMAGE_DIR + File.separator + root.relativize(file); // As stored
+                if (referenced.contains(normalize(relativePath)) || referencedNames.contains(file.getFileName().toString())) continue;
+                if (Files.getLastModifiedTime(file).toMillis() > cutoff) continue;
+
+                // Checked again under the store lock: a save may have reused the file since (copyToAppStorage
+                // touches it), and it must not go between that check and the move
+                long size;
+                Path target = trash.resolve(root.relativize(file));
+                synchronized (StorageHelper.STORE_LOCK) {
+                    if (!Files.exists(file) || Files.getLastModifiedTime(file).toMillis() > cutoff) continue;
+                    size = Files.size(file);
+                    Files.createDirectories(target.getParent());
+                    Files.move(file, target, StandardCopyOption.REPLACE_EXISTING);
+                }
+                target.toFile().setLastModified(System.currentTimeMillis()); // The quarantine starts now
+                counts[1]++;
+                bytes[0] += size;
+
+                for (StorageHelper.Variant v : StorageHelper.Variant.values()) {
+                    File variant = StorageHelper.getVariantFile(relativePath, v);
+                    long variantSize = variant.length();
+                    if (variant.delete()) {
+                        counts[2]++;
+                        bytes[1] += variantSize;
+                    }
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        // 3. Count rows for files that are gone
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM Photos WHERE ref_count <= 0");
+        }
+    }
+
+    // Deletes what has been in the trash for longer than the quarantine
+    private static void emptyTrash(int[] counts, long[] bytes) throws IOException {
+        File trash = getTrashDir();
+        if (!trash.isDirectory()) return;
+        long cutoff = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(QUARANTINE_DAYS);
+        try (Stream<Path> files = Files.walk(trash.toPath())) {
+            for (Iterator<Path> it = files.iterator(); it.hasNext(); ) {
+                Path file = it.next();
+                if (!Files.isRegularFile(file) || Files.getLastModifiedTime(file).toMillis() > cutoff) continue;
+                long size = Files.size(file);
+                Files.delete(file);
+                counts[2]++;
+                bytes[1] += size;
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String normalize(String path) {
+        return path.replace('\\', '/');
+    }
+
+    private static void pause() {
+        try {
+            Thread.sleep(CHUNK_PAUSE_MS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: IDLE-TIME SCHEDULE
+    // =================================================================================================================
+
+    /**
+     * Runs the job in the background when it is due (RUN_EVERY_MS since the last run) and the user has not
+     * touched the keyboard or mouse for IDLE_MS.
+     */
+    public static synchronized void start() {
+        if (scheduler != null) return;
+        if (!GraphicsEnvironment.isHeadless()) {
+            Toolkit.getDefaultToolkit().addAWTEventListener(inputListener, AWTEvent.KEY_EVENT_MASK | AWTEvent.MOUSE_EVENT_MASK);
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "maintenance");
+            t.setDaemon(true);
+            t.setPriority(Thread.MIN_PRIORITY);
+            return t;
+        });
+        scheduler.scheduleWithFixedDelay(MaintenanceService::runIfIdle, 5, 5, TimeUnit.MINUTES);
+        // Every update writes change-log rows: a PC left running for weeks must not keep them all (not idle-bound,
+        // the delete is short)
+        scheduler.scheduleWithFixedDelay(MaintenanceService::pruneChangeLog, PRUNE_LOG_EVERY_MINUTES,
+                PRUNE_LOG_EVERY_MINUTES, TimeUnit.MINUTES);
+    }
+
+    public static synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+            if (!GraphicsEnvironment.isHeadless()) Toolkit.getDefaultToolkit().removeAWTEventListener(inputListener);
+        }
+    }
+
+    private static void pruneChangeLog() {
+        try {
+            DatabaseHelper.pruneChangeLog();
+        } catch (SQLException e) {
+            e.printStackTrace(); // Tried again at the next run
+        }
+    }
+
+    private static void runIfIdle() {
+        long now = System.currentTimeMillis();
+        if (now - lastInput < IDLE_MS || now - PreferencesHelper.getLastMaintenance() < RUN_EVERY_MS) return;
+        try {
+            run();
+            PreferencesHelper.setLastMaintenance(System.currentTimeMillis());
+        } catch (Exception e) {
+            e.printStackTrace(); // Tried again at the next idle check
+        }
+    }
+}
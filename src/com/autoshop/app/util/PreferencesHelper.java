@@ -54,4 +54,30 @@ public class PreferencesHelper {
     public static void setNotificationLeadTime(int minutes) {
         prefs.putInt("notif_lead_time", minutes);
     }
-}
\ No newline at end of file
+
+    // --- BACKUP PREFERENCES ---
+
+    public static boolean isAutoBackupEnabled() {
+        return prefs.getBoolean("backup_auto", true); // Default to ON
+    }
+
+    public static void setAutoBackupEnabled(boolean enabled) {
+        prefs.putBoolean("backup_auto", enabled);
+    }
+
+    public static int getAutoBackupIntervalHours() {
+        return prefs.getInt("backup_interval_hours", 24); // Default once a day
+    }
+
+    public static int getBackupRetention() {
+        return prefs.getInt("backup_keep", 7); // Automatic backups kept before the oldest is deleted
+    }
+
+    public static long getLastMaintenance() {
+        return prefs.getLong("maintenance_last", 0); // When MaintenanceService last finished (epoch ms)
+    }
+
+    public static void setLastMaintenance(long time) {
+        prefs.putLong("maintenance_last", time);
+    }
+}
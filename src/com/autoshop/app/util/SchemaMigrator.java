@@ -0,0 +1,319 @@
+package com.autoshop.app.util;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.*;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Applies numbered schema migrations on top of the base tables created by DatabaseHelper.createNewTable().
+ * Each migration runs in its own transaction and is recorded in the SchemaVersion table, so databases that
+ * are already deployed only get the steps they are missing.
+ * <p>
+ * To change the schema, append a new Migration with the next version number. Never edit or reorder
+ * a migration that has already shipped.
+ */
+public class SchemaMigrator {
+
+    // One schema change. Runs on the migration's connection, inside its transaction.
+    private interface Step {
+        void apply(Statement stmt) throws SQLException;
+    }
+
+    private record Migration(int version, String description, Step step) {}
+
+    private static final List<Migration> MIGRATIONS = List.of(
+            new Migration(1, "Secondary indexes for date, status and foreign-key lookups", stmt -> {
+                // Dashboard day range, keyset ordering and date filters in search
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_date ON Appointments(date)");
+                // IN_PROGRESS lists, SCHEDULED -> IN_PROGRESS auto-update, status filter in search
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_status_date ON Appointments(status, date)");
+                // Joins and search-index triggers on car / client changes
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_car ON Appointments(car_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_client ON Appointments(client_id)");
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_client ON Cars(client_id)");
+                // Model autocomplete (brand_name = ? AND model LIKE 'x%')
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_cars_brand_model ON Cars(brand_name, model)");
+                // Bulk parts loader and part re-indexing
+                stmt.execute("CREATE INDEX IF NOT EXISTS idx_parts_appointment ON Parts(appointment_id, part_id)");
+            }),
+            new Migration(2, "Full-text search index for searchAppointments", SchemaMigrator::createSearchIndex),
+            new Migration(3, "Change log for incremental refresh", SchemaMigrator::createChangeLog),
+            new Migration(4, "Day key (yyyymmdd) for day-bounded queries and the calendar", SchemaMigrator::addDayKey),
+            new Migration(5, "Checkpoints for resumable CSV imports", stmt -> {
+                // One row per file being imported; written in the same transaction as each batch
+                stmt.execute("CREATE TABLE IF NOT EXISTS ImportProgress ("
+                        + "source TEXT PRIMARY KEY, file_size INTEGER, file_modified INTEGER, "
+                        + "rows_done INTEGER, imported INTEGER, rejected INTEGER, updated_at INTEGER)");
+            }),
+            new Migration(6, "Reference counts of stored photos", SchemaMigrator::createPhotoRefs),
+            new Migration(7, "Duplicate key (phone, plate, minute, problem hash) with a unique index", SchemaMigrator::addDupKey)
+    );
+
+    // =================================================================================================================
+    //  SECTION 1: MIGRATION ENGINE
+    // =================================================================================================================
+
+    /**
+     * Applies every pending migration. Returns how many were applied.
+     */
+    public static int migrate(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS SchemaVersion ("
+                    + "version INTEGER PRIMARY KEY, description TEXT, applied_at INTEGER)");
+        }
+
+        int current = getCurrentVersion(conn);
+        int applied = 0;
+
+        for (Migration migration : MIGRATIONS) {
+            if (migration.version() <= current) continue;
+
+            conn.setAutoCommit(false);
+            try (Statement stmt = conn.createStatement();
+                 PreparedStatement record = conn.prepareStatement(
+                         "INSERT INTO SchemaVersion(version, description, applied_at) VALUES(?, ?, ?)")) {
+                migration.step().apply(stmt);
+
+                record.setInt(1, migration.version());
+                record.setString(2, migration.description());
+                record.setLong(3, System.currentTimeMillis());
+                record.executeUpdate();
+
+                conn.commit();
+                applied++;
+                System.out.println("Applied schema migration " + migration.version() + ": " + migration.description());
+            } catch (SQLException e) {
+                conn.rollback();
+                throw new SQLException("Schema migration " + migration.version() + " failed: " + e.getMessage(), e);
+            } finally {
+                conn.setAutoCommit(true);
+            }
+        }
+
+        // Refresh planner statistics so the new indexes are actually picked
+        if (applied > 0) {
+            try (Statement stmt = conn.createStatement()) {
+                stmt.execute("ANALYZE");
+            }
+        }
+        return applied;
+    }
+
+    public static int getCurrentVersion(Connection conn) throws SQLException {
+        try (Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT ifnull(MAX(version), 0) FROM SchemaVersion")) {
+            return rs.next() ? rs.getInt(1) : 0;
+        }
+    }
+
+    public static int getLatestVersion() {
+        return MIGRATIONS.get(MIGRATIONS.size() - 1).version();
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: MIGRATION STEPS
+    // =================================================================================================================
+
+    // Full-text index used by searchAppointments. One row per appointment (rowid = appointment_id), written by
+    // the DAO once per save, after the parts (DatabaseHelper.writeSearchRows); triggers only cover deletes and
+    // car / client edits. The trigram tokenizer gives substring matches (like the old LIKE '%x%') for tokens of
+    // 3+ characters.
+    private static void createSearchIndex(Statement stmt) throws SQLException {
+        boolean exists;
+        try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE name = 'AppointmentSearch'")) {
+            exists = rs.next();
+        }
+
+        stmt.execute("CREATE VIRTUAL TABLE IF NOT EXISTS AppointmentSearch USING fts5("
+                + "client, phone, plate, vehicle, notes, parts, tokenize = 'trigram')");
+
+        // Appointments: the row goes with the appointment
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS search_app_delete AFTER DELETE ON Appointments BEGIN "
+                + "DELETE FROM AppointmentSearch WHERE rowid = OLD.appointment_id; END;");
+
+        // Cars / Clients: re-index every appointment of the car or client, but only when indexed text changed
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS search_car_update AFTER UPDATE ON Cars "
+                + "WHEN OLD.license_plate IS NOT NEW.license_plate OR OLD.brand_name IS NOT NEW.brand_name "
+                + "OR OLD.model IS NOT NEW.model OR OLD.year IS NOT NEW.year OR OLD.client_id IS NOT NEW.client_id BEGIN "
+                + "DELETE FROM AppointmentSearch WHERE rowid IN (SELECT appointment_id FROM Appointments WHERE car_id = NEW.car_id); "
+                + searchRowInsert("app.car_id = NEW.car_id") + " END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS search_client_update AFTER UPDATE ON Clients "
+                + "WHEN OLD.name IS NOT NEW.name OR OLD.phone IS NOT NEW.phone BEGIN "
+                + "DELETE FROM AppointmentSearch WHERE rowid IN (SELECT a.appointment_id FROM Appointments a "
+                + "JOIN Cars c ON a.car_id = c.car_id WHERE c.client_id = NEW.client_id); "
+                + searchRowInsert("car.client_id = NEW.client_id") + " END;");
+
+        // First run on an existing database: index the history once
+        if (!exists) {
+            stmt.execute(searchRowInsert("1 = 1"));
+        }
+    }
+
+    // Trigger-maintained log of which appointments changed. 'version' only ever grows (AUTOINCREMENT keeps it
+    // growing even after old rows are pruned), so a view can ask "what changed since version N?".
+    // Ops: I = inserted, U = updated (including its parts, car or client), D = deleted.
+    // The insert and update triggers of Appointments and Parts stand down while BulkLoad has a row: a bulk loader
+    // (CsvImporter) sets it inside its own transaction and reports one incomplete change instead, so no other
+    // write ever sees it.
+    private static void createChangeLog(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS ChangeLog ("
+                + "version INTEGER PRIMARY KEY AUTOINCREMENT, appointment_id INTEGER NOT NULL, "
+                + "op TEXT NOT NULL, changed_at INTEGER NOT NULL)");
+        stmt.execute("CREATE TABLE IF NOT EXISTS BulkLoad (started_at INTEGER)");
+
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_app_insert AFTER INSERT ON Appointments WHEN " + NOT_BULK_LOADING + " BEGIN "
+                + changeLogInsert("'I'", "NEW.appointment_id", "") + " END;");
+        // Columns the user edits: the derived day_key and dup_key, written after the row by a trigger or the DAO,
+        // are not a second change
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_app_update AFTER UPDATE OF car_id, client_id, date, problem, repairs, "
+                + "observations, status ON Appointments WHEN " + NOT_BULK_LOADING + " BEGIN "
+                + changeLogInsert("'U'", "NEW.appointment_id", "") + " END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_app_delete AFTER DELETE ON Appointments BEGIN "
+                + changeLogInsert("'D'", "OLD.appointment_id", "") + " END;");
+
+        // Parts belong to one appointment
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_part_insert AFTER INSERT ON Parts WHEN " + NOT_BULK_LOADING + " BEGIN "
+                + changeLogInsert("'U'", "NEW.appointment_id", "") + " END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_part_update AFTER UPDATE ON Parts BEGIN "
+                + changeLogInsert("'U'", "appointment_id", "FROM Appointments "
+                + "WHERE appointment_id IN (OLD.appointment_id, NEW.appointment_id)") + " END;");
+        // (skipped when the appointment itself is gone, e.g. parts removed by the cascade)
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_part_delete AFTER DELETE ON Parts BEGIN "
+                + changeLogInsert("'U'", "appointment_id", "FROM Appointments WHERE appointment_id = OLD.appointment_id") + " END;");
+
+        // Cars / Clients: every appointment showing them changes, but only when a displayed field changed
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_car_update AFTER UPDATE ON Cars "
+                + "WHEN OLD.license_plate IS NOT NEW.license_plate OR OLD.brand_name IS NOT NEW.brand_name "
+                + "OR OLD.model IS NOT NEW.model OR OLD.year IS NOT NEW.year OR OLD.photo_path IS NOT NEW.photo_path BEGIN "
+                + changeLogInsert("'U'", "appointment_id", "FROM Appointments WHERE car_id = NEW.car_id") + " END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS log_client_update AFTER UPDATE ON Clients "
+                + "WHEN OLD.name IS NOT NEW.name OR OLD.phone IS NOT NEW.phone BEGIN "
+                + changeLogInsert("'U'", "appointment_id", "FROM Appointments WHERE client_id = NEW.client_id "
+                + "OR car_id IN (SELECT car_id FROM Cars WHERE client_id = NEW.client_id)") + " END;");
+    }
+
+    // How many cars use each stored photo (photos are stored once per content, see StorageHelper), kept by
+    // triggers on Cars.photo_path. Rows that drop to 0 are photos nothing shows any more.
+    private static void createPhotoRefs(Statement stmt) throws SQLException {
+        stmt.execute("CREATE TABLE IF NOT EXISTS Photos (path TEXT PRIMARY KEY, ref_count INTEGER NOT NULL DEFAULT 0)");
+
+        String retain = "INSERT INTO Photos(path, ref_count) VALUES(NEW.photo_path, 1) "
+                + "ON CONFLICT(path) DO UPDATE SET ref_count = ref_count + 1;";
+        String release = "UPDATE Photos SET ref_count = ref_count - 1 WHERE path = OLD.photo_path;";
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS photo_car_insert AFTER INSERT ON Cars "
+                + "WHEN ifnull(NEW.photo_path, '') <> '' BEGIN " + retain + " END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS photo_car_update_old AFTER UPDATE OF photo_path ON Cars "
+                + "WHEN OLD.photo_path IS NOT NEW.photo_path AND ifnull(OLD.photo_path, '') <> '' BEGIN " + release + " END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS photo_car_update_new AFTER UPDATE OF photo_path ON Cars "
+                + "WHEN OLD.photo_path IS NOT NEW.photo_path AND ifnull(NEW.photo_path, '') <> '' BEGIN " + retain + " END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS photo_car_delete AFTER DELETE ON Cars "
+                + "WHEN ifnull(OLD.photo_path, '') <> '' BEGIN " + release + " END;");
+
+        // Photos stored so far (one file per pick, under their old names)
+        stmt.execute("INSERT OR IGNORE INTO Photos(path, ref_count) "
+                + "SELECT photo_path, COUNT(*) FROM Cars WHERE ifnull(photo_path, '') <> '' GROUP BY photo_path");
+    }
+
+    // True unless a bulk loader has suspended the per-row triggers (see createChangeLog)
+    private static final String NOT_BULK_LOADING = "NOT EXISTS (SELECT 1 FROM BulkLoad)";
+
+    // One log row per appointment id selected by "SELECT <idColumn> <source>"
+    private static String changeLogInsert(String op, String idColumn, String source) {
+        return "INSERT INTO ChangeLog(appointment_id, op, changed_at) SELECT " + idColumn + ", " + op + ", "
+                + "CAST((julianday('now') - 2440587.5) * 86400000 AS INTEGER) " + source + ";";
+    }
+
+    // Appointments.day_key = local calendar day of 'date' as yyyymmdd (e.g. 20250314). Kept by triggers, so
+    // every writer gets it for free; the WHEN guards make them a no-op once the key is right (and during bulk
+    // loads, which write it themselves).
+    private static void addDayKey(Statement stmt) throws SQLException {
+        boolean exists = false;
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(Appointments)")) {
+            while (rs.next()) if ("day_key".equals(rs.getString("name"))) exists = true;
+        }
+        if (!exists) stmt.execute("ALTER TABLE Appointments ADD COLUMN day_key INTEGER");
+
+        stmt.execute("UPDATE Appointments SET day_key = " + dayKeyOf("date") + " WHERE day_key IS NOT " + dayKeyOf("date"));
+        // Day lookups, and per-day status counts straight from the index
+        stmt.execute("CREATE INDEX IF NOT EXISTS idx_appointments_day_key ON Appointments(day_key, status)");
+
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS day_key_insert AFTER INSERT ON Appointments "
+                + "WHEN " + NOT_BULK_LOADING + " AND NEW.day_key IS NOT " + dayKeyOf("NEW.date") + " BEGIN "
+                + "UPDATE Appointments SET day_key = " + dayKeyOf("NEW.date") + " WHERE appointment_id = NEW.appointment_id; END;");
+        stmt.execute("CREATE TRIGGER IF NOT EXISTS day_key_update AFTER UPDATE OF date, day_key ON Appointments "
+                + "WHEN NEW.day_key IS NOT " + dayKeyOf("NEW.date") + " BEGIN "
+                + "UPDATE Appointments SET day_key = " + dayKeyOf("NEW.date") + " WHERE appointment_id = NEW.appointment_id; END;");
+    }
+
+    // Appointments.dup_key identifies "the same visit": client phone, plate without separators, minute and a hash
+    // of the problem text (AppointmentRepository.duplicateKey). Unique, so a duplicate is one index lookup away.
+    // SQL can neither hash nor fold non-ASCII letters like Java does, so the DAO writes the key in the save's
+    // transaction (DatabaseHelper.claimDupKeys); rows that repeat a key already taken keep NULL.
+    private static void addDupKey(Statement stmt) throws SQLException {
+        boolean exists = false;
+        try (ResultSet rs = stmt.executeQuery("PRAGMA table_info(Appointments)")) {
+            while (rs.next()) if ("dup_key".equals(rs.getString("name"))) exists = true;
+        }
+        if (!exists) stmt.execute("ALTER TABLE Appointments ADD COLUMN dup_key TEXT");
+
+        // 1. Backfill: the first appointment of every key gets it
+        Map<String, Integer> owners = new LinkedHashMap<>();
+        try (ResultSet rs = stmt.executeQuery("SELECT app.appointment_id, cl.phone, c.license_plate, app.date, app.problem "
+                + "FROM Appointments app LEFT JOIN Clients cl ON app.client_id = cl.client_id "
+                + "LEFT JOIN Cars c ON app.car_id = c.car_id WHERE app.date IS NOT NULL ORDER BY app.appointment_id")) {
+            while (rs.next()) {
+                owners.putIfAbsent(dupKey(rs.getString(2), rs.getString(3), rs.getLong(4), rs.getString(5)), rs.getInt(1));
+            }
+        }
+        try (PreparedStatement ps = stmt.getConnection().prepareStatement("UPDATE Appointments SET dup_key = ? WHERE appointment_id = ?")) {
+            for (Map.Entry<String, Integer> owner : owners.entrySet()) {
+                ps.setString(1, owner.getKey());
+                ps.setInt(2, owner.getValue());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+        stmt.execute("CREATE UNIQUE INDEX IF NOT EXISTS idx_appointments_dup_key ON Appointments(dup_key) WHERE dup_key IS NOT NULL");
+    }
+
+    // AppointmentRepository.duplicateKey() as it was when migration 7 was written: frozen here, so the migration
+    // gives the same result whatever the DAO does later (a new key format needs a new migration)
+    private static String dupKey(String phone, String plate, long date, String problem) {
+        String plateKey = plate == null ? "" : plate.toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]+", "");
+        String problemKey = problem == null ? "" : problem.trim().toLowerCase(Locale.ROOT);
+        byte[] hash;
+        try {
+            hash = MessageDigest.getInstance("SHA-256").digest(problemKey.getBytes(StandardCharsets.UTF_8));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256
+        }
+        return (phone == null ? "" : phone) + '\u001f' + plateKey + '\u001f' + date / 60000 + '\u001f'
+                + HexFormat.of().formatHex(hash, 0, 8);
+    }
+
+    // Same value as Utils.dayKey() (both use the machine's local time zone). 'date' is epoch millis.
+    private static String dayKeyOf(String dateColumn) {
+        return "CAST(strftime('%Y%m%d', " + dateColumn + " / 1000, 'unixepoch', 'localtime') AS INTEGER)";
+    }
+
+    // Builds the index row(s) for the appointments matching 'condition'. The plate is stored both as saved
+    // (TM-12-ABC) and compacted (TM12ABC) so either spelling matches.
+    static String searchRowInsert(String condition) {
+        return "INSERT INTO AppointmentSearch(rowid, client, phone, plate, vehicle, notes, parts) "
+                + "SELECT app.appointment_id, ifnull(client.name, ''), ifnull(client.phone, ''), "
+                + "ifnull(car.license_plate, '') || ' ' || replace(ifnull(car.license_plate, ''), '-', ''), "
+                + "ifnull(car.brand_name, '') || ' ' || ifnull(car.model, '') || ' ' || ifnull(car.year, ''), "
+                + "ifnull(app.problem, '') || ' ' || ifnull(app.repairs, '') || ' ' || ifnull(app.observations, ''), "
+                + "ifnull((SELECT group_concat(ifnull(p.code, '') || ' ' || ifnull(p.name, '') || ' ' || ifnull(p.supplier, ''), ' ') "
+                + "FROM Parts p WHERE p.appointment_id = app.appointment_id), '') "
+                + "FROM Appointments app JOIN Cars car ON app.car_id = car.car_id "
+                + "JOIN Clients client ON car.client_id = client.client_id "
+                + "WHERE " + condition + ";";
+    }
+}
@@ -0,0 +1,120 @@
+package com.autoshop.app.util;
+
+import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.model.ChangeSet;
+
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Turns SCHEDULED appointments into IN_PROGRESS when their time comes, instead of every screen refresh doing it.
+ * <p>
+ * The scheduler knows the next instant a SCHEDULED appointment starts (one indexed MIN query) and runs the
+ * update only then. Booking or moving an appointment to an earlier time pulls that instant forward, straight
+ * from the change event. After each update the repository is synced, so the views receive the changed ids.
+ */
+public class StatusTransitionScheduler {
+
+    private static ScheduledExecutorService executor;
+    private static ScheduledFuture<?> next;
+    private static long nextAt = -1; // When 'next' runs; -1 = nothing scheduled
+
+    private static final AppointmentRepository.Listener listener = StatusTransitionScheduler::applyChanges;
+
+    /**
+     * Catches up on appointments that started while the app was closed (on the calling thread), then keeps
+     * doing it on time in the background.
+     */
+    public static void start() throws SQLException {
+        synchronized (StatusTransitionScheduler.class) {
+            if (executor != null) return;
+            executor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "status-transitions");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+        AppointmentRepository.sync(); // Sets the repository's baseline, so the next change is published as an event
+        AppointmentRepository.addListener(listener);
+        transitionDue();
+    }
+
+    public static synchronized void stop() {
+        AppointmentRepository.removeListener(listener);
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+            next = null;
+            nextAt = -1;
+        }
+    }
+
+    // When the next transition is planned (-1 = none); for diagnostics and tests
+    public static synchronized long getNextTransitionTime() {
+        return nextAt;
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: TRANSITIONS
+    // =================================================================================================================
+
+    // Updates what is due, publishes it, and plans the next run from the database
+    private static void transitionDue() throws SQLException {
+        if (DatabaseHelper.autoUpdateStatuses() > 0) AppointmentRepository.sync();
+        scheduleAt(DatabaseHelper.getNextScheduledTime(System.currentTimeMillis()));
+    }
+
+    private static void run() {
+        try {
+            transitionDue();
+        } catch (SQLException e) {
+            e.printStackTrace();
+            scheduleAt(System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(1)); // Try again shortly
+        }
+    }
+
+    // Replaces the planned run with one at 'at' (-1 = nothing to wait for)
+    private static synchronized void scheduleAt(long at) {
+        if (executor == null) return;
+        if (next != null) next.cancel(false);
+        next = null;
+        nextAt = at;
+        if (at < 0) return;
+
+        long delay = Math.max(0, at - System.currentTimeMillis());
+        next = executor.schedule(StatusTransitionScheduler::run, delay, TimeUnit.MILLISECONDS);
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: CHANGE EVENTS
+    // =================================================================================================================
+
+    /**
+     * AppointmentRepository listener. A SCHEDULED appointment earlier than the planned run moves the run forward.
+     * Later ones need nothing now: they are found by the query after the planned run. When the repository lost
+     * track of changes, the next instant is looked up again.
+     */
+    private static void applyChanges(ChangeSet changes, Map<Integer, Appointment> fresh) {
+        synchronized (StatusTransitionScheduler.class) {
+            if (executor == null) return;
+
+            if (!changes.isComplete()) {
+                executor.execute(StatusTransitionScheduler::run);
+                return;
+            }
+
+            long earliest = nextAt;
+            for (Appointment a : fresh.values()) {
+                if (a.getStatus() != AppointmentStatus.SCHEDULED) continue;
+                long at = a.getDate().getTime();
+                if (earliest < 0 || at < earliest) earliest = at;
+            }
+            if (earliest != nextAt) scheduleAt(earliest);
+        }
+    }
+}
@@ -1,19 +1,72 @@
 package com.autoshop.app.util;
 
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.StandardCopyOption;
-import java.text.SimpleDateFormat;
-import java.util.Date;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
 
 public class StorageHelper {
 
     // The folder name in storage
-    private static final String IMAGE_DIR = "taloane";
+    public static final String IMAGE_DIR = "taloane";
+    public static final String VARIANT_DIR = IMAGE_DIR + File.separator + "variants";
+    private static final int COPY_BUFFER = 64 * 1024;
+
+    // The folder holding IMAGE_DIR; null = the working directory (next to the .exe)
+    private static volatile File baseDir;
+
+    // Held while a stored file is reused or put in place, and by MaintenanceService while it moves one to the
+    // trash: a path handed out for a save is never quarantined between the check and the move
+    static final Object STORE_LOCK = new Object();
+
+    /**
+     * Downscaled copies kept next to each photo, so showing one never decodes the full-size original.
+     */
+    public enum Variant {
+        PREVIEW(800, 600, ImageLoader.Fit.CONTAIN, "preview"),  // The photo viewer
+        THUMBNAIL(160, 120, ImageLoader.Fit.COVER, "thumb");    // Small previews in the form
+
+        public final int maxWidth, maxHeight;
+        public final ImageLoader.Fit fit;
+        private final String suffix;
+
+        Variant(int maxWidth, int maxHeight, ImageLoader.Fit fit, String suffix) {
+            this.maxWidth = maxWidth;
+            this.maxHeight = maxHeight;
+            this.fit = fit;
+            this.suffix = suffix;
+        }
+    }
+
+    // Keeps the photo folder somewhere else, e.g. a temporary folder in the tests (null = next to the .exe)
+    public static void setBaseDirectory(File dir) {
+        baseDir = dir;
+    }
 
     /**
-     * Copies the selected file to the app's local "taloane" folder.
+     * Where a stored relative path (or IMAGE_DIR / VARIANT_DIR) is on disk. Absolute paths are kept as they are.
+     */
+    public static File resolve(String relativePath) {
+        File file = new File(relativePath);
+        return file.isAbsolute() ? file : new File(baseDir, relativePath);
+    }
+
+    /**
+     * Copies the selected file into the app's "taloane" folder, named after its content (SHA-256):
+     * "taloane/3f/3fa4...e1.jpg". A file with the same bytes is stored only once; every car picking it points
+     * at the same path (the Photos table counts them). Stored files never change, so copying the folder
+     * elsewhere only has to add the new ones.
      * Returns the relative path to be stored in the database.
      */
     public static String copyToAppStorage(String sourcePath) {
@@ -30,24 +83,43 @@ public class StorageHelper {
 
         try {
             // 2. Ensure the directory exists (next to the .exe)
-            File directory = new File(IMAGE_DIR);
+            File directory = resolve(IMAGE_DIR);
             if (!directory.exists()) {
                 directory.mkdirs();
             }
 
-            // 3. Generate a safe, unique filename
-            // Format: plate_timestamp.extension (e.g., TM12ABC_20231027_1530.jpg)
-            String extension = getExtension(sourceFile.getName());
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-            String newFileName = "img_" + timestamp + "." + extension;
+            // 3. Copy and hash in one pass, under a temporary name
+            File temp = File.createTempFile("incoming_", ".part", directory);
+            try {
+                String hash = copyAndHash(sourceFile.toPath(), temp.toPath());
 
-            File destFile = new File(directory, newFileName);
+                // 4. Content address, sharded by the first byte so no folder gets huge
+                String extension = getExtension(sourceFile.getName()).toLowerCase(Locale.ROOT);
+                String relativePath = IMAGE_DIR + File.separator + hash.substring(0, 2) + File.separator + hash + "." + extension;
+                File destFile = resolve(relativePath);
 
-            // 4. Copy the file
-            Files.copy(sourceFile.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-
-            // 5. Return the Relative Path (e.g., "car_photos\img_....jpg")
-            return IMAGE_DIR + File.separator + newFileName;
+                // 5. Same bytes already stored: nothing to move (the temporary copy is dropped), but the file is
+                // touched, so the maintenance job's grace window covers it until the save that points at it.
+                // Under the lock, so the job cannot move it away between our check and the touch.
+                boolean stored;
+                synchronized (STORE_LOCK) {
+                    stored = destFile.exists();
+                    if (stored) {
+                        destFile.setLastModified(System.currentTimeMillis());
+                    } else {
+                        Files.createDirectories(destFile.getParentFile().toPath());
+                        try {
+                            Files.move(temp.toPath(), destFile.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                        } catch (AtomicMoveNotSupportedException e) {
+                            Files.move(temp.toPath(), destFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+                        }
+                    }
+                }
+                if (!stored) generateVariantsLater(relativePath); // Previews are made in the background
+                return relativePath;
+            } finally {
+                Files.deleteIfExists(temp.toPath());
+            }
 
         } catch (IOException e) {
             e.printStackTrace();
@@ -55,6 +127,29 @@ public class StorageHelper {
         }
     }
 
+    // Copies 'source' to 'target' through one direct buffer, hashing the same bytes on the way. Returns the hex SHA-256.
+    private static String copyAndHash(Path source, Path target) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // Every JVM has SHA-256
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(COPY_BUFFER);
+        try (FileChannel in = FileChannel.open(source, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(target, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (in.read(buffer) != -1) {
+                buffer.flip();
+                digest.update(buffer.duplicate());
+                while (buffer.hasRemaining()) out.write(buffer);
+                buffer.clear();
+            }
+            out.force(false); // On a USB stick: really written before the database points at it
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
     /**
      * Resolves a stored relative path to a usable absolute path for display.
      */
@@ -62,8 +157,61 @@ public class StorageHelper {
         if (relativePath == null || relativePath.isEmpty()) return "";
 
         // Convert "car_photos/img.jpg" to "E:\AutoShop\car_photos\img.jpg"
-        File file = new File(relativePath);
-        return file.getAbsolutePath();
+        return resolve(relativePath).getAbsolutePath();
+    }
+
+    // =================================================================================================================
+    //  PREVIEW VARIANTS
+    // =================================================================================================================
+
+    /**
+     * Where the given variant of a stored photo lives ("taloane/variants/<name>_<path hash>_preview.jpg").
+     * The file may not exist yet: photos stored before variants existed get theirs on first view.
+     */
+    public static File getVariantFile(String relativePath, Variant variant) {
+        String name = new File(relativePath).getName();
+        int dot = name.lastIndexOf('.');
+        if (dot > 0) name = name.substring(0, dot);
+        // The stored path is part of the name, so two legacy photos called the same never share variants
+        String id = Integer.toHexString(relativePath.replace('\\', '/').hashCode());
+        return new File(resolve(VARIANT_DIR), name + "_" + id + "_" + variant.suffix + ".jpg");
+    }
+
+    // Makes the variants of a stored photo on the image pool (once per photo at a time)
+    public static void generateVariantsLater(String relativePath) {
+        if (relativePath == null || relativePath.isEmpty()) return;
+        ImageLoader.run("variants:" + relativePath, () -> {
+            generateVariants(relativePath);
+            return null;
+        });
+    }
+
+    /**
+     * Writes the PREVIEW and THUMBNAIL of a stored photo. The original is decoded once, subsampled to the
+     * preview size; the thumbnail is cut from the preview. Formats ImageIO cannot read (WEBP) get no variants.
+     */
+    public static void generateVariants(String relativePath) throws IOException {
+        File original = new File(getAbsolutePath(relativePath));
+        Variant p = Variant.PREVIEW, t = Variant.THUMBNAIL;
+        BufferedImage preview = ImageLoader.decode(original, p.maxWidth, p.maxHeight, p.fit);
+        if (preview == null) return;
+
+        File dir = resolve(VARIANT_DIR);
+        if (!dir.isDirectory() && !dir.mkdirs()) throw new IOException("Cannot create " + dir);
+        File previewFile = getVariantFile(relativePath, p);
+        writeJpeg(preview, previewFile);
+        writeJpeg(ImageLoader.decode(previewFile, t.maxWidth, t.maxHeight, t.fit), getVariantFile(relativePath, t));
+    }
+
+    // Written beside the target first, so a half-written variant is never picked up
+    private static void writeJpeg(BufferedImage image, File target) throws IOException {
+        File temp = File.createTempFile(target.getName(), ".part", target.getParentFile());
+        try {
+            if (!ImageIO.write(image, "jpg", temp)) throw new IOException("No JPEG writer");
+            Files.move(temp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(temp.toPath());
+        }
     }
 
     private static String getExtension(String filename) {
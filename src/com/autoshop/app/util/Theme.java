@@ -10,4 +10,5 @@ public class Theme {
     public static final Color OFF_WHITE = new Color(245, 245, 245); // For backgrounds
     public static final Color TEXT_LIGHT = new Color(255, 255, 255); // White text
     public static final Color GREEN = new Color(14, 168, 0);
+    public static final Color ORANGE = new Color(243, 156, 18);
 }
\ No newline at end of file
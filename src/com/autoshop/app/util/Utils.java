@@ -116,6 +116,14 @@ public class Utils {
                 t.get(java.util.Calendar.DAY_OF_YEAR) == d.get(java.util.Calendar.DAY_OF_YEAR);
     }
 
+    // Local calendar day as yyyymmdd (14 March 2025 -> 20250314), the value stored in Appointments.day_key
+    public static int dayKey(java.util.Date date) {
+        java.util.Calendar c = java.util.Calendar.getInstance();
+        c.setTime(date);
+        return c.get(java.util.Calendar.YEAR) * 10000 + (c.get(java.util.Calendar.MONTH) + 1) * 100
+                + c.get(java.util.Calendar.DAY_OF_MONTH);
+    }
+
     public static void copyFile(File source, File dest) throws java.io.IOException {
         java.nio.file.Files.copy(source.toPath(), dest.toPath(), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
     }
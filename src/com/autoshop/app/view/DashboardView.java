@@ -1,6 +1,7 @@
 package com.autoshop.app.view;
 
 import com.autoshop.app.component.*;
+import com.autoshop.app.component.AppointmentTableModel.Column;
 import com.autoshop.app.controller.DashboardController;
 import com.autoshop.app.util.LanguageHelper;
 import com.autoshop.app.util.Theme;
@@ -8,7 +9,6 @@ import com.autoshop.app.view.manager.CalendarHelper;
 import com.toedter.calendar.JCalendar;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
@@ -22,7 +22,7 @@ public class DashboardView extends JPanel {
 
     private final DashboardController controller;
 
-    private DefaultTableModel tableModel;
+    private AppointmentTableModel tableModel;
     private JTable agendaTable;
     private JCalendar calendar;
     private JLabel tableHeader, todayLabel, activeLabel;
@@ -66,9 +66,10 @@ public class DashboardView extends JPanel {
 
     private void initDataComponents() {
         String[] columns = {"Client Name", "Phone", "License Plate", "Brand", "Model", "Date", "Problem", "Status"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override public boolean isCellEditable(int row, int column) { return false; }
-        };
+        tableModel = new AppointmentTableModel(columns,
+                Column.CLIENT, Column.PHONE, Column.PLATE,
+                Column.BRAND, Column.MODEL, Column.DATE,
+                Column.PROBLEM, Column.STATUS);
 
         todayLabel = new JLabel();
         todayLabel.setFont(STAT_FONT);
@@ -155,6 +156,10 @@ public class DashboardView extends JPanel {
                 controller::triggerCreate            // Create action
         );
 
+        // Load bar + tooltip per day, redrawn when the month changes or appointments change
+        calendar.addPropertyChangeListener("calendar", e -> showCalendarLoad());
+        controller.setOnCalendarChanged(this::showCalendarLoad);
+
         panel.add(calendar, BorderLayout.CENTER);
         return panel;
     }
@@ -181,10 +186,11 @@ public class DashboardView extends JPanel {
             if (agendaTable != null && !agendaTable.isEditing()) {
                 int selectedRow = agendaTable.getSelectedRow();
                 // Simple refresh logic (Controller handles data, View handles table state)
-                controller.loadData();
-                if (selectedRow != -1 && selectedRow < agendaTable.getRowCount()) {
-                    agendaTable.setRowSelectionInterval(selectedRow, selectedRow);
-                }
+                controller.loadData(() -> {
+                    if (selectedRow != -1 && selectedRow < agendaTable.getRowCount()) {
+                        agendaTable.setRowSelectionInterval(selectedRow, selectedRow);
+                    }
+                });
             }
         }).start();
     }
@@ -200,14 +206,19 @@ public class DashboardView extends JPanel {
                     LanguageHelper.getString("col.model"), LanguageHelper.getString("col.date"),
                     LanguageHelper.getString("col.problem"), LanguageHelper.getString("col.status")
             };
-            tableModel.setColumnIdentifiers(cols);
+            tableModel.setColumnNames(cols);
             agendaTable.getColumnModel().getColumn(7).setCellRenderer(new StatusCellRenderer());
 
             calendar.setLocale(LanguageHelper.getCurrentLocale());
+            showCalendarLoad();
             StatusMenuHelper.attach(agendaTable, controller.getAppointmentList(), controller::loadData, this);
         }
     }
 
+    private void showCalendarLoad() {
+        controller.loadMonth(calendar.getDate(), load -> CalendarCustomizer.showDayLoad(calendar, load));
+    }
+
     // --- PROXY SETTERS ---
     public void setOnCreateRequest(Consumer<Date> c) { controller.setOnCreateRequest(c); }
     public void setOnJumpRequest(Consumer<Integer> c) { controller.setOnJumpRequest(c); }
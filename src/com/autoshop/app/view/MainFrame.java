@@ -1,7 +1,14 @@
 package com.autoshop.app.view;
 
 import com.autoshop.app.component.*;
+import com.autoshop.app.util.AutoCompletion;
+import com.autoshop.app.util.BackgroundExecutor;
+import com.autoshop.app.util.BackupService;
+import com.autoshop.app.util.ConnectionManager;
+import com.autoshop.app.util.ImageCache;
 import com.autoshop.app.util.LanguageHelper;
+import com.autoshop.app.util.MaintenanceService;
+import com.autoshop.app.util.StatusTransitionScheduler;
 import com.autoshop.app.util.Theme;
 
 import javax.swing.*;
@@ -13,6 +20,7 @@ public class MainFrame extends JFrame {
 
     // Buttons
     private JButton homeButton, appointmentButton, searchButton, settingsButton, helpButton;
+    private JLabel loadingLabel; // Shown while background database work is running
 
     // Views
     private DashboardView dashboardView;
@@ -108,6 +116,13 @@ public class MainFrame extends JFrame {
         menuPanel.add(Box.createHorizontalStrut(50));
         menuPanel.add(helpButton);
 
+        // C. Loading indicator (hidden until a worker is busy for a moment)
+        loadingLabel = new JLabel();
+        loadingLabel.setForeground(Theme.WHITE);
+        loadingLabel.setFont(new Font("SansSerif", Font.ITALIC, 12));
+        loadingLabel.setVisible(false);
+        menuPanel.add(loadingLabel);
+
         topSection.add(menuPanel, BorderLayout.CENTER);
         return topSection;
     }
@@ -137,6 +152,22 @@ public class MainFrame extends JFrame {
 
         helpButton.addActionListener(e -> showHelpDialog());
 
+        // Busy feedback: only after a short delay, so quick lookups don't make it flicker
+        Timer loadingDelay = new Timer(300, e -> {
+            loadingLabel.setVisible(true);
+            setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
+        });
+        loadingDelay.setRepeats(false);
+        BackgroundExecutor.addActivityListener(pending -> {
+            if (pending > 0) {
+                if (!loadingLabel.isVisible() && !loadingDelay.isRunning()) loadingDelay.start();
+            } else {
+                loadingDelay.stop();
+                loadingLabel.setVisible(false);
+                setCursor(Cursor.getDefaultCursor());
+            }
+        });
+
         // Default View
         cardLayout.show(mainPanel, "HOME");
     }
@@ -174,6 +205,7 @@ public class MainFrame extends JFrame {
         appointmentButton.setText(LanguageHelper.getString("btn.appointments"));
         searchButton.setText(LanguageHelper.getString("btn.search"));
         settingsButton.setText(LanguageHelper.getString("btn.settings"));
+        loadingLabel.setText(LanguageHelper.getString("lbl.loading"));
     }
 
     private void setAppIcon() {
@@ -187,6 +219,15 @@ public class MainFrame extends JFrame {
 
     public void shutdownApplication() {
         NotificationService.stop();
+        BackupService.stopScheduled();
+        MaintenanceService.stop();
+        StatusTransitionScheduler.stop();
+        BackgroundExecutor.stopWatchdog();
+        BackgroundExecutor.logStats();
+        AutoCompletion.logStats();
+        ImageCache.logStats();
+        ConnectionManager.logStats();
+        ConnectionManager.shutdown();
         dispose();
         System.exit(0);
     }
@@ -1,6 +1,7 @@
 package com.autoshop.app.view;
 
 import com.autoshop.app.component.*;
+import com.autoshop.app.component.AppointmentTableModel.Column;
 import com.autoshop.app.controller.SearchController;
 import com.autoshop.app.model.Appointment;
 import com.autoshop.app.model.AppointmentStatus;
@@ -9,12 +10,9 @@ import com.autoshop.app.util.Theme;
 import com.toedter.calendar.JDateChooser;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Date;
 import java.util.function.Consumer;
 
@@ -25,8 +23,6 @@ public class SearchView extends JPanel {
 
     // Controller & Data
     private final SearchController controller;
-    private final ArrayList<Appointment> resultsList = new ArrayList<>();
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm");
     private Consumer<Integer> onJumpRequest;
 
     // Components
@@ -34,9 +30,9 @@ public class SearchView extends JPanel {
     private JTextField searchField;
     private JDateChooser dateFrom, dateTo;
     private JComboBox<Object> statusFilterBox;
-    private JButton searchButton, resetButton;
+    private JButton searchButton, resetButton, exportButton;
     private JTable resultsTable;
-    private DefaultTableModel tableModel;
+    private AppointmentTableModel tableModel;
 
     public SearchView() {
         setLayout(new BorderLayout());
@@ -50,6 +46,7 @@ public class SearchView extends JPanel {
         // 3. Build Layout
         add(createFilterPanel(), BorderLayout.NORTH);
         add(createTablePanel(), BorderLayout.CENTER);
+        controller.bindResults(tableModel); // Patches the results when appointments change
 
         // 4. Setup Logic
         setupListeners();
@@ -84,6 +81,9 @@ public class SearchView extends JPanel {
 
         resetButton = new RoundedButton("Reset");
         ButtonStyler.apply(resetButton, Theme.GRAY);
+
+        exportButton = new RoundedButton("Export");
+        ButtonStyler.apply(exportButton, Theme.GRAY);
     }
 
     private JPanel createFilterPanel() {
@@ -100,15 +100,14 @@ public class SearchView extends JPanel {
         panel.add(dateTo);
         panel.add(searchButton);
         panel.add(resetButton);
+        panel.add(exportButton);
 
         return panel;
     }
 
     private JScrollPane createTablePanel() {
         String[] columns = {"Client", "Phone", "Plate", "Brand", "Model", "Year", "Date", "Problem", "Repairs", "Parts", "Observations", "Status"};
-        tableModel = new DefaultTableModel(columns, 0) {
-            @Override public boolean isCellEditable(int row, int col) { return false; }
-        };
+        tableModel = new AppointmentTableModel(columns, Column.values());
 
         resultsTable = SwingTableStyler.create(tableModel, 11);
         resultsTable.getColumnModel().getColumn(11).setCellRenderer(new StatusCellRenderer());
@@ -121,24 +120,29 @@ public class SearchView extends JPanel {
 
     private void performSearch() {
         String keyword = searchField.getText().trim();
-        // Controller handles the heavy lifting
-        java.util.List<Appointment> results = controller.search(
+
+        // Controller handles the heavy lifting on a worker; the table says so meanwhile
+        resultsTable.putClientProperty("empty_msg", LanguageHelper.getString("msg.searching"));
+        tableModel.clear();
+        resultsTable.repaint();
+
+        controller.search(
                 keyword,
                 statusFilterBox.getSelectedItem(),
                 dateFrom.getDate(),
-                dateTo.getDate()
+                dateTo.getDate(),
+                this::showResults
         );
+    }
 
-        resultsList.clear();
-        resultsList.addAll(results);
-
+    private void showResults(java.util.List<Appointment> results) {
         if (results.isEmpty()) {
             resultsTable.putClientProperty("empty_msg", LanguageHelper.getString("msg.err.search")); // "No results found"
         } else {
             resultsTable.putClientProperty("empty_msg", ""); // Hide message if rows exist
         }
 
-        refreshTable();
+        tableModel.setAppointments(results);
     }
 
     private void resetSearch() {
@@ -146,8 +150,7 @@ public class SearchView extends JPanel {
         statusFilterBox.setSelectedIndex(0);
         dateFrom.setDate(null);
         dateTo.setDate(null);
-        resultsList.clear();
-        refreshTable();
+        tableModel.clear();
     }
 
     public void searchByDate(Date date) {
@@ -157,44 +160,23 @@ public class SearchView extends JPanel {
         performSearch();
     }
 
-    private void refreshTable() {
-        tableModel.setRowCount(0);
-
-        for (Appointment a : resultsList) {
-
-            String displayPlate = a.getCarLicensePlate();
-            if (displayPlate != null && displayPlate.startsWith("PENDING-")) {
-                displayPlate = "-";
-            }
-
-            String displayPhone = a.getClientPhone();
-            if (displayPhone == null || displayPhone.isEmpty()) {
-                displayPhone = "-";
-            }
-
-            tableModel.addRow(new Object[]{
-                    a.getClientName(), displayPhone, displayPlate,
-                    a.getCarBrand(), a.getCarModel(), a.getCarYear(),
-                    dateFormat.format(a.getDate()), a.getProblemDescription(), a.getRepairs(),
-                    a.getPartsSummary(), a.getObservations(), a.getStatus()
-            });
-        }
-    }
-
     // --- LISTENERS ---
 
     private void setupListeners() {
         searchButton.addActionListener(e -> performSearch());
         searchField.addActionListener(e -> performSearch());
         resetButton.addActionListener(e -> resetSearch());
+        // Exports what the filter matches (straight from the database, not the table), everything when it is empty
+        exportButton.addActionListener(e -> controller.export(
+                searchField.getText().trim(), statusFilterBox.getSelectedItem(), dateFrom.getDate(), dateTo.getDate()));
 
         resultsTable.addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
                 if (e.getClickCount() == 2) {
-                    int row = resultsTable.getSelectedRow();
-                    if (row != -1 && onJumpRequest != null) {
-                        onJumpRequest.accept(resultsList.get(row).getAppointmentID());
+                    Appointment appointment = tableModel.getAppointmentAt(resultsTable.getSelectedRow());
+                    if (appointment != null && onJumpRequest != null) {
+                        onJumpRequest.accept(appointment.getAppointmentID());
                     }
                 }
             }
@@ -225,6 +207,7 @@ public class SearchView extends JPanel {
         statusLabel.setText(LanguageHelper.getString("col.status"));
         searchButton.setText(LanguageHelper.getString("btn.search"));
         resetButton.setText(LanguageHelper.getString("btn.reset"));
+        exportButton.setText(LanguageHelper.getString("btn.export"));
 
         // Preserve selection while updating combo box
         Object selection = statusFilterBox.getSelectedItem();
@@ -241,14 +224,14 @@ public class SearchView extends JPanel {
                     LanguageHelper.getString("col.repairs"), LanguageHelper.getString("col.parts_used"),
                     LanguageHelper.getString("col.observations"), LanguageHelper.getString("col.status")
             };
-            tableModel.setColumnIdentifiers(cols);
+            tableModel.setColumnNames(cols);
 
             // Re-apply renderers and listeners
             resultsTable.getColumnModel().getColumn(11).setCellRenderer(new StatusCellRenderer());
             resultsTable.getTableHeader().setFont(new Font("SansSerif", Font.BOLD, 16));
 
-            // Note: We use performSearch as the callback, so changing status in search view updates DB and list immediately
-            StatusMenuHelper.attach(resultsTable, resultsList, this::performSearch, this);
+            // Note: Changing status goes through the repository, whose event patches the changed rows
+            StatusMenuHelper.attach(resultsTable, tableModel.asList(), () -> {}, this);
         }
     }
 
@@ -22,7 +22,7 @@ public class SettingsView extends JPanel {
 
     // Components
     private JLabel titleLabel, minsLabel;
-    private JButton backupBtn, restoreBtn, btnEn, btnRo;
+    private JButton backupBtn, restoreBtn, importBtn, btnEn, btnRo;
     private JPanel dataPanel, langPanel, notifPanel;
     private JCheckBox enableNotifBox;
     private JSpinner timeSpinner;
@@ -87,8 +87,12 @@ public class SettingsView extends JPanel {
         restoreBtn = new RoundedButton("Restore");
         ButtonStyler.apply(restoreBtn, Theme.RED);
 
+        importBtn = new RoundedButton("Import CSV");
+        ButtonStyler.apply(importBtn, Theme.GRAY);
+
         dataPanel.add(backupBtn);
         dataPanel.add(restoreBtn);
+        dataPanel.add(importBtn);
         return dataPanel;
     }
 
@@ -142,6 +146,7 @@ public class SettingsView extends JPanel {
     private void setupListeners() {
         backupBtn.addActionListener(e -> controller.backupData());
         restoreBtn.addActionListener(e -> controller.restoreData());
+        importBtn.addActionListener(e -> controller.importCsv());
 
         btnEn.addActionListener(e -> {
             controller.setLanguage("en", Locale.ENGLISH);
@@ -178,6 +183,7 @@ public class SettingsView extends JPanel {
         titleLabel.setText(LanguageHelper.getString("btn.settings"));
         backupBtn.setText(LanguageHelper.getString("btn.backup"));
         restoreBtn.setText(LanguageHelper.getString("btn.restore"));
+        importBtn.setText(LanguageHelper.getString("btn.import"));
 
         setPanelBorder(dataPanel, LanguageHelper.getString("lbl.data_mng"));
         setPanelBorder(langPanel, LanguageHelper.getString("lbl.language"));
@@ -19,6 +19,7 @@ public class AppointmentFormManager {
     private static final Font LABEL_FONT = new Font("SansSerif", Font.BOLD, 12);
     private static final Font INPUT_FONT = new Font("SansSerif", Font.PLAIN, 14);
     private String currentPhotoPath = "";
+    private volatile String brandForModels = ""; // Brand the model suggestions are filtered by
 
     // Components
     private JComboBox<String> nameField, phoneField, carLicensePlateField, carModelField, carBrandBox;
@@ -285,6 +286,7 @@ public class AppointmentFormManager {
         currentPhotoPath = "";
         photoLabel.setText(LanguageHelper.getString("msg.no_photo"));
         photoLabel.setForeground(Color.BLACK);
+        showThumbnail("");
 
         problemDescriptionField.setText("");
         partsListModel.clear();
@@ -338,6 +340,7 @@ public class AppointmentFormManager {
             photoLabel.setForeground(Color.BLACK);
             viewPhotoButton.setEnabled(false);
         }
+        showThumbnail(currentPhotoPath);
 
         problemDescriptionField.setText(appointment.getProblemDescription());
         repairsField.setText(appointment.getRepairs());
@@ -523,52 +526,37 @@ public class AppointmentFormManager {
         });
     }
 
+    // Suggestions come from the in-memory AutocompleteIndex; lookups still run on workers (see AutoCompletion)
     private void setupAutocomplete() {
-        AutoCompletion.enable(nameField, text -> {
-            try {
-                List<Client> clients = DatabaseHelper.getClientsByName(text);
-                List<String> names = new ArrayList<>();
-                for (Client client : clients) names.add(client.getClientName());
-                return names;
-            } catch (SQLException ex) { return new ArrayList<>(); }
-        });
+        AutoCompletion.enable(nameField, "name", AutocompleteIndex::suggestNames);
         nameField.setEditable(true);
 
-        AutoCompletion.enable(phoneField, text -> {
-            try {
-                String cleanPhone = Utils.normalizePhone(text);
-                List<Client> clients = DatabaseHelper.getClientsByPhone(cleanPhone);
-                List<String> phones = new ArrayList<>();
-                for (Client client : clients) phones.add(client.getClientPhone());
-                return phones;
-            } catch (SQLException ex) { return new ArrayList<>(); }
-        });
+        AutoCompletion.enable(phoneField, "phone", AutocompleteIndex::suggestPhones);
         phoneField.setEditable(true);
 
-        AutoCompletion.enable(carLicensePlateField, text -> {
-            try {
-                List<Car> cars = DatabaseHelper.getCarDetailsByPlate(text);
-                List<String> plates = new ArrayList<>();
-                for (Car car : cars) plates.add(car.getLicensePlate());
-                return plates;
-            } catch (SQLException ex) { return new ArrayList<>(); }
-        });
+        AutoCompletion.enable(carLicensePlateField, "plate", AutocompleteIndex::suggestPlates);
         carLicensePlateField.setEditable(true);
 
-        AutoCompletion.enable(carModelField, text -> {
-            try {
-                Object selectedBrandObj = carBrandBox.getSelectedItem();
-                String selectedBrand = (selectedBrandObj != null) ? selectedBrandObj.toString() : "";
-                if (selectedBrand.isEmpty()) return new ArrayList<>();
-                List<Car> cars = DatabaseHelper.getCarModelsByBrand(selectedBrand, text);
-                List<String> models = new ArrayList<>();
-                for (Car car : cars) {
-                    if (!models.contains(car.getCarModel())) models.add(car.getCarModel());
-                }
-                return models;
-            } catch (SQLException ex) { return new ArrayList<>(); }
-        });
+        // Runs on a worker: no reading carBrandBox here
+        AutoCompletion models = AutoCompletion.enable(carModelField, "model", text -> AutocompleteIndex.suggestModels(brandForModels, text));
         carModelField.setEditable(true);
+
+        carBrandBox.addItemListener(e -> {
+            Object selectedBrandObj = carBrandBox.getSelectedItem();
+            brandForModels = (selectedBrandObj != null) ? selectedBrandObj.toString() : "";
+            models.clearCache(); // Answers were for the previous brand
+        });
+    }
+
+    // Small preview next to the photo name, read on the image pool from the cached thumbnail
+    private void showThumbnail(String path) {
+        photoLabel.setIcon(null);
+        if (path == null || path.isEmpty()) return;
+        ImageLoader.submit("form.thumbnail", () -> ImageCache.getThumbnail(path), image -> {
+            if (image != null && path.equals(currentPhotoPath)) {
+                photoLabel.setIcon(new ImageIcon(ImageLoader.scaleToFit(image, 48, 36)));
+            }
+        }, e -> { }); // No thumbnail (missing file): the name is shown as before
     }
 
     private void setupTimeSpinner() {
@@ -640,19 +628,19 @@ public class AppointmentFormManager {
         });
     }
 
+    // Lookups run on a worker; the fields are filled on the event thread once the answer is back
     private void setupAutoFillListeners() {
         // 1. Phone Selected -> Fill Name
         addSelectionListener(phoneField, () -> {
             String selectedPhone = (String) phoneField.getEditor().getItem();
             if (selectedPhone != null && !selectedPhone.trim().isEmpty()) {
-                try {
-                    String clean = Utils.normalizePhone(selectedPhone);
-                    List<Client> clients = DatabaseHelper.getClientsByPhone(clean);
+                String clean = Utils.normalizePhone(selectedPhone);
+                BackgroundExecutor.submit("form.phone", () -> DatabaseHelper.getClientsByPhone(clean), clients -> {
                     // Since phone is unique, if we found one, it's the one.
                     if (!clients.isEmpty()) {
                         nameField.setSelectedItem(clients.get(0).getClientName());
                     }
-                } catch (SQLException ex) { ex.printStackTrace(); }
+                }, Throwable::printStackTrace);
             }
         });
 
@@ -660,8 +648,7 @@ public class AppointmentFormManager {
         addSelectionListener(nameField, () -> {
             String selectedName = (String) nameField.getEditor().getItem();
             if (selectedName != null && !selectedName.trim().isEmpty()) {
-                try {
-                    List<Client> clients = DatabaseHelper.getClientsByName(selectedName);
+                BackgroundExecutor.submit("form.name", () -> DatabaseHelper.getClientsByName(selectedName), clients -> {
                     // STRICT MATCH CHECK:
                     // Only fill if the user selected/typed the FULL name exactly.
                     // This prevents "A" auto-filling "Andrei".
@@ -671,7 +658,7 @@ public class AppointmentFormManager {
                             break;
                         }
                     }
-                } catch (SQLException ex) { ex.printStackTrace(); }
+                }, Throwable::printStackTrace);
             }
         });
 
@@ -679,8 +666,7 @@ public class AppointmentFormManager {
         addSelectionListener(carLicensePlateField, () -> {
             String selectedPlate = (String) carLicensePlateField.getEditor().getItem();
             if (selectedPlate != null && !selectedPlate.trim().isEmpty()) {
-                try {
-                    List<Car> cars = DatabaseHelper.getCarDetailsByPlate(selectedPlate);
+                BackgroundExecutor.submit("form.plate", () -> DatabaseHelper.getCarDetailsByPlate(selectedPlate), cars -> {
                     // STRICT MATCH CHECK:
                     for (Car car : cars) {
                         String dbPlate = Utils.formatPlate(car.getLicensePlate());
@@ -704,10 +690,11 @@ public class AppointmentFormManager {
                                 photoLabel.setForeground(Color.BLACK);
                                 viewPhotoButton.setEnabled(false);
                             }
+                            showThumbnail(currentPhotoPath);
                             break;
                         }
                     }
-                } catch (SQLException ex) { ex.printStackTrace(); }
+                }, Throwable::printStackTrace);
             }
         });
     }
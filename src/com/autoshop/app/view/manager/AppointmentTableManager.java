@@ -2,24 +2,20 @@ package com.autoshop.app.view.manager;
 
 import com.autoshop.app.component.*;
 import com.autoshop.app.model.Appointment;
+import com.autoshop.app.util.AppointmentRepository;
+import com.autoshop.app.util.BackgroundExecutor;
 import com.autoshop.app.util.DatabaseHelper;
 import com.autoshop.app.util.LanguageHelper;
 
 import javax.swing.*;
-import javax.swing.table.DefaultTableModel;
 import java.awt.*;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
-import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
-import java.util.Objects;
 
 public class AppointmentTableManager {
     private final JTable table;
-    private final DefaultTableModel tableModel;
-    private final List<Appointment> appointmentList = new ArrayList<>();
-    private final SimpleDateFormat dateFormat = new SimpleDateFormat("dd/MM/yyyy HH:mm");
+    private final PagedAppointmentTableModel tableModel;
+    private final List<Appointment> appointmentList; // Row-indexed view over the paged model
     private final Component parent; // For dialogs
 
     // =================================================================================================================
@@ -30,16 +26,21 @@ public class AppointmentTableManager {
     public AppointmentTableManager(Component parent) {
         this.parent = parent;
 
-        // 1. Initialize Model
+        // 1. Initialize Model (Paged: rows are loaded from the DB as they scroll into view)
         String[] columns = {"Client Name", "Phone", "License Plate", "Brand", "Model", "Year", "Date", "Description", "Repairs", "Parts used", "Observations", "Status"};
-        this.tableModel = new DefaultTableModel(columns, 0);
+        this.tableModel = new PagedAppointmentTableModel(columns);
+        this.appointmentList = tableModel.asList();
 
         // 2. Initialize Table
         this.table = SwingTableStyler.create(tableModel, 11);
         this.table.getColumnModel().getColumn(11).setCellRenderer(new StatusCellRenderer());
 
-        // 3. Attach Status Menu Logic (Right Click)
-        StatusMenuHelper.attach(table, appointmentList, this::refreshData, parent);
+        // 3. Attach Status Menu Logic (Right Click); selected rows outside the loaded pages are looked up by position
+        StatusMenuHelper.attach(table, appointmentList, this::refreshData, parent,
+                (from, to) -> DatabaseHelper.getAppointmentIdsInRows(from, to - from + 1));
+
+        // 4. Keep loaded rows current with every change made anywhere in the app
+        AppointmentRepository.addListener(tableModel::applyChanges);
     }
 
     public JScrollPane getScrollPane() {
@@ -59,57 +60,19 @@ public class AppointmentTableManager {
     // =================================================================================================================
 
     public void refreshData() {
-        try {
-            DatabaseHelper.autoUpdateStatuses();
-            List<Appointment> newData = DatabaseHelper.getAllAppointments();
-
-            // Update internal list
-            appointmentList.clear();
-            appointmentList.addAll(newData);
-
-            // Sort
-            appointmentList.sort(Comparator.comparing(Appointment::getDate));
-
-            // Update UI
-            updateTableModel();
-
-        } catch (SQLException e) {
-            e.printStackTrace(); // Log error
-        }
+        refreshData(null);
     }
 
-    private void updateTableModel() {
-        tableModel.setRowCount(0);
-        for (Appointment a : appointmentList) {
-
-            // --- 1. Mask the "PENDING-..." Plate ---
-            String displayPlate = a.getCarLicensePlate();
-            if (displayPlate != null && displayPlate.startsWith("PENDING-")) {
-                displayPlate = "-";
-            }
-
-            // --- 2. Mask the NULL Phone ---
-            String displayPhone = a.getClientPhone();
-            if (displayPhone == null || displayPhone.isEmpty()) {
-                displayPhone = "-";
-            }
-
-            // --- 3. Add Row with Clean Data ---
-            tableModel.addRow(new Object[]{
-                    a.getClientName(), // Already "-" if empty (handled by Controller)
-                    displayPhone,      // Calculated above
-                    displayPlate,      // Calculated above
-                    a.getCarBrand(),   // Already "-" if empty (handled by Controller)
-                    a.getCarModel(),   // Already "-" if empty (handled by Controller)
-                    a.getCarYear(),
-                    dateFormat.format(a.getDate()),
-                    a.getProblemDescription(),
-                    a.getRepairs(),
-                    a.getPartsSummary(),
-                    a.getObservations(),
-                    a.getStatus()
-            });
-        }
+    // Sync runs on a worker; 'onDone' runs on the event thread afterwards
+    private void refreshData(Runnable onDone) {
+        BackgroundExecutor.submit("table.sync", () -> {
+            // Changes arrive as repository events; the first time, count and load lazily
+            AppointmentRepository.sync();
+            return null;
+        }, ignored -> {
+            if (!tableModel.isLoaded()) tableModel.refresh();
+            if (onDone != null) onDone.run();
+        }, Throwable::printStackTrace); // Log error
     }
 
     // =================================================================================================================
@@ -119,8 +82,8 @@ public class AppointmentTableManager {
 
     public Appointment getSelectedAppointment() {
         int row = table.getSelectedRow();
-        if (row != -1 && row < appointmentList.size()) {
-            return appointmentList.get(row);
+        if (row != -1 && row < tableModel.getRowCount()) {
+            return tableModel.getAppointmentAt(row);
         }
         return null;
     }
@@ -129,55 +92,26 @@ public class AppointmentTableManager {
         table.clearSelection();
     }
 
-    // Helper for "Select by ID" logic
-    // Update this method in AppointmentTableManager.java
-    // You will need to import java.util.function.Consumer;
-
-    // In AppointmentTableManager.java
-
     public void selectById(int id, java.util.function.Consumer<Appointment> onFound) {
-        refreshData(); // 1. Refresh data to ensure we have the latest DB state
-
-        SwingUtilities.invokeLater(() -> {
-            for (int i = 0; i < appointmentList.size(); i++) {
-                if (appointmentList.get(i).getAppointmentID() == id) {
-
-                    // 2. Visually highlight the row
-                    table.setRowSelectionInterval(i, i);
-                    table.scrollRectToVisible(table.getCellRect(i, 0, true));
-
-                    // 3. FORCE CALLBACK: Send the found object back immediately
-                    if (onFound != null) {
-                        onFound.accept(appointmentList.get(i));
-                    }
-                    return;
-                }
-            }
-            // Optional: Handle "Not Found" case here
-        });
+        // 1. Refresh data to ensure we have the latest DB state
+        refreshData(() -> tableModel.findRow(id, row -> {
+            // 2. The DB told us where the row is (it may not be loaded yet)
+            if (row == -1 || row >= tableModel.getRowCount()) return;
+
+            // 3. Visually highlight the row (loads its page)
+            table.setRowSelectionInterval(row, row);
+            table.scrollRectToVisible(table.getCellRect(row, 0, true));
+
+            // 4. FORCE CALLBACK: Send the found object back once its page is in
+            if (onFound != null) tableModel.whenLoaded(row, onFound);
+        }));
     }
 
     // --- DUPLICATE CHECKING ---
-    public int findDuplicateId(String phone, String plate, java.util.Date date, String desc) {
-        for (Appointment a : appointmentList) {
-            // Compare formatted dates to ignore seconds/milliseconds differences
-            String d1 = dateFormat.format(a.getDate());
-            String d2 = dateFormat.format(date);
-
-            // This handles cases where a.getClientPhone() is NULL safely.
-            // (null == null) -> true
-            // (null == "0744...") -> false
-            boolean samePhone = Objects.equals(a.getClientPhone(), phone);
-
-            // We should use it for other fields too, just to be safe
-            boolean samePlate = Objects.equals(a.getCarLicensePlate(), plate);
-            boolean sameDesc = Objects.equals(a.getProblemDescription(), desc);
-
-            if (samePhone && samePlate && d1.equals(d2) && sameDesc) {
-                return a.getAppointmentID();
-            }
-        }
-        return -1;
+    // Looks at every appointment of that day (via the repository), not just the rows loaded in the table.
+    // Reads the database: call it from a worker thread.
+    public int findDuplicateId(String phone, String plate, java.util.Date date, String desc) throws SQLException {
+        return AppointmentRepository.findDuplicateId(phone, plate, date, desc);
     }
 
     // =================================================================================================================
@@ -194,7 +128,7 @@ public class AppointmentTableManager {
                 LanguageHelper.getString("col.repairs"), LanguageHelper.getString("col.parts_used"),
                 LanguageHelper.getString("col.observations"), LanguageHelper.getString("col.status")
         };
-        tableModel.setColumnIdentifiers(cols);
+        tableModel.setColumnNames(cols);
         table.getColumnModel().getColumn(11).setCellRenderer(new StatusCellRenderer());
     }
 }
\ No newline at end of file
@@ -15,7 +15,8 @@ public class CalendarHelper {
     /**
      * Attaches a right-click/left-click menu to the days of a JCalendar.
      * @param calendar The calendar to attach to
-     * @param countProvider A function that takes a Date and returns the number of appointments (int)
+     * @param countProvider A function that takes a Date and returns the number of appointments (int), or -1 when
+     *                      it is not known yet (it must not query the database: it runs on the event thread)
      * @param onViewAction Callback when "View Appointments" is clicked
      * @param onCreateAction Callback when "Create New" is clicked
      */
@@ -67,6 +68,9 @@ public class CalendarHelper {
                         if (count > 0) {
                             viewItem.setText("View " + count + " Appointment(s)");
                             viewItem.setForeground(new Color(0, 150, 0));
+                        } else if (count < 0) {
+                            viewItem.setText("View Appointments"); // Still loading
+                            viewItem.setForeground(Color.BLACK);
                         } else {
                             viewItem.setText("View Day (Empty)");
                             viewItem.setForeground(Color.GRAY);
@@ -0,0 +1,249 @@
+package com.autoshop.app.view.manager;
+
+import com.autoshop.app.component.AppointmentTableModel;
+import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.ChangeSet;
+import com.autoshop.app.util.BackgroundExecutor;
+import com.autoshop.app.util.DatabaseHelper;
+
+import javax.swing.table.AbstractTableModel;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.function.IntConsumer;
+
+/**
+ * Table model for the Appointments tab that never holds the whole history.
+ * Rows are fetched from the database in pages (keyset on date + appointment_id) only when the
+ * JTable asks for them, i.e. when they scroll into view. At most MAX_PAGES pages stay in memory.
+ * A page far from any known boundary first has its start key looked up in the date index.
+ * Pages are read on a worker thread; until one arrives its rows render empty.
+ */
+public class PagedAppointmentTableModel extends AbstractTableModel {
+    private static final int PAGE_SIZE = 200;
+    private static final int MAX_PAGES = 6;
+
+    private String[] columns;
+
+    private int rowCount = 0;
+    private boolean loaded = false;
+
+    // Bumped by every refresh; page loads started before it are dropped when they come back
+    private int generation = 0;
+    private boolean counting = false;
+    private final List<Runnable> afterCount = new ArrayList<>();
+
+    // Loaded pages, least recently used first
+    private final LinkedHashMap<Integer, List<Appointment>> pages = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Appointment>> eldest) {
+            return size() > MAX_PAGES;
+        }
+    };
+
+    // Pages being read on a worker -> callbacks waiting for one of their rows
+    private final Map<Integer, List<Runnable>> loadingPages = new HashMap<>();
+
+    // Page number -> key (date, id) of the last row of the previous page. Filled in as pages load.
+    private final TreeMap<Integer, long[]> pageStarts = new TreeMap<>();
+
+    // What a worker read for one page: its start key (null = past the end) and its rows
+    private record PageLoad(long[] start, List<Appointment> rows) {}
+
+    public PagedAppointmentTableModel(String[] columns) {
+        this.columns = columns;
+    }
+
+    // =================================================================================================================
+    //  SECTION 1: DATA LOADING (all reads run on BackgroundExecutor workers)
+    // =================================================================================================================
+
+    /**
+     * Re-counts the rows in the background, then drops every cached page. Only the visible page is loaded
+     * again (lazily). The old rows stay on screen until the count is back.
+     */
+    public void refresh() {
+        counting = true;
+        BackgroundExecutor.submit("table.count", DatabaseHelper::countAppointments, count -> {
+            // Page loads still in flight belong to the old row order
+            for (Integer pageNo : loadingPages.keySet()) BackgroundExecutor.cancel("table.page." + pageNo);
+            loadingPages.clear();
+
+            generation++;
+            loaded = true;
+            pages.clear();
+            pageStarts.clear();
+            pageStarts.put(0, new long[]{Long.MIN_VALUE, Integer.MIN_VALUE});
+            rowCount = count;
+            fireTableDataChanged();
+
+            counting = false;
+            List<Runnable> waiting = new ArrayList<>(afterCount);
+            afterCount.clear();
+            waiting.forEach(Runnable::run);
+        }, e -> {
+            counting = false;
+            e.printStackTrace();
+        });
+    }
+
+    /**
+     * AppointmentRepository listener. Edits that keep every row in place are patched into the loaded pages;
+     * inserts, deletes and date changes shift rows, so they fall back to refresh().
+     */
+    public void applyChanges(ChangeSet changes, Map<Integer, Appointment> fresh) {
+        if (!loaded) return; // Nothing shown yet, the first refresh() reads everything
+
+        if (!changes.isComplete() || !changes.getInsertedIds().isEmpty() || !changes.getDeletedIds().isEmpty()) {
+            refresh();
+            return;
+        }
+
+        // 1. Find the updated rows that are actually loaded (rows in other pages are read fresh when shown)
+        Map<Integer, int[]> positions = new HashMap<>(); // id -> {page, index}
+        for (Map.Entry<Integer, List<Appointment>> page : pages.entrySet()) {
+            List<Appointment> rows = page.getValue();
+            for (int i = 0; i < rows.size(); i++) {
+                if (changes.getUpdatedIds().contains(rows.get(i).getAppointmentID())) {
+                    positions.put(rows.get(i).getAppointmentID(), new int[]{page.getKey(), i});
+                }
+            }
+        }
+
+        // 2. Swap in the fresh copies, unless a row moved
+        for (Map.Entry<Integer, int[]> position : positions.entrySet()) {
+            Appointment a = fresh.get(position.getKey());
+            List<Appointment> rows = pages.get(position.getValue()[0]);
+            if (a == null || !rows.get(position.getValue()[1]).getDate().equals(a.getDate())) {
+                refresh();
+                return;
+            }
+            rows.set(position.getValue()[1], a);
+        }
+        for (int[] at : positions.values()) {
+            int row = at[0] * PAGE_SIZE + at[1];
+            fireTableRowsUpdated(row, row);
+        }
+    }
+
+    public boolean isLoaded() { return loaded; }
+
+    // Cached page, or null after asking a worker for it (the rows repaint once it arrives)
+    private List<Appointment> getPage(int pageNo) {
+        List<Appointment> page = pages.get(pageNo);
+        if (page == null) loadPage(pageNo);
+        return page;
+    }
+
+    private void loadPage(int pageNo) {
+        if (loadingPages.containsKey(pageNo)) return;
+        loadingPages.put(pageNo, new ArrayList<>());
+
+        // Start from the closest known page boundary before this page; the rows in between are only counted
+        // in the index, never read
+        Map.Entry<Integer, long[]> start = pageStarts.floorEntry(pageNo);
+        int skip = (pageNo - start.getKey()) * PAGE_SIZE;
+        long[] known = start.getValue();
+        int requestedIn = generation;
+
+        BackgroundExecutor.submit("table.page." + pageNo,
+                () -> {
+                    long[] key = skip == 0 ? known : DatabaseHelper.getPageStartKey(known[0], (int) known[1], skip);
+                    if (key == null) return new PageLoad(null, List.of());
+                    return new PageLoad(key, DatabaseHelper.getAppointmentsPage(key[0], (int) key[1], PAGE_SIZE));
+                },
+                load -> {
+                    if (requestedIn != generation) return; // Rows were re-counted meanwhile
+                    List<Runnable> waiting = loadingPages.remove(pageNo);
+
+                    List<Appointment> page = load.rows();
+                    if (load.start() != null) pageStarts.put(pageNo, load.start());
+                    if (!page.isEmpty()) {
+                        Appointment last = page.get(page.size() - 1);
+                        pageStarts.put(pageNo + 1, new long[]{last.getDate().getTime(), last.getAppointmentID()});
+                    }
+                    pages.put(pageNo, page);
+
+                    int first = pageNo * PAGE_SIZE;
+                    int lastRow = Math.min(rowCount, first + PAGE_SIZE) - 1;
+                    if (lastRow >= first) fireTableRowsUpdated(first, lastRow);
+                    if (waiting != null) waiting.forEach(Runnable::run);
+                },
+                e -> {
+                    loadingPages.remove(pageNo);
+                    e.printStackTrace();
+                });
+    }
+
+    // =================================================================================================================
+    //  SECTION 2: ROW ACCESS
+    // =================================================================================================================
+
+    // The row if its page is in memory, otherwise null (and the page starts loading)
+    public Appointment getAppointmentAt(int row) {
+        if (row < 0 || row >= rowCount) return null;
+        List<Appointment> page = getPage(row / PAGE_SIZE);
+        int index = row % PAGE_SIZE;
+        return page != null && index < page.size() ? page.get(index) : null;
+    }
+
+    // Hands over the row once its page is loaded (right away if it already is)
+    public void whenLoaded(int row, Consumer<Appointment> callback) {
+        Appointment a = getAppointmentAt(row);
+        if (a != null) {
+            callback.accept(a);
+            return;
+        }
+        List<Runnable> waiting = loadingPages.get(row / PAGE_SIZE);
+        if (waiting != null) waiting.add(() -> {
+            Appointment loadedRow = getAppointmentAt(row);
+            if (loadedRow != null) callback.accept(loadedRow);
+        });
+    }
+
+    // Row of an appointment, looked up in the database (it does not need to be loaded). -1 if not found.
+    // Reported after any re-count in progress, so the row number matches getRowCount().
+    public void findRow(int appointmentId, IntConsumer onFound) {
+        BackgroundExecutor.submit("table.find", () -> DatabaseHelper.getAppointmentRowIndex(appointmentId), row -> {
+            if (counting) afterCount.add(() -> onFound.accept(row));
+            else onFound.accept(row);
+        }, Throwable::printStackTrace);
+    }
+
+    // Only the rows currently held in memory
+    public List<Appointment> getLoadedAppointments() {
+        List<Appointment> loaded = new ArrayList<>();
+        for (List<Appointment> page : pages.values()) loaded.addAll(page);
+        return loaded;
+    }
+
+    // Row-indexed view for helpers that expect a List (e.g. StatusMenuHelper)
+    public List<Appointment> asList() {
+        return new AbstractList<>() {
+            @Override public Appointment get(int index) { return getAppointmentAt(index); }
+            @Override public int size() { return rowCount; }
+        };
+    }
+
+    public void setColumnNames(String[] columns) {
+        this.columns = columns;
+        fireTableStructureChanged();
+    }
+
+    // =================================================================================================================
+    //  SECTION 3: TABLE MODEL
+    // =================================================================================================================
+
+    @Override public int getRowCount() { return rowCount; }
+    @Override public int getColumnCount() { return columns.length; }
+    @Override public String getColumnName(int column) { return columns[column]; }
+    @Override public boolean isCellEditable(int row, int column) { return false; }
+
+    @Override
+    public Object getValueAt(int row, int column) {
+        Appointment a = getAppointmentAt(row);
+        if (a == null) return "";
+
+        // Same columns, in the same order, as AppointmentTableModel.Column
+        return AppointmentTableModel.valueOf(a, AppointmentTableModel.Column.values()[column]);
+    }
+}
@@ -0,0 +1,155 @@
+package com.autoshop.tests;
+
+import com.autoshop.app.util.AutoCompletion;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.swing.*;
+import javax.swing.text.JTextComponent;
+import java.awt.event.KeyEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+public class AutoCompletionTest {
+    private JComboBox<String> comboBox;
+    private JTextComponent editor;
+    private final List<String> asked = new CopyOnWriteArrayList<>(); // Texts the provider was called with
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            comboBox = new JComboBox<>(new DefaultComboBoxModel<>());
+            comboBox.setEditable(true);
+            editor = (JTextComponent) comboBox.getEditor().getEditorComponent();
+        });
+    }
+
+    @Test
+    public void testRapidKeystrokesMakeOneLookup() throws Exception {
+        AutoCompletion completion = create(100, text -> List.of(text + "-1"));
+
+        // Three keystrokes inside the debounce window: only the last text is looked up
+        type(completion, "f");
+        type(completion, "fo");
+        type(completion, "for");
+        waitUntil(() -> shown().equals(List.of("for-1")));
+        Thread.sleep(300);
+        Assertions.assertEquals(List.of("for"), asked);
+        Assertions.assertEquals(List.of("for-1"), shown());
+    }
+
+    @Test
+    public void testSlowResultForOldTextIsNotShown() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AutoCompletion completion = create(0, text -> {
+            if (text.equals("s")) awaitQuietly(release); // The first lookup is slow
+            return List.of(text + "-1");
+        });
+
+        type(completion, "s");
+        waitUntil(() -> asked.contains("s"));
+        type(completion, "sl");
+        waitUntil(() -> shown().equals(List.of("sl-1")));
+
+        // The answer for "s" arrives last, and is dropped
+        release.countDown();
+        Thread.sleep(200);
+        SwingUtilities.invokeAndWait(() -> { });
+        Assertions.assertEquals(List.of("sl-1"), shown());
+        Assertions.assertEquals("sl", editorText());
+    }
+
+    @Test
+    public void testBackspaceToCachedPrefixSkipsProvider() throws Exception {
+        AutoCompletion completion = create(0, text -> List.of(text + "-1"));
+
+        type(completion, "b");
+        waitUntil(() -> shown().equals(List.of("b-1")));
+        type(completion, "ba");
+        waitUntil(() -> shown().equals(List.of("ba-1")));
+
+        // Backspace: answered from the cache, at once
+        type(completion, "b");
+        Assertions.assertEquals(List.of("b-1"), shown());
+        Assertions.assertEquals(List.of("b", "ba"), asked);
+    }
+
+    @Test
+    public void testClearCacheDropsAnswerInFlight() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        AutoCompletion completion = create(0, text -> {
+            if (asked.size() == 1) awaitQuietly(release); // The first lookup is slow
+            return List.of(text + "-" + asked.size());
+        });
+
+        // 1. Cache cleared while the lookup runs: its answer is still shown, but not remembered
+        type(completion, "c");
+        waitUntil(() -> asked.size() == 1);
+        SwingUtilities.invokeAndWait(completion::clearCache);
+        release.countDown();
+        waitUntil(() -> shown().equals(List.of("c-1")));
+        Assertions.assertEquals(List.of("c-1"), shown());
+
+        // 2. So the same text is asked again
+        type(completion, "c");
+        waitUntil(() -> shown().equals(List.of("c-2")));
+        Assertions.assertEquals(List.of("c", "c"), asked);
+    }
+
+    // A completion on this test's combo box, recording what the provider is asked
+    private AutoCompletion create(int debounceMs, AutoCompletion.AutoCompleteProvider provider) throws Exception {
+        AutoCompletion[] created = new AutoCompletion[1];
+        SwingUtilities.invokeAndWait(() -> created[0] = new AutoCompletion(comboBox, "test", debounceMs, text -> {
+            asked.add(text);
+            return provider.getSuggestions(text);
+        }));
+        return created[0];
+    }
+
+    // The editor now holds 'text', as after a keystroke; returns once the key handling has run
+    private void type(AutoCompletion completion, String text) throws Exception {
+        SwingUtilities.invokeAndWait(() -> {
+            editor.setText(text);
+            completion.keyReleased(new KeyEvent(editor, KeyEvent.KEY_RELEASED, System.currentTimeMillis(), 0,
+                    KeyEvent.VK_A, 'a'));
+        });
+        SwingUtilities.invokeAndWait(() -> { }); // keyReleased defers its work to the event thread
+    }
+
+    private List<String> shown() {
+        List<String> items = new ArrayList<>();
+        try {
+            SwingUtilities.invokeAndWait(() -> {
+                for (int i = 0; i < comboBox.getItemCount(); i++) items.add(comboBox.getItemAt(i));
+            });
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+        return items;
+    }
+
+    private String editorText() throws Exception {
+        String[] text = new String[1];
+        SwingUtilities.invokeAndWait(() -> text[0] = editor.getText());
+        return text[0];
+    }
+
+    private static void awaitQuietly(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Polls for up to five seconds (lookups run on a worker and report back on the event thread)
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(20);
+    }
+}
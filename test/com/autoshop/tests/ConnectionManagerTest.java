@@ -0,0 +1,129 @@
+package com.autoshop.tests;
+
+import com.autoshop.app.util.ConnectionManager;
+import com.autoshop.app.util.DatabaseHelper;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+
+public class ConnectionManagerTest {
+    @BeforeEach
+    public void setUp() throws SQLException {
+        DatabaseHelper.setDataBaseName("test.db");
+        DatabaseHelper.createNewTable();
+        try (Connection conn = ConnectionManager.borrowWriter(); Statement stmt = conn.createStatement()) {
+            stmt.execute("CREATE TABLE IF NOT EXISTS PoolTest (id INTEGER PRIMARY KEY, value TEXT)");
+            stmt.execute("DELETE FROM PoolTest");
+            stmt.execute("INSERT INTO PoolTest(id, value) VALUES (1, 'a'), (2, 'b'), (3, 'c')");
+        }
+    }
+
+    @Test
+    public void testConnectionsAreReused() throws SQLException {
+        Connection first = ConnectionManager.borrowReader();
+        Connection physical = first.unwrap(Connection.class);
+        first.close();
+        Assertions.assertTrue(first.isClosed());
+        Assertions.assertThrows(SQLException.class, first::createStatement);
+
+        // Readers come back from the pool (at most READ_POOL_SIZE = 4 of them), never a new one per borrow
+        Set<Connection> readers = Collections.newSetFromMap(new IdentityHashMap<>());
+        readers.add(physical);
+        for (int i = 0; i < 10; i++) {
+            try (Connection reader = ConnectionManager.borrowReader()) {
+                readers.add(reader.unwrap(Connection.class));
+            }
+        }
+        Assertions.assertTrue(readers.size() <= 4, "Readers should be reused, opened " + readers.size());
+
+        try (Connection w1 = ConnectionManager.borrowWriter()) {
+            physical = w1.unwrap(Connection.class);
+        }
+        try (Connection w2 = ConnectionManager.borrowWriter()) {
+            Assertions.assertSame(physical, w2.unwrap(Connection.class));
+        }
+    }
+
+    @Test
+    public void testStatementCacheHit() throws SQLException {
+        String sql = "SELECT value FROM PoolTest WHERE id = ?";
+        try (Connection conn = ConnectionManager.borrowWriter(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            ps.setInt(1, 1);
+            try (ResultSet rs = ps.executeQuery()) {
+                Assertions.assertEquals("a", rs.getString(1));
+            }
+        }
+
+        long hits = ConnectionManager.getStatementHits();
+        try (Connection conn = ConnectionManager.borrowWriter(); PreparedStatement ps = conn.prepareStatement(sql)) {
+            Assertions.assertEquals(hits + 1, ConnectionManager.getStatementHits());
+            ps.setInt(1, 2); // Parameters of the previous use were cleared
+            try (ResultSet rs = ps.executeQuery()) {
+                Assertions.assertEquals("b", rs.getString(1));
+            }
+        }
+    }
+
+    @Test
+    public void testNestedBorrowGetsItsOwnStatement() throws SQLException {
+        String sql = "SELECT id FROM PoolTest ORDER BY id";
+        try (Connection outer = ConnectionManager.borrowWriter(); PreparedStatement ps = outer.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals(1, rs.getInt(1));
+
+            // Same thread, same connection and same SQL: must not reset the outer result set
+            try (Connection inner = ConnectionManager.borrowWriter(); PreparedStatement again = inner.prepareStatement(sql);
+                 ResultSet innerRs = again.executeQuery()) {
+                Assertions.assertSame(outer.unwrap(Connection.class), inner.unwrap(Connection.class));
+                int count = 0;
+                while (innerRs.next()) count++;
+                Assertions.assertEquals(3, count);
+            }
+
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals(2, rs.getInt(1));
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals(3, rs.getInt(1));
+        }
+    }
+
+    @Test
+    public void testReturnRollsBackOpenTransaction() throws SQLException {
+        // 1. A borrower that forgets to commit
+        try (Connection conn = ConnectionManager.borrowWriter(); Statement stmt = conn.createStatement()) {
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("DELETE FROM PoolTest");
+        }
+
+        // 2. The next one gets autocommit back and none of those changes
+        try (Connection conn = ConnectionManager.borrowWriter(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM PoolTest")) {
+            Assertions.assertTrue(conn.getAutoCommit());
+            Assertions.assertEquals(3, rs.getInt(1));
+        }
+
+        // 3. A nested borrow shares the transaction, and its return does not end it
+        try (Connection outer = ConnectionManager.borrowWriter()) {
+            outer.setAutoCommit(false);
+            try (Connection inner = ConnectionManager.borrowWriter(); Statement stmt = inner.createStatement()) {
+                stmt.executeUpdate("DELETE FROM PoolTest WHERE id = 1");
+            }
+            Assertions.assertFalse(outer.getAutoCommit());
+            outer.commit();
+        }
+        try (Connection conn = ConnectionManager.borrowReader(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM PoolTest")) {
+            Assertions.assertEquals(2, rs.getInt(1));
+        }
+    }
+}
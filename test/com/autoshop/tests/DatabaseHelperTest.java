@@ -1,27 +1,69 @@
 package com.autoshop.tests;
 
+import com.autoshop.app.component.AppointmentTableModel;
+import com.autoshop.app.component.NotificationService;
 import com.autoshop.app.model.Appointment;
 import com.autoshop.app.model.AppointmentStatus;
+import com.autoshop.app.model.ChangeSet;
 import com.autoshop.app.model.Part;
 import com.autoshop.app.model.Supplier;
+import com.autoshop.app.util.AppointmentExporter;
+import com.autoshop.app.util.AppointmentRepository;
+import com.autoshop.app.util.AutocompleteIndex;
+import com.autoshop.app.util.BackgroundExecutor;
+import com.autoshop.app.util.BackupService;
+import com.autoshop.app.util.ConnectionManager;
+import com.autoshop.app.util.CsvImporter;
 import com.autoshop.app.util.DatabaseHelper;
+import com.autoshop.app.util.ImageCache;
+import com.autoshop.app.util.ImageLoader;
+import com.autoshop.app.util.MaintenanceService;
+import com.autoshop.app.util.PreferencesHelper;
+import com.autoshop.app.util.SchemaMigrator;
+import com.autoshop.app.util.StatusTransitionScheduler;
+import com.autoshop.app.util.StorageHelper;
+import com.autoshop.app.util.Utils;
 import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
+import javax.imageio.ImageIO;
+import javax.swing.*;
+import javax.swing.event.TableModelEvent;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
 
 public class DatabaseHelperTest {
+    @TempDir
+    Path storageRoot; // Photos are stored here instead of the real "taloane" folder
+
     @BeforeEach
     public void setUp() throws SQLException {
         DatabaseHelper.setDataBaseName("test.db");
         DatabaseHelper.createNewTable();
+        StorageHelper.setBaseDirectory(storageRoot.toFile());
 
         try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
             stmt.executeUpdate("DELETE FROM Parts");
@@ -31,6 +73,11 @@ public class DatabaseHelperTest {
             stmt.executeUpdate("DELETE FROM sqlite_sequence");
         }
     }
+    @AfterEach
+    public void tearDown() {
+        StorageHelper.setBaseDirectory(null);
+    }
+
     @Test
     public void testInsertAppointment() throws SQLException {
         Date testDate = new Date();
@@ -54,6 +101,32 @@ public class DatabaseHelperTest {
         Assertions.assertEquals("Alternator", testList.get(0).getPartList().get(0).getName());
     }
 
+    @Test
+    public void testPartsAttachedToCorrectAppointment() throws SQLException {
+        Date now = new Date();
+        List<Part> partsA = new ArrayList<>();
+        partsA.add(new Part("A1", "Filter", Supplier.AUTONET));
+        partsA.add(new Part("A2", "Oil", Supplier.UNIX));
+        List<Part> partsB = new ArrayList<>();
+        partsB.add(new Part("B1", "Brake Pads", Supplier.BARDI));
+
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Client A", "0711111111", "TM01A", "Audi", "A4", 2010, "", now, "Fix", "Fixed", partsA, "Obs"));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Client B", "0722222222", "TM02B", "BMW", "X5", 2015, "", now, "Fix", "Fixed", partsB, "Obs"));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Client C", "0733333333", "TM03C", "Dacia", "Logan", 2012, "", now, "Fix", "Fixed", new ArrayList<>(), "Obs"));
+
+        // Bulk loader must stitch each part onto its own appointment
+        for (Appointment a : DatabaseHelper.getAllAppointments()) {
+            switch (a.getClientName()) {
+                case "Client A" -> Assertions.assertEquals(2, a.getPartList().size(), "Client A should have 2 parts");
+                case "Client B" -> {
+                    Assertions.assertEquals(1, a.getPartList().size(), "Client B should have 1 part");
+                    Assertions.assertEquals("Brake Pads", a.getPartList().get(0).getName());
+                }
+                default -> Assertions.assertTrue(a.getPartList().isEmpty(), "Client C should have no parts");
+            }
+        }
+    }
+
     @Test
     public void testDeleteAppointment() throws SQLException {
         Date testDate = new Date();
@@ -130,6 +203,40 @@ public class DatabaseHelperTest {
         Assertions.assertEquals(0, results.size(), "Search for missing item should return empty list");
     }
 
+    @Test
+    public void testSearchIndexFollowsUpdates() throws SQLException {
+        Date now = new Date();
+        List<Part> parts = new ArrayList<>();
+        parts.add(new Part("K-998", "Alternator", Supplier.INTERCARS));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Maria Pop", "0711111111", "TM-12-ABC", "Dacia", "Logan", 2012, "", now, "Noise", "Fixed", parts, "Obs"));
+
+        // 1. Part names and compact plates are searchable
+        Assertions.assertEquals(1, DatabaseHelper.searchAppointments("alternator", null, null, null).size(), "Part name should be indexed");
+        Assertions.assertEquals(1, DatabaseHelper.searchAppointments("TM12ABC", null, null, null).size(), "Compact plate should match formatted plate");
+
+        // 2. Updating the client re-indexes the appointment
+        Appointment saved = DatabaseHelper.getAllAppointments().get(0);
+        saved.setClientName("Ioana Pop");
+        DatabaseHelper.updateAppointmentTransaction(saved);
+        Assertions.assertEquals(0, DatabaseHelper.searchAppointments("Maria", null, null, null).size(), "Old name should be gone from the index");
+        Assertions.assertEquals(1, DatabaseHelper.searchAppointments("Ioana", null, null, null).size(), "New name should be indexed");
+        Set<Integer> ids = Set.of(saved.getAppointmentID());
+        Assertions.assertTrue(DatabaseHelper.filterSearchMatches("Maria", null, null, null, ids).isEmpty(), "An edited result row should be re-checked against the keyword");
+        Assertions.assertEquals(ids, DatabaseHelper.filterSearchMatches("Ioana", null, now, now, ids));
+
+        // 3. Parts added or removed on an edit are indexed with it (one search row write per save)
+        saved = DatabaseHelper.getAllAppointments().get(0);
+        saved.getPartList().add(new Part("K-12", "Starter", Supplier.INTERCARS));
+        saved.getPartList().remove(0);
+        DatabaseHelper.updateAppointmentTransaction(saved);
+        Assertions.assertEquals(1, DatabaseHelper.searchAppointments("starter", null, null, null).size(), "New part should be indexed");
+        Assertions.assertEquals(0, DatabaseHelper.searchAppointments("alternator", null, null, null).size(), "Removed part should be gone");
+
+        // 4. Deleting removes it from the index
+        DatabaseHelper.deleteAppointment(saved.getAppointmentID());
+        Assertions.assertEquals(0, DatabaseHelper.searchAppointments("Logan", null, null, null).size(), "Deleted appointment should not be found");
+    }
+
     @Test
     public void testAutoUpdateStatuses() throws SQLException {
         // 1. Create a date in the PAST (Yesterday)
@@ -150,6 +257,809 @@ public class DatabaseHelperTest {
         Assertions.assertEquals(AppointmentStatus.IN_PROGRESS, result.getStatus(), "Past SCHEDULED appointment should become IN_PROGRESS");
     }
 
+    @Test
+    public void testKeysetPaging() throws SQLException {
+        // 5 appointments, one hour apart, inserted out of order
+        long base = System.currentTimeMillis() + 86_400_000L;
+        int[] order = {3, 0, 4, 1, 2};
+        for (int i : order) {
+            DatabaseHelper.addAppointmentTransaction(new Appointment("Client " + i, null, "TM0" + i + "PAG", "Audi", "A4", 2010, "",
+                    new Date(base + i * 3_600_000L), "Fix", "Fixed", new ArrayList<>(), "Obs"));
+        }
+        Assertions.assertEquals(5, DatabaseHelper.countAppointments());
+
+        // 1. First page starts at the earliest date
+        List<Appointment> page1 = DatabaseHelper.getAppointmentsPage(Long.MIN_VALUE, Integer.MIN_VALUE, 2);
+        Assertions.assertEquals("Client 0", page1.get(0).getClientName());
+        Assertions.assertEquals("Client 1", page1.get(1).getClientName());
+
+        // 2. Next page continues after the last key of the previous one
+        Appointment last = page1.get(1);
+        List<Appointment> page2 = DatabaseHelper.getAppointmentsPage(last.getDate().getTime(), last.getAppointmentID(), 2);
+        Assertions.assertEquals("Client 2", page2.get(0).getClientName());
+
+        // 3. Jumping from the start: the seek lands on the last row before the page, past the end gives null
+        long[] start = DatabaseHelper.getPageStartKey(Long.MIN_VALUE, Integer.MIN_VALUE, 4);
+        Assertions.assertArrayEquals(new long[]{page2.get(1).getDate().getTime(), page2.get(1).getAppointmentID()}, start);
+        Assertions.assertNull(DatabaseHelper.getPageStartKey(Long.MIN_VALUE, Integer.MIN_VALUE, 6), "Only 5 rows");
+        List<Appointment> page3 = DatabaseHelper.getAppointmentsPage(start[0], (int) start[1], 2);
+        Assertions.assertEquals(1, page3.size());
+        Assertions.assertEquals("Client 4", page3.get(0).getClientName());
+
+        // 4. Ids by position, for rows that are not loaded
+        Assertions.assertEquals(List.of(page2.get(0).getAppointmentID(), page2.get(1).getAppointmentID()),
+                DatabaseHelper.getAppointmentIdsInRows(2, 2));
+
+        // 5. Row index lookup
+        Assertions.assertEquals(2, DatabaseHelper.getAppointmentRowIndex(page2.get(0).getAppointmentID()));
+        Assertions.assertEquals(-1, DatabaseHelper.getAppointmentRowIndex(9999));
+    }
+
+    @Test
+    public void testChangeLogDeltas() throws SQLException {
+        long before = DatabaseHelper.getChangeVersion();
+        DatabaseHelper.addAppointmentTransaction(new Appointment("First", null, "TM01CHG", "Audi", "A4", 2010, "",
+                new Date(), "Fix", "Fixed", new ArrayList<>(), "Obs"));
+        Appointment first = DatabaseHelper.getAllAppointments().get(0);
+        long version = DatabaseHelper.getChangeVersion();
+        Assertions.assertEquals(before + 1, version, "The day and duplicate keys written after the insert are not changes");
+
+        // 1. Nothing changed: empty delta
+        Assertions.assertTrue(DatabaseHelper.getChangesSince(version).isEmpty());
+
+        // 2. One edit and one new appointment
+        first.setStatus(AppointmentStatus.DONE);
+        DatabaseHelper.updateAppointmentTransaction(first);
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Second", null, "TM02CHG", "Audi", "A4", 2010, "",
+                new Date(), "Fix", "Fixed", new ArrayList<>(), "Obs"));
+
+        ChangeSet changes = DatabaseHelper.getChangesSince(version);
+        Assertions.assertTrue(changes.isComplete());
+        Assertions.assertEquals(List.of(first.getAppointmentID()), new ArrayList<>(changes.getUpdatedIds()));
+        Assertions.assertEquals(1, changes.getInsertedIds().size());
+        Assertions.assertEquals(AppointmentStatus.DONE,
+                DatabaseHelper.getAppointmentsByIds(changes.getUpdatedIds()).get(0).getStatus());
+
+        // 3. Deleting the edited one turns it into a delete
+        DatabaseHelper.deleteAppointment(first.getAppointmentID());
+        changes = DatabaseHelper.getChangesSince(version);
+        Assertions.assertTrue(changes.getUpdatedIds().isEmpty());
+        Assertions.assertTrue(changes.getDeletedIds().contains(first.getAppointmentID()));
+
+        // 4. Pruning past 'version' makes the delta incomplete (the views reload); the version itself stays
+        long current = DatabaseHelper.getChangeVersion();
+        Assertions.assertTrue(DatabaseHelper.pruneChangeLog(System.currentTimeMillis() + 1) > 0);
+        Assertions.assertFalse(DatabaseHelper.getChangesSince(version).isComplete());
+        Assertions.assertEquals(current, DatabaseHelper.getChangeVersion());
+    }
+
+    @Test
+    public void testRepositoryWriteThrough() throws SQLException {
+        AppointmentRepository.invalidate(); // setUp wiped the tables behind its back
+        Date day = new Date(System.currentTimeMillis() + 86_400_000L);
+        Assertions.assertTrue(AppointmentRepository.getDay(day).isEmpty());
+
+        // 1. Add goes to SQLite and shows up in the cached day
+        AppointmentRepository.add(new Appointment("Cached", null, "TM01REP", "Audi", "A4", 2010, "",
+                day, "Fix", "Fixed", new ArrayList<>(), "Obs"));
+        List<Appointment> cached = AppointmentRepository.getDay(day);
+        Assertions.assertEquals(1, cached.size());
+        Assertions.assertEquals(cached.get(0).getAppointmentID(),
+                AppointmentRepository.findDuplicateId(null, "TM01REP", day, "Fix"));
+
+        // 2. Edits made directly in the database are picked up by sync()
+        Appointment appointment = cached.get(0);
+        appointment.setStatus(AppointmentStatus.DONE);
+        DatabaseHelper.updateAppointmentTransaction(appointment);
+        AppointmentRepository.sync();
+        Assertions.assertEquals(1, AppointmentRepository.getByStatus(AppointmentStatus.DONE).size());
+
+        // 3. Delete
+        AppointmentRepository.delete(appointment.getAppointmentID());
+        Assertions.assertTrue(AppointmentRepository.getDay(day).isEmpty());
+        Assertions.assertTrue(AppointmentRepository.getByStatus(AppointmentStatus.DONE).isEmpty());
+    }
+
+    @Test
+    public void testDayHistogram() throws SQLException {
+        Date day = new Date(System.currentTimeMillis() + 3 * 86_400_000L);
+        for (int i = 0; i < 3; i++) {
+            DatabaseHelper.addAppointmentTransaction(new Appointment("Client " + i, null, "TM0" + i + "DAY", "Audi", "A4", 2010, "",
+                    day, "Fix", "Fixed", new ArrayList<>(), "Obs"));
+        }
+        Appointment cancelled = DatabaseHelper.getAllAppointments().get(0);
+        cancelled.setStatus(AppointmentStatus.CANCELLED);
+        DatabaseHelper.updateAppointmentTransaction(cancelled);
+
+        // 1. Counts per status for the day (day_key filled in by the triggers)
+        int key = Utils.dayKey(day);
+        Map<Integer, Map<AppointmentStatus, Integer>> histogram = DatabaseHelper.getDayHistogram(key / 100 * 100 + 1, key / 100 * 100 + 31);
+        Assertions.assertEquals(2, histogram.get(key).get(AppointmentStatus.SCHEDULED));
+        Assertions.assertEquals(1, histogram.get(key).get(AppointmentStatus.CANCELLED));
+
+        // 2. Moving an appointment to another day moves its key
+        cancelled.setDate(new Date(day.getTime() + 86_400_000L));
+        DatabaseHelper.updateAppointmentTransaction(cancelled);
+        int nextKey = Utils.dayKey(cancelled.getDate());
+        histogram = DatabaseHelper.getDayHistogram(nextKey, nextKey);
+        Assertions.assertEquals(1, histogram.get(nextKey).get(AppointmentStatus.CANCELLED));
+        Assertions.assertEquals(1, DatabaseHelper.searchAppointments("", null, cancelled.getDate(), cancelled.getDate()).size());
+    }
+
+    @Test
+    public void testPartsDiffOnUpdate() throws SQLException {
+        List<Part> parts = new ArrayList<>();
+        parts.add(new Part("A1", "Filter", Supplier.AUTONET));
+        parts.add(new Part("A2", "Belt", Supplier.AUTONET));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Diff Client", null, "TM01DIF", "Audi", "A4", 2010, "",
+                new Date(), "Fix", "Fixed", parts, "Obs"));
+        Appointment appt = DatabaseHelper.getAllAppointments().get(0);
+        int beltId = appt.getPartList().get(1).getId();
+
+        // 1. Nothing changed in the parts: the Parts table is not written
+        appt.setRepairs("Changed repairs");
+        Assertions.assertEquals(0, DatabaseHelper.updateAppointmentTransaction(appt));
+
+        // 2. Drop the filter, add a pump: one delete + one insert, the belt keeps its row
+        List<Part> edited = new ArrayList<>(appt.getPartList().subList(1, 2));
+        edited.add(new Part("A3", "Pump", Supplier.AUTONET));
+        appt.setPartList(edited);
+        Assertions.assertEquals(2, DatabaseHelper.updateAppointmentTransaction(appt));
+        Assertions.assertEquals(0, DatabaseHelper.updateAppointmentTransaction(appt), "Saving the same object again is a no-op");
+
+        List<Part> saved = DatabaseHelper.getAllAppointments().get(0).getPartList();
+        Assertions.assertEquals(2, saved.size());
+        Assertions.assertEquals(beltId, saved.get(0).getId());
+        Assertions.assertEquals("Pump", saved.get(1).getName());
+    }
+
+    @Test
+    public void testBulkStatusUpdate() throws SQLException {
+        List<Part> parts = new ArrayList<>();
+        parts.add(new Part("P1", "Filter", Supplier.AUTONET));
+        for (int i = 0; i < 3; i++) {
+            DatabaseHelper.addAppointmentTransaction(new Appointment("Bulk " + i, null, "TM0" + i + "BLK", "Audi", "A4", 2010, "",
+                    new Date(), "Fix", "Fixed", parts, "Obs"));
+        }
+        List<Integer> ids = new ArrayList<>();
+        for (Appointment a : DatabaseHelper.getAllAppointments()) ids.add(a.getAppointmentID());
+        long version = DatabaseHelper.getChangeVersion();
+
+        // 1. One transaction flips them all; rows already DONE are not touched again
+        Assertions.assertEquals(3, DatabaseHelper.updateStatuses(ids, AppointmentStatus.DONE));
+        Assertions.assertEquals(0, DatabaseHelper.updateStatuses(ids, AppointmentStatus.DONE));
+        Assertions.assertFalse(DatabaseHelper.updateStatus(ids.get(0), AppointmentStatus.DONE));
+
+        for (Appointment a : DatabaseHelper.getAllAppointments()) {
+            Assertions.assertEquals(AppointmentStatus.DONE, a.getStatus());
+            Assertions.assertEquals(1, a.getPartList().size(), "Parts must not be rewritten");
+        }
+
+        // 2. Views still hear about it through the change log
+        Assertions.assertEquals(3, DatabaseHelper.getChangesSince(version).getUpdatedIds().size());
+    }
+
+    @Test
+    public void testBackgroundExecutorSupersedes() throws Exception {
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Async Client", null, "TM01BGX", "Audi", "A4", 2010, "",
+                new Date(), "Fix", "Fixed", new ArrayList<>(), "Obs"));
+        long edtBorrowsBefore = ConnectionManager.getEdtBorrows();
+
+        // 1. Two lookups with the same key: only the newer one reports back, on the event thread
+        CountDownLatch gate = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(1);
+        List<String> delivered = new CopyOnWriteArrayList<>();
+        BackgroundExecutor.submit("test.search", () -> {
+            gate.await(); // Still running when it gets superseded
+            return DatabaseHelper.searchAppointments("Async", null, null, null);
+        }, found -> delivered.add("old"), null);
+        BackgroundExecutor.submit("test.search", () -> DatabaseHelper.searchAppointments("Async", null, null, null), found -> {
+            delivered.add(SwingUtilities.isEventDispatchThread() ? "new:" + found.size() : "off-edt");
+            done.countDown();
+        }, null);
+        gate.countDown();
+
+        Assertions.assertTrue(done.await(5, TimeUnit.SECONDS));
+        SwingUtilities.invokeAndWait(() -> {}); // Flush anything the first task may still have queued
+        Assertions.assertEquals(List.of("new:1"), delivered, "The superseded result must be dropped");
+
+        // 2. None of it ran on the event thread
+        Assertions.assertEquals(edtBorrowsBefore, ConnectionManager.getEdtBorrows());
+    }
+
+    @Test
+    public void testSchemaMigrationsApplied() throws SQLException {
+        // setUp already ran createNewTable; running it again must not re-apply anything
+        DatabaseHelper.createNewTable();
+
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+            Assertions.assertEquals(SchemaMigrator.getLatestVersion(), SchemaMigrator.getCurrentVersion(conn), "All migrations should be recorded");
+
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM SchemaVersion")) {
+                Assertions.assertEquals(SchemaMigrator.getLatestVersion(), rs.getInt(1), "Each migration should be recorded exactly once");
+            }
+            try (ResultSet rs = stmt.executeQuery("SELECT 1 FROM sqlite_master WHERE type = 'index' AND name = 'idx_parts_appointment'")) {
+                Assertions.assertTrue(rs.next(), "Parts.appointment_id index should exist");
+            }
+        }
+    }
+
+    @Test
+    public void testCsvImport() throws Exception {
+        File csv = File.createTempFile("import", ".csv");
+        csv.deleteOnExit();
+        Files.writeString(csv.toPath(), String.join("\n",
+                "Name,Phone,Plate,Brand,Model,Year,Date,Problem,Parts",
+                "ion pop,0777777777,TM01CSV,dacia,logan,2012,01/02/2020 10:00,\"Brakes, front\",P1:Pads:AUTONET;P2:Discs:INTERCARS",
+                "Ion Pop,0777777777,TM01CSV,Dacia,Logan,2012,2020-03-01,\"Oil\nand filter\",",
+                "Bad Row,0777777777,TM01CSV,Dacia,Logan,2012,31/02/2020,Nothing,",
+                "Other,123,TM02CSV,Audi,A4,2010,01/04/2020,Noise,") + "\n", StandardCharsets.UTF_8);
+        File rejects = CsvImporter.rejectFileFor(csv);
+        rejects.deleteOnExit();
+
+        // 1. A previous run stopped after the first row (same file, same size and date)
+        long logVersion = changeLogVersion();
+        try (Connection conn = DatabaseHelper.connect();
+             PreparedStatement ps = conn.prepareStatement("INSERT INTO ImportProgress(source, file_size, file_modified, rows_done, imported, rejected, updated_at) VALUES(?, ?, ?, 1, 1, 0, 0)")) {
+            ps.setString(1, csv.getCanonicalPath());
+            ps.setLong(2, csv.length());
+            ps.setLong(3, csv.lastModified());
+            ps.executeUpdate();
+        }
+        CsvImporter.Result resumed = new CsvImporter(csv, null, null).run();
+        Assertions.assertEquals(1, resumed.skipped, "Rows before the checkpoint should be skipped");
+        Assertions.assertEquals(1, resumed.imported);
+        Assertions.assertEquals(2, resumed.rejected, "Impossible date and invalid phone should be rejected");
+
+        // 2. Finished: the checkpoint is gone, so the whole file imports again, reusing the client and car
+        CsvImporter.Result full = new CsvImporter(csv, null, null).run();
+        Assertions.assertEquals(0, full.skipped);
+        Assertions.assertEquals(2, full.imported);
+
+        List<Appointment> all = DatabaseHelper.getAllAppointments();
+        Assertions.assertEquals(3, all.size());
+        Assertions.assertEquals(1, all.stream().map(Appointment::getClientPhone).distinct().count(), "One client per phone");
+        Appointment withParts = all.stream().filter(a -> !a.getPartList().isEmpty()).findFirst().orElseThrow();
+        Assertions.assertEquals("Ion Pop", withParts.getClientName());
+        Assertions.assertEquals("Brakes, front", withParts.getProblemDescription());
+        Assertions.assertEquals(2, withParts.getPartList().size());
+        Assertions.assertEquals(AppointmentStatus.DONE, withParts.getStatus(), "Past rows without a status are history");
+
+        // 3. The reject file explains each rejected row
+        List<String> lines = Files.readAllLines(rejects.toPath(), StandardCharsets.UTF_8);
+        Assertions.assertEquals(3, lines.size(), "Header plus two rejected rows");
+        Assertions.assertTrue(lines.get(1).startsWith("3,invalid date"));
+
+        // 4. The batches skipped the row triggers but wrote search rows and duplicate keys themselves
+        Assertions.assertEquals(1, DatabaseHelper.searchAppointments("Brakes", null, null, null).size());
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM BulkLoad")) {
+                Assertions.assertEquals(0, rs.getInt(1), "The guard never outlives its batch");
+            }
+            Assertions.assertEquals(logVersion, changeLogVersion(), "No per-row change log");
+            try (ResultSet rs = stmt.executeQuery("SELECT COUNT(dup_key) FROM Appointments")) {
+                Assertions.assertEquals(2, rs.getInt(1), "The re-imported oil change is a duplicate of the first one");
+            }
+        }
+    }
+
+    private static long changeLogVersion() throws SQLException {
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT ifnull(MAX(version), 0) FROM ChangeLog")) {
+            return rs.getLong(1);
+        }
+    }
+
+    @Test
+    public void testStreamingExport() throws Exception {
+        List<Part> parts = new ArrayList<>();
+        parts.add(new Part("P1", "Filter, oil", Supplier.AUTONET));
+        parts.add(new Part("P2", "Oil \"5W30\"", Supplier.BARDI));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Export One", "0777777777", "TM01EXP", "Dacia", "Logan", 2012, "",
+                new Date(), "Service", "Done", parts, "Obs"));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Export Two", null, "TM02EXP", "Audi", "A4", 2010, "",
+                new Date(), "Noise", "-", new ArrayList<>(), "-"));
+
+        // 1. Streaming gives the same appointments (and parts) as the list search
+        List<Appointment> streamed = new ArrayList<>();
+        Assertions.assertEquals(2, DatabaseHelper.streamSearchResults(null, null, null, null, streamed::add));
+        Assertions.assertEquals(2, DatabaseHelper.countSearchResults(null, null, null, null));
+        Appointment withParts = streamed.stream().filter(a -> a.getClientName().equals("Export One")).findFirst().orElseThrow();
+        Assertions.assertEquals(List.of("P1", "P2"), withParts.getPartList().stream().map(Part::getCode).toList());
+
+        // 2. CSV of a filtered search: header + one row, quoted fields intact
+        Path csv = Files.createTempFile("export", ".csv");
+        csv.toFile().deleteOnExit();
+        int exported = new AppointmentExporter(AppointmentExporter.Format.CSV, null, null).export(csv, "TM01EXP", null, null, null);
+        Assertions.assertEquals(1, exported);
+        List<String> lines = Files.readAllLines(csv, StandardCharsets.UTF_8);
+        Assertions.assertEquals(2, lines.size());
+        Assertions.assertTrue(lines.get(1).contains("\"P1:Filter, oil:AUTONET;P2:Oil \"\"5W30\"\":BARDI\""), lines.get(1));
+
+        // 3. JSON of the full history
+        Path json = Files.createTempFile("export", ".json");
+        json.toFile().deleteOnExit();
+        Assertions.assertEquals(2, new AppointmentExporter(AppointmentExporter.Format.JSON, null, null).export(json, null, null, null, null));
+        String text = Files.readString(json, StandardCharsets.UTF_8).trim();
+        Assertions.assertTrue(text.startsWith("[") && text.endsWith("]"));
+        Assertions.assertTrue(text.contains("\"name\":\"Oil \\\"5W30\\\"\""), "Quotes must be escaped");
+        Assertions.assertTrue(text.contains("\"phone\":null"));
+        Assertions.assertFalse(Files.exists(json.resolveSibling(json.getFileName() + ".part")), "Temporary file should be gone");
+    }
+
+    @Test
+    public void testOnlineBackup() throws Exception {
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Backup Client", null, "TM01BKP", "Opel", "Astra", 2008, "",
+                new Date(), "Check", "-", new ArrayList<>(), "-"));
+        File target = File.createTempFile("backup", ".db");
+        target.deleteOnExit();
+
+        // 1. Taken while a write transaction is open on the shared writer: the snapshot holds committed rows only
+        try (Connection writer = DatabaseHelper.connect(); Statement stmt = writer.createStatement()) {
+            writer.setAutoCommit(false);
+            stmt.executeUpdate("UPDATE Clients SET name = 'Uncommitted' WHERE name = 'Backup Client'");
+            Thread backup = new Thread(() -> {
+                try {
+                    BackupService.backupTo(target);
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+            backup.start();
+            backup.join(10_000);
+            Assertions.assertFalse(backup.isAlive(), "The backup must not wait for the writer");
+            writer.rollback();
+        }
+
+        // 2. The copy is verified and holds the data
+        BackupService.verify(target);
+        try (Connection copy = DriverManager.getConnection("jdbc:sqlite:" + target.getAbsolutePath());
+             Statement stmt = copy.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT name FROM Clients")) {
+            Assertions.assertTrue(rs.next());
+            Assertions.assertEquals("Backup Client", rs.getString(1));
+        }
+        Assertions.assertFalse(new File(target.getPath() + ".part").exists());
+
+        // 3. Anything that is not a healthy AutoShop database is refused
+        File junk = File.createTempFile("junk", ".db");
+        junk.deleteOnExit();
+        Files.writeString(junk.toPath(), "not a database");
+        Assertions.assertThrows(SQLException.class, () -> BackupService.verify(junk));
+    }
+
+    @Test
+    public void testHotRestore() throws Exception {
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Kept Client", null, "TM01RST", "Opel", "Astra", 2008, "",
+                new Date(), "Check", "-", new ArrayList<>(), "-"));
+        File backup = File.createTempFile("restore", ".db");
+        backup.deleteOnExit();
+        BackupService.backupTo(backup);
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Lost Client", null, "TM02RST", "Opel", "Corsa", 2009, "",
+                new Date(), "Check", "-", new ArrayList<>(), "-"));
+        File[] before = BackupService.AUTO_DIR.listFiles();
+
+        try {
+            // 1. Swapped in place: the same process sees the backup's data, and can keep writing
+            BackupService.restoreFrom(backup);
+            List<Appointment> all = DatabaseHelper.getAllAppointments();
+            Assertions.assertEquals(1, all.size());
+            Assertions.assertEquals("Kept Client", all.get(0).getClientName());
+            DatabaseHelper.addAppointmentTransaction(new Appointment("After Restore", null, "TM03RST", "Opel", "Vectra", 2010, "",
+                    new Date(), "Check", "-", new ArrayList<>(), "-"));
+            Assertions.assertEquals(2, DatabaseHelper.countAppointments());
+
+            // 2. A broken file is refused and the live data stays
+            File junk = File.createTempFile("junk", ".db");
+            junk.deleteOnExit();
+            Files.writeString(junk.toPath(), "not a database");
+            Assertions.assertThrows(SQLException.class, () -> BackupService.restoreFrom(junk));
+            Assertions.assertEquals(2, DatabaseHelper.countAppointments());
+        } finally {
+            // Safety copies made by the restore
+            File[] after = BackupService.AUTO_DIR.listFiles();
+            if (after != null) {
+                for (File f : after) {
+                    if (before == null || !List.of(before).contains(f)) f.delete();
+                }
+            }
+            if (before == null) BackupService.AUTO_DIR.delete();
+        }
+    }
+
+    @Test
+    public void testStatusTransitionScheduler() throws Exception {
+        long now = System.currentTimeMillis();
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Missed", null, "TM01STS", "Opel", "Astra", 2008, "",
+                new Date(now - 60_000), "Check", "-", new ArrayList<>(), "-"));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Tomorrow", null, "TM02STS", "Opel", "Corsa", 2009, "",
+                new Date(now + 86_400_000L), "Check", "-", new ArrayList<>(), "-"));
+
+        StatusTransitionScheduler.start();
+        try {
+            // 1. Start catches up, and plans the next run for tomorrow's appointment
+            Assertions.assertEquals(AppointmentStatus.IN_PROGRESS, statusOf("Missed"));
+            Assertions.assertEquals(AppointmentStatus.SCHEDULED, statusOf("Tomorrow"));
+            SwingUtilities.invokeAndWait(() -> { }); // Events from start's sync may plan a run first; it re-plans
+            long settle = System.currentTimeMillis() + 2_000;
+            while (StatusTransitionScheduler.getNextTransitionTime() != now + 86_400_000L && System.currentTimeMillis() < settle) {
+                Thread.sleep(20);
+            }
+            Assertions.assertEquals(now + 86_400_000L, StatusTransitionScheduler.getNextTransitionTime());
+
+            // 2. Booking something sooner pulls the run forward (from the change event), and it flips on time
+            AppointmentRepository.add(new Appointment("Soon", null, "TM03STS", "Opel", "Vectra", 2010, "",
+                    new Date(now + 1_000), "Check", "-", new ArrayList<>(), "-"));
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (statusOf("Soon") != AppointmentStatus.IN_PROGRESS && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            Assertions.assertEquals(AppointmentStatus.IN_PROGRESS, statusOf("Soon"));
+            Assertions.assertEquals(AppointmentStatus.SCHEDULED, statusOf("Tomorrow"));
+        } finally {
+            StatusTransitionScheduler.stop();
+        }
+    }
+
+    @Test
+    public void testNotificationReminders() throws Exception {
+        int leadMinutes = PreferencesHelper.getNotificationLeadTime();
+        PreferencesHelper.setNotificationLeadTime(30);
+        long at = System.currentTimeMillis() / 60000 * 60000 + 7_200_000L;
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Remind", null, "TM01NTF", "Skoda", "Fabia", 2011, "",
+                new Date(at), "Check", "-", new ArrayList<>(), "-"));
+        AppointmentRepository.sync();
+
+        NotificationService.start();
+        try {
+            // 1. Loaded once: due at the appointment time minus the lead time
+            waitUntil(() -> NotificationService.getNextReminderTime() == at - 30 * 60_000L);
+            Assertions.assertEquals(at - 30 * 60_000L, NotificationService.getNextReminderTime());
+            Assertions.assertEquals(1, NotificationService.getQueuedCount());
+
+            // 2. Rescheduling moves the reminder, and the old one leaves the queue
+            Appointment a = DatabaseHelper.getAllAppointments().get(0);
+            long moved = at + 3_600_000L;
+            AppointmentRepository.update(new Appointment(a.getAppointmentID(), a.getCarID(), new Date(moved),
+                    a.getProblemDescription(), a.getRepairs(), a.getPartList(), a.getObservations(), a.getStatus(),
+                    a.getClientName(), a.getClientPhone(), a.getCarLicensePlate(), a.getCarBrand(), a.getCarModel(),
+                    a.getCarYear(), a.getCarPhotoPath()));
+            waitUntil(() -> NotificationService.getNextReminderTime() == moved - 30 * 60_000L);
+            Assertions.assertEquals(moved - 30 * 60_000L, NotificationService.getNextReminderTime());
+            Assertions.assertEquals(1, NotificationService.getQueuedCount());
+
+            // 3. A new lead time re-times what is queued, without reading the database: a change it was not
+            // told about does not show
+            try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE Appointments SET date = " + (at + 86_400_000L));
+            }
+            PreferencesHelper.setNotificationLeadTime(10);
+            NotificationService.leadTimeChanged();
+            Assertions.assertEquals(moved - 10 * 60_000L, NotificationService.getNextReminderTime());
+            Assertions.assertEquals(1, NotificationService.getQueuedCount());
+        } finally {
+            NotificationService.stop();
+            PreferencesHelper.setNotificationLeadTime(leadMinutes);
+        }
+    }
+
+    @Test
+    public void testNotificationFiresOnce() throws Exception {
+        int leadMinutes = PreferencesHelper.getNotificationLeadTime();
+        PreferencesHelper.setNotificationLeadTime(1);
+        AppointmentRepository.sync();
+
+        NotificationService.start();
+        try {
+            // 1. Booked inside the lead time: reminded straight away
+            long at = System.currentTimeMillis() + 3_000;
+            AppointmentRepository.add(new Appointment("Once", null, "TM01ONC", "Skoda", "Octavia", 2015, "",
+                    new Date(at), "Check", "-", new ArrayList<>(), "-"));
+            waitUntil(() -> NotificationService.getNotifiedCount() == 1);
+            Assertions.assertEquals(1, NotificationService.getNotifiedCount());
+            Assertions.assertEquals(-1, NotificationService.getNextReminderTime());
+
+            // 2. An edit that keeps the time, or a new lead time, does not remind again
+            Appointment a = DatabaseHelper.getAllAppointments().get(0);
+            AppointmentRepository.update(new Appointment(a.getAppointmentID(), a.getCarID(), a.getDate(),
+                    "Check again", a.getRepairs(), a.getPartList(), a.getObservations(), a.getStatus(),
+                    a.getClientName(), a.getClientPhone(), a.getCarLicensePlate(), a.getCarBrand(), a.getCarModel(),
+                    a.getCarYear(), a.getCarPhotoPath()));
+            SwingUtilities.invokeAndWait(() -> { }); // Change events are delivered on the event thread
+            NotificationService.leadTimeChanged();
+            Assertions.assertEquals(0, NotificationService.getQueuedCount());
+            Assertions.assertEquals(-1, NotificationService.getNextReminderTime());
+
+            // 3. Once the appointment time has passed it is forgotten
+            waitUntil(() -> NotificationService.getNotifiedCount() == 0);
+            Assertions.assertTrue(System.currentTimeMillis() >= at);
+            Assertions.assertEquals(0, NotificationService.getNotifiedCount());
+        } finally {
+            NotificationService.stop();
+            PreferencesHelper.setNotificationLeadTime(leadMinutes);
+        }
+    }
+
+    @Test
+    public void testAutocompleteIndex() throws Exception {
+        Date now = new Date();
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Ștefan Popescu", "0744 123 456", "B 123 ABC", "Dacia", "Logan", 2012, "",
+                now, "Fix", "-", new ArrayList<>(), "-"));
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Ana Ionescu", "0755123456", "CJ01XYZ", "Dacia", "Duster", 2019, "",
+                now, "Fix", "-", new ArrayList<>(), "-"));
+
+        AutocompleteIndex.start();
+        AutocompleteIndex.rebuild();
+        Assertions.assertTrue(AutocompleteIndex.isReady());
+
+        // 1. Folded names, from any word and inside a word
+        Assertions.assertEquals(List.of("Ștefan Popescu"), AutocompleteIndex.suggestNames("stef"));
+        Assertions.assertEquals(List.of("Ștefan Popescu"), AutocompleteIndex.suggestNames("POP"));
+        Assertions.assertEquals(List.of("Ana Ionescu"), AutocompleteIndex.suggestNames("nesc"));
+        Assertions.assertTrue(AutocompleteIndex.suggestNames("ne").isEmpty()); // Too short to look inside words
+
+        // 2. Phones by digits, plates without separators, models per brand
+        Assertions.assertEquals(1, AutocompleteIndex.suggestPhones("0744 12").size());
+        Assertions.assertEquals(1, AutocompleteIndex.suggestPlates("b123").size());
+        Assertions.assertEquals(List.of("Duster", "Logan"), AutocompleteIndex.suggestModels("dacia", ""));
+        Assertions.assertEquals(List.of("Logan"), AutocompleteIndex.suggestModels("Dacia", "lo"));
+        Assertions.assertTrue(AutocompleteIndex.suggestModels("BMW", "lo").isEmpty());
+
+        // 3. Kept current from the change events: a new client appears, a renamed one replaces its old name
+        AppointmentRepository.sync();
+        AppointmentRepository.add(new Appointment("Radu Marin", "0766123456", "IS99RAD", "Skoda", "Octavia", 2020, "",
+                now, "Fix", "-", new ArrayList<>(), "-"));
+        AppointmentRepository.add(new Appointment("Stefan Pop", "0744 123 456", "B 123 ABC", "Dacia", "Sandero", 2012, "",
+                now, "Fix", "-", new ArrayList<>(), "-"));
+        SwingUtilities.invokeAndWait(() -> { }); // Listeners run on the event thread
+
+        Assertions.assertEquals(List.of("Radu Marin"), AutocompleteIndex.suggestNames("rad"));
+        Assertions.assertEquals(List.of("Octavia"), AutocompleteIndex.suggestModels("Skoda", "o"));
+        Assertions.assertEquals(List.of("Stefan Pop"), AutocompleteIndex.suggestNames("stefan"));
+        Assertions.assertEquals(List.of("Duster", "Sandero"), AutocompleteIndex.suggestModels("Dacia", ""));
+    }
+
+    @Test
+    public void testPhotoVariantsAndCache() throws Exception {
+        File source = File.createTempFile("photo", ".jpg");
+        String stored = null;
+        try {
+            BufferedImage big = new BufferedImage(2400, 1600, BufferedImage.TYPE_INT_RGB);
+            Assertions.assertTrue(ImageIO.write(big, "jpg", source));
+
+            // 1. Size from the header; decoding goes straight to the target size (whole, or cropped to fill)
+            Assertions.assertEquals(new Dimension(2400, 1600), ImageLoader.readSize(source));
+            BufferedImage legacy = ImageLoader.decode(source, 800, 600, ImageLoader.Fit.CONTAIN);
+            Assertions.assertEquals(800, legacy.getWidth());
+            Assertions.assertEquals(533, legacy.getHeight(), 1.0);
+            BufferedImage cropped = ImageLoader.decode(source, 160, 120, ImageLoader.Fit.COVER);
+            Assertions.assertEquals(new Dimension(160, 120), new Dimension(cropped.getWidth(), cropped.getHeight()));
+
+            // 2. Stored photos get a preview and a thumbnail
+            stored = "taloane" + File.separator + "variants_test.jpg"; // As copyToAppStorage would store it (that one makes them in the background)
+            Files.createDirectories(storageRoot.resolve("taloane"));
+            Files.copy(source.toPath(), StorageHelper.resolve(stored).toPath());
+            StorageHelper.generateVariants(stored);
+            BufferedImage thumb = ImageIO.read(StorageHelper.getVariantFile(stored, StorageHelper.Variant.THUMBNAIL));
+            Assertions.assertEquals(120, thumb.getHeight());
+
+            // 3. The cache serves the same decoded preview again
+            BufferedImage preview = ImageCache.getPreview(stored);
+            Assertions.assertEquals(800, preview.getWidth());
+            Assertions.assertSame(preview, ImageCache.getPreview(stored));
+        } finally {
+            source.delete();
+        }
+    }
+
+    @Test
+    public void testContentAddressedPhotos() throws Exception {
+        File first = File.createTempFile("cert", ".JPG");
+        File same = File.createTempFile("scan", ".jpg");
+        File other = File.createTempFile("other", ".jpg");
+        List<String> stored = new ArrayList<>();
+        try {
+            Files.writeString(first.toPath(), "certificate bytes");
+            Files.writeString(same.toPath(), "certificate bytes");
+            Files.writeString(other.toPath(), "another certificate");
+
+            // 1. Same bytes -> same file, stored once, under its hash
+            stored.add(StorageHelper.copyToAppStorage(first.getAbsolutePath()));
+            stored.add(StorageHelper.copyToAppStorage(same.getAbsolutePath()));
+            stored.add(StorageHelper.copyToAppStorage(other.getAbsolutePath()));
+            Assertions.assertEquals(stored.get(0), stored.get(1));
+            Assertions.assertNotEquals(stored.get(0), stored.get(2));
+            Assertions.assertTrue(new File(stored.get(0)).getName().matches("[0-9a-f]{64}\\.jpg"));
+            Assertions.assertTrue(stored.get(0).startsWith("taloane")); // Stored relative, found under the storage root
+            Assertions.assertEquals("certificate bytes", Files.readString(StorageHelper.resolve(stored.get(0)).toPath()));
+
+            // A repeat pick touches the stored file, so the maintenance job does not collect it before the save
+            long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+            Assertions.assertTrue(StorageHelper.resolve(stored.get(0)).setLastModified(old));
+            Assertions.assertEquals(stored.get(0), StorageHelper.copyToAppStorage(same.getAbsolutePath()));
+            Assertions.assertTrue(StorageHelper.resolve(stored.get(0)).lastModified() > old + TimeUnit.DAYS.toMillis(1));
+
+            // 2. The Photos table counts the cars using each file
+            Date now = new Date();
+            DatabaseHelper.addAppointmentTransaction(new Appointment("Owner A", null, "TM01PHO", "Opel", "Astra", 2008, stored.get(0),
+                    now, "Check", "-", new ArrayList<>(), "-"));
+            DatabaseHelper.addAppointmentTransaction(new Appointment("Owner B", null, "TM02PHO", "Opel", "Astra", 2009, stored.get(0),
+                    now, "Check", "-", new ArrayList<>(), "-"));
+            Assertions.assertEquals(2, photoRefs(stored.get(0)));
+
+            try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("UPDATE Cars SET photo_path = '" + stored.get(2) + "' WHERE license_plate = 'TM02PHO'");
+            }
+            Assertions.assertEquals(1, photoRefs(stored.get(0)));
+            Assertions.assertEquals(1, photoRefs(stored.get(2)));
+        } finally {
+            for (File f : List.of(first, same, other)) f.delete();
+        }
+    }
+
+    private static int photoRefs(String path) throws SQLException {
+        try (Connection conn = DatabaseHelper.connect();
+             PreparedStatement ps = conn.prepareStatement("SELECT ref_count FROM Photos WHERE path = ?")) {
+            ps.setString(1, path);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? rs.getInt(1) : 0;
+            }
+        }
+    }
+
+    @Test
+    public void testMaintenanceService() throws Exception {
+        Date now = new Date();
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Keep", null, "TM01MNT", "Opel", "Astra", 2008, "",
+                now, "Check", "-", new ArrayList<>(List.of(new Part("P1", "Filter", Supplier.values()[0]))), "-"));
+        int id = DatabaseHelper.getAllAppointments().get(0).getAppointmentID();
+
+        // 1. Foreign keys are on: deleting the appointment removes its parts
+        DatabaseHelper.deleteAppointment(id);
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Parts")) {
+            Assertions.assertEquals(0, rs.getInt(1));
+        }
+
+        // 2. Orphans left by older versions (written without foreign keys) are purged
+        try (Connection raw = DriverManager.getConnection("jdbc:sqlite:test.db"); Statement stmt = raw.createStatement()) {
+            stmt.executeUpdate("INSERT INTO Parts(appointment_id, code, name) VALUES (99999, 'X', 'Orphan')");
+        }
+
+        // 3. Photos: an old unused file goes to the trash; a used one, a counted one and a fresh one stay
+        String usedPath = "taloane" + File.separator + "maint_used.jpg";
+        String countedPath = "taloane" + File.separator + "maint_counted.jpg";
+        Path photos = storageRoot.resolve("taloane");
+        Path used = photos.resolve("maint_used.jpg"), unused = photos.resolve("maint_unused.jpg"),
+                fresh = photos.resolve("maint_fresh.jpg"), counted = photos.resolve("maint_counted.jpg");
+        Path trashed = MaintenanceService.getTrashDir().toPath().resolve("maint_unused.jpg");
+        try {
+            Files.createDirectories(photos);
+            for (Path p : List.of(used, unused, fresh, counted)) Files.writeString(p, "photo");
+            long old = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+            used.toFile().setLastModified(old);
+            unused.toFile().setLastModified(old);
+            counted.toFile().setLastModified(old);
+            try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("INSERT INTO Photos(path, ref_count) VALUES ('" + countedPath + "', 1)");
+            }
+            DatabaseHelper.addAppointmentTransaction(new Appointment("Photo", null, "TM02MNT", "Opel", "Astra", 2008, usedPath,
+                    now, "Check", "-", new ArrayList<>(), "-"));
+
+            MaintenanceService.Report report = MaintenanceService.run();
+            Assertions.assertEquals(1, report.orphanParts());
+            Assertions.assertEquals(1, report.filesQuarantined());
+            Assertions.assertTrue(Files.exists(used));
+            Assertions.assertTrue(Files.exists(fresh));
+            Assertions.assertTrue(Files.exists(counted));
+            Assertions.assertFalse(Files.exists(unused));
+            Assertions.assertTrue(Files.exists(trashed));
+            Assertions.assertTrue(trashed.startsWith(storageRoot));
+        } finally {
+            try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+                stmt.executeUpdate("DELETE FROM Photos WHERE path = '" + countedPath + "'");
+            }
+        }
+    }
+
+    @Test
+    public void testAppointmentTableModel() throws Exception {
+        Date now = new Date();
+        List<Appointment> rows = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            rows.add(new Appointment("Client " + i, i == 0 ? null : "0700000000", i == 0 ? "PENDING-1" : "TM" + i,
+                    "Opel", "Astra", 2008, "", now, "Check", "-", new ArrayList<>(), "-"));
+        }
+        AppointmentTableModel model = new AppointmentTableModel(new String[]{"Client", "Phone", "Plate", "Date", "Status"},
+                AppointmentTableModel.Column.CLIENT, AppointmentTableModel.Column.PHONE, AppointmentTableModel.Column.PLATE,
+                AppointmentTableModel.Column.DATE, AppointmentTableModel.Column.STATUS);
+        List<TableModelEvent> events = new ArrayList<>();
+        model.addTableModelListener(events::add);
+
+        SwingUtilities.invokeAndWait(() -> {
+            // 1. A full refresh is one event
+            model.setAppointments(rows);
+            Assertions.assertEquals(1, events.size());
+            Assertions.assertEquals(20_000, model.getRowCount());
+
+            // 2. Cells come from the appointment, masked and formatted once
+            Assertions.assertEquals("-", model.getValueAt(0, 1));
+            Assertions.assertEquals("-", model.getValueAt(0, 2));
+            Assertions.assertEquals("TM5", model.getValueAt(5, 2));
+            Assertions.assertSame(model.getValueAt(5, 3), model.getValueAt(5, 3));
+            Assertions.assertInstanceOf(AppointmentStatus.class, model.getValueAt(5, 4));
+
+            // 3. Patches fire one event for their row, and the row shows the new data
+            Appointment edited = new Appointment("Edited", "0711111111", "TM5", "Opel", "Astra", 2008, "",
+                    now, "Check", "-", new ArrayList<>(), "-");
+            model.set(5, edited);
+            model.remove(7);
+            model.add(edited);
+            Assertions.assertEquals(4, events.size());
+            Assertions.assertEquals(TableModelEvent.UPDATE, events.get(1).getType());
+            Assertions.assertEquals(5, events.get(1).getFirstRow());
+            Assertions.assertEquals(TableModelEvent.DELETE, events.get(2).getType());
+            Assertions.assertEquals(TableModelEvent.INSERT, events.get(3).getType());
+            Assertions.assertEquals(19_999, events.get(3).getFirstRow());
+            Assertions.assertEquals("Edited", model.getValueAt(5, 0));
+            Assertions.assertEquals("Client 8", model.getValueAt(7, 0));
+            Assertions.assertSame(edited, model.getAppointmentAt(19_999));
+        });
+    }
+
+    @Test
+    public void testDuplicateKeyIndex() throws SQLException {
+        AppointmentRepository.invalidate();
+        Date when = new Date(System.currentTimeMillis() - 730L * 86_400_000L); // A month nobody has cached
+        Date sameMinute = new Date(when.getTime() / 60000 * 60000 + 59_000);
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Dup", null, "TM01DUP", "Opel", "Astra", 2008, "",
+                when, "Brakes", "-", new ArrayList<>(), "-"));
+        int first = DatabaseHelper.getAllAppointments().get(0).getAppointmentID();
+
+        // 1. The stored key is the one the app builds; the lookup goes through the unique index
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT dup_key FROM Appointments")) {
+            Assertions.assertEquals(AppointmentRepository.duplicateKey(null, "TM01DUP", when, "Brakes"), rs.getString(1));
+        }
+        Assertions.assertEquals(first, AppointmentRepository.findDuplicateId(null, "TM01DUP", sameMinute, "Brakes"));
+        Assertions.assertEquals(-1, AppointmentRepository.findDuplicateId(null, "TM01DUP", sameMinute, "Oil"));
+        Assertions.assertEquals(-1, AppointmentRepository.findDuplicateId(null, "TM01DUP", new Date(when.getTime() + 60_000), "Brakes"));
+
+        // Plates match without spaces or dashes, problems trimmed and in any case; the key keeps only a hash of the text
+        Assertions.assertEquals(first, AppointmentRepository.findDuplicateId(null, "tm-01 dup", sameMinute, "  BRAKES "));
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT dup_key FROM Appointments")) {
+            Assertions.assertFalse(rs.getString(1).toLowerCase().contains("brakes"));
+        }
+
+        // 2. A second copy written past the check keeps no key (the index stays unique)...
+        DatabaseHelper.addAppointmentTransaction(new Appointment("Dup", null, "TM01DUP", "Opel", "Astra", 2008, "",
+                sameMinute, "Brakes", "-", new ArrayList<>(), "-"));
+        int second = DatabaseHelper.getAllAppointments().stream().mapToInt(Appointment::getAppointmentID).max().orElseThrow();
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement();
+             ResultSet rs = stmt.executeQuery("SELECT COUNT(*) FROM Appointments WHERE dup_key IS NOT NULL")) {
+            Assertions.assertEquals(1, rs.getInt(1));
+        }
+
+        // 3. ...and takes the key over once the first one is gone, in the database and in the cached month
+        Assertions.assertEquals(2, AppointmentRepository.getDay(when).size());
+        Assertions.assertEquals(first, AppointmentRepository.findDuplicateId(null, "TM01DUP", when, "Brakes"));
+        AppointmentRepository.delete(first);
+        Assertions.assertEquals(second, AppointmentRepository.findDuplicateId(null, "TM01DUP", when, "Brakes"));
+        Assertions.assertEquals(second, DatabaseHelper.findDuplicateId(AppointmentRepository.duplicateKey(null, "TM01DUP", when, "Brakes")));
+    }
+
+    // Polls for up to five seconds (background threads and change events are asynchronous)
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) Thread.sleep(20);
+    }
+
+    private static AppointmentStatus statusOf(String clientName) throws SQLException {
+        return DatabaseHelper.getAllAppointments().stream()
+                .filter(a -> a.getClientName().equals(clientName)).findFirst().orElseThrow().getStatus();
+    }
+
     @AfterAll
     public static void cleanUp() throws SQLException {
         DatabaseHelper.setDataBaseName("test.db");
@@ -0,0 +1,116 @@
+package com.autoshop.tests;
+
+import com.autoshop.app.model.Appointment;
+import com.autoshop.app.model.Part;
+import com.autoshop.app.model.Supplier;
+import com.autoshop.app.util.DatabaseHelper;
+
+import java.sql.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Compares the old per-appointment parts query (N+1) with the bulk parts loader.
+ * Run manually: java com.autoshop.tests.PartsLoadingBenchmark [sizes...]
+ * Without arguments it runs 1k, 10k and 100k appointments (0-3 parts each).
+ */
+public class PartsLoadingBenchmark {
+
+    public static void main(String[] args) throws SQLException {
+        int[] sizes = {1_000, 10_000, 100_000};
+        if (args.length > 0) {
+            sizes = new int[args.length];
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+        }
+
+        DatabaseHelper.setDataBaseName("bench.db");
+        DatabaseHelper.createNewTable();
+
+        System.out.printf("%-12s %-14s %-14s %-8s%n", "appointments", "old N+1 (ms)", "bulk (ms)", "speedup");
+        for (int size : sizes) {
+            seed(size);
+
+            // Warm-up run for both paths so the JIT and page cache are comparable
+            loadOldWay();
+            DatabaseHelper.getAllAppointments();
+
+            long start = System.nanoTime();
+            List<Appointment> old = loadOldWay();
+            long oldMs = (System.nanoTime() - start) / 1_000_000;
+
+            start = System.nanoTime();
+            List<Appointment> bulk = DatabaseHelper.getAllAppointments();
+            long bulkMs = (System.nanoTime() - start) / 1_000_000;
+
+            if (old.size() != bulk.size()) throw new IllegalStateException("Paths returned different row counts");
+            System.out.printf("%-12d %-14d %-14d %.1fx%n", size, oldMs, bulkMs, (double) oldMs / Math.max(1, bulkMs));
+        }
+    }
+
+    // Fills the database with 'size' appointments, each with 0-3 parts
+    private static void seed(int size) throws SQLException {
+        try (Connection conn = DatabaseHelper.connect(); Statement stmt = conn.createStatement()) {
+            stmt.executeUpdate("DELETE FROM Parts");
+            stmt.executeUpdate("DELETE FROM Appointments");
+            stmt.executeUpdate("DELETE FROM Cars");
+            stmt.executeUpdate("DELETE FROM Clients");
+
+            conn.setAutoCommit(false);
+            stmt.executeUpdate("INSERT INTO Clients(client_id, name, phone) VALUES(1, 'Bench Client', '+40700000000')");
+            stmt.executeUpdate("INSERT INTO Cars(car_id, client_id, license_plate, brand_name, model, year) VALUES(1, 1, 'TM-01-BEN', 'Audi', 'A4', 2010)");
+
+            try (PreparedStatement app = conn.prepareStatement("INSERT INTO Appointments(appointment_id, car_id, client_id, date, problem, repairs, observations, status) VALUES(?, 1, 1, ?, 'Problem', 'Repairs', 'Obs', 'DONE')");
+                 PreparedStatement part = conn.prepareStatement("INSERT INTO Parts(appointment_id, code, name, supplier) VALUES(?, ?, ?, ?)")) {
+                long now = System.currentTimeMillis();
+                for (int id = 1; id <= size; id++) {
+                    app.setInt(1, id);
+                    app.setLong(2, now - id * 60_000L);
+                    app.addBatch();
+                    for (int p = 0; p < id % 4; p++) {
+                        part.setInt(1, id);
+                        part.setString(2, "C" + p);
+                        part.setString(3, "Part " + p);
+                        part.setString(4, Supplier.values()[p].name());
+                        part.addBatch();
+                    }
+                }
+                app.executeBatch();
+                part.executeBatch();
+            }
+            conn.commit();
+        }
+    }
+
+    // The pre-bulk behaviour: one parts query per appointment row
+    private static List<Appointment> loadOldWay() throws SQLException {
+        List<Appointment> list = new ArrayList<>();
+        String sql = "SELECT app.appointment_id, app.date, app.problem, app.repairs, app.observations, app.status, " +
+                "car.car_id, car.license_plate, car.brand_name, car.model, car.year, car.photo_path, " +
+                "client.name, client.phone " +
+                "FROM Appointments app " +
+                "JOIN Cars car ON app.car_id = car.car_id " +
+                "JOIN Clients client ON app.client_id = client.client_id";
+
+        try (Connection conn = DatabaseHelper.connect();
+             PreparedStatement ps = conn.prepareStatement(sql);
+             PreparedStatement partsPs = conn.prepareStatement("SELECT * FROM Parts WHERE appointment_id = ?");
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int id = rs.getInt("appointment_id");
+                List<Part> parts = new ArrayList<>();
+                partsPs.setInt(1, id);
+                try (ResultSet prs = partsPs.executeQuery()) {
+                    while (prs.next()) {
+                        parts.add(new Part(prs.getInt("part_id"), id, prs.getString("code"),
+                                prs.getString("name"), Supplier.valueOf(prs.getString("supplier"))));
+                    }
+                }
+                list.add(new Appointment(id, rs.getInt("car_id"), new java.util.Date(rs.getLong("date")),
+                        rs.getString("problem"), rs.getString("repairs"), parts, rs.getString("observations"),
+                        null, rs.getString("name"), rs.getString("phone"), rs.getString("license_plate"),
+                        rs.getString("brand_name"), rs.getString("model"), rs.getInt("year"), rs.getString("photo_path")));
+            }
+        }
+        return list;
+    }
+}